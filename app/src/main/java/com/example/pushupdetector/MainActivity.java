@@ -30,12 +30,22 @@ import androidx.core.content.ContextCompat;
 import com.example.pushupdetector.databinding.ActivityMainBinding;
 import com.example.pushupdetector.helper.PreferenceHelper;
 import com.example.pushupdetector.posedetector.PoseDetectorProcessor;
+import com.example.pushupdetector.posedetector.classification.AndroidLoggerBackend;
+import com.example.pushupdetector.posedetector.classification.LandmarkRecorder;
+import com.example.pushupdetector.posedetector.classification.Logger;
 import com.example.pushupdetector.posedetector.classification.PoseClassifierProcessor;
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.metrics.FrameMetricsExporter;
+import com.example.pushupdetector.posedetector.trace.AndroidTraceBackend;
+import com.example.pushupdetector.posedetector.trace.Tracer;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
 
+import java.io.IOException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
     private ActivityMainBinding binding;
@@ -48,6 +58,15 @@ public class MainActivity extends AppCompatActivity {
     private ImageAnalysis analysisUseCase;
     @Nullable
     private PoseDetectorProcessor imageProcessor;
+    // Loads the pose classifier in the background while the camera starts up. Shared by every
+    // PoseDetectorProcessor of this activity, so flipping the camera keeps the rep count.
+    @Nullable
+    private ListenableFuture<PoseClassifierProcessor> classifierFuture;
+    // Records the landmarks of the session in debug builds, see LandmarkRecorder.
+    @Nullable
+    private LandmarkRecorder landmarkRecorder;
+    // Whether a session was started, so its stage latencies are exported when it ends.
+    private boolean isSessionStarted;
 
     private boolean needUpdateGraphicOverlayImageSourceInfo;
     private CameraSelector cameraSelector;
@@ -71,6 +90,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        Logger.setBackend(AndroidLoggerBackend.INSTANCE);
+        Tracer.setBackend(AndroidTraceBackend.INSTANCE);
 
         binding = ActivityMainBinding.inflate(getLayoutInflater());
 
@@ -103,11 +124,39 @@ public class MainActivity extends AppCompatActivity {
 
     private void onPermissionGranted() {
         binding.tvCamAccess.setVisibility(View.GONE);
+        preloadClassifier();
         setCameraProvider();
         subscribeListeners();
         bottomSheetBehavior.setState(BottomSheetBehavior.STATE_EXPANDED);
     }
 
+    private void preloadClassifier() {
+        if (classifierFuture != null) {
+            return;
+        }
+        ExecutorService loaderExecutor = Executors.newSingleThreadExecutor();
+        classifierFuture = PoseClassifierProcessor.loadAsync(this, true, loaderExecutor);
+        // Lets the thread exit once loading is done.
+        loaderExecutor.shutdown();
+        // Finishing reads the reps off the classifier, so the button waits for it to load.
+        binding.btnFinish.setEnabled(false);
+        classifierFuture.addListener(
+                () -> binding.btnFinish.setEnabled(backgroundHandler != null),
+                ContextCompat.getMainExecutor(this));
+    }
+
+    private void startLandmarkRecorder() {
+        if (!BuildConfig.DEBUG || landmarkRecorder != null) {
+            return;
+        }
+        try {
+            landmarkRecorder = LandmarkRecorder.start(this);
+            Log.d(TAG, "Recording landmarks to " + landmarkRecorder.getFile());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to start recording landmarks", e);
+        }
+    }
+
     private void subscribeListeners() {
         binding.getRoot().setOnClickListener(v -> {
             if (bottomSheetBehavior.getState() == BottomSheetBehavior.STATE_EXPANDED) {
@@ -120,10 +169,14 @@ public class MainActivity extends AppCompatActivity {
             binding.getRoot().setOnClickListener(null);
             binding.cl.setVisibility(View.GONE);
             binding.btnFinish.setVisibility(View.VISIBLE);
+            startLandmarkRecorder();
+            FrameMetrics.reset();
+            isSessionStarted = true;
             bindAllCameraUseCases();
         });
 
         binding.btnFinish.setOnClickListener(v -> {
+            // Only enabled once the preloaded classifier, and so backgroundHandler, is ready.
             Message toBackground = new Message();
             toBackground.obj = PoseClassifierProcessor.TAG;
             backgroundHandler.sendMessage(toBackground);
@@ -154,12 +207,32 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
         reset();
+        if (landmarkRecorder != null) {
+            landmarkRecorder.flush();
+        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
         reset();
+        if (landmarkRecorder != null) {
+            landmarkRecorder.close();
+            landmarkRecorder = null;
+        }
+        exportFrameMetrics();
+    }
+
+    private void exportFrameMetrics() {
+        if (!isSessionStarted) {
+            return;
+        }
+        isSessionStarted = false;
+        try {
+            Log.d(TAG, "Exported frame metrics to " + FrameMetricsExporter.export(this));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to export frame metrics", e);
+        }
     }
 
     private void flipCamera() {
@@ -313,6 +386,7 @@ public class MainActivity extends AppCompatActivity {
         boolean visualizeZ = true;
         boolean rescaleZ = true;
         boolean runClassification = true;
+        boolean showMetricsHud = false;
         imageProcessor =
                 new PoseDetectorProcessor(
                         this,
@@ -321,7 +395,11 @@ public class MainActivity extends AppCompatActivity {
                         visualizeZ,
                         rescaleZ,
                         runClassification,
-                        true);
+                        true,
+                        classifierFuture,
+                        PoseDetectorProcessor.NotReadyPolicy.QUEUE);
+        imageProcessor.setLandmarkRecorder(landmarkRecorder);
+        imageProcessor.setShowMetricsHud(showMetricsHud);
 
         ImageAnalysis.Builder builder = new ImageAnalysis.Builder();
         analysisUseCase = builder.build();
@@ -0,0 +1,68 @@
+package com.example.pushupdetector.helper;
+
+import android.graphics.Bitmap;
+import android.media.Image.Plane;
+import android.os.Build.VERSION_CODES;
+
+import androidx.annotation.RequiresApi;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts live camera frames to upright bitmaps for {@link CameraImageGraphic}, with a {@link
+ * YuvToArgbConverter} and a small pool of bitmaps that are reused round robin.
+ *
+ * <p>A bitmap stays on the overlay until the next frame's results replace it, and at most one
+ * frame is detected at a time, so a bitmap is only reused once two newer frames were converted.
+ * Callers must not keep the bitmaps longer than that. Not thread safe.
+ */
+public class FrameBitmapConverter {
+  private static final int POOL_SIZE = 3;
+
+  private final YuvToArgbConverter converter = new YuvToArgbConverter();
+  private final Bitmap[] bitmaps = new Bitmap[POOL_SIZE];
+  private int next;
+
+  // Plane properties of the CameraX frames, reused across frames.
+  private final ByteBuffer[] planeBuffers = new ByteBuffer[3];
+  private final int[] rowStrides = new int[3];
+  private final int[] pixelStrides = new int[3];
+
+  /** Converts an NV21 frame, see {@link BitmapUtils#getBitmap(ByteBuffer, FrameMetadata)}. */
+  public Bitmap getBitmap(ByteBuffer nv21, FrameMetadata metadata) {
+    int[] pixels = converter.convertNv21(
+        nv21, metadata.getWidth(), metadata.getHeight(), metadata.getRotation(), false);
+    return toBitmap(pixels);
+  }
+
+  /** Converts a YUV_420_888 frame from CameraX, see {@link BitmapUtils#getBitmap(ImageProxy)}. */
+  @RequiresApi(VERSION_CODES.LOLLIPOP)
+  @ExperimentalGetImage
+  public Bitmap getBitmap(ImageProxy image) {
+    Plane[] planes = image.getImage().getPlanes();
+    for (int i = 0; i < planes.length; i++) {
+      planeBuffers[i] = planes[i].getBuffer();
+      rowStrides[i] = planes[i].getRowStride();
+      pixelStrides[i] = planes[i].getPixelStride();
+    }
+    int[] pixels = converter.convertYuv420(planeBuffers, rowStrides, pixelStrides,
+        image.getWidth(), image.getHeight(), image.getImageInfo().getRotationDegrees(), false);
+    return toBitmap(pixels);
+  }
+
+  private Bitmap toBitmap(int[] pixels) {
+    int width = converter.getOutputWidth();
+    int height = converter.getOutputHeight();
+    Bitmap bitmap = bitmaps[next];
+    if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+      // The frame size only changes when the camera is switched.
+      bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+      bitmaps[next] = bitmap;
+    }
+    next = (next + 1) % POOL_SIZE;
+    bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+    return bitmap;
+  }
+}
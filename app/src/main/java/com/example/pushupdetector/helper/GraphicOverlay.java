@@ -5,15 +5,20 @@ import static java.lang.Math.min;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.util.AttributeSet;
 import android.view.View;
 
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.trace.Tracer;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ObjectArrays;
 import com.google.common.primitives.Ints;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -38,6 +43,9 @@ import java.util.List;
 public class GraphicOverlay extends View {
   private final Object lock = new Object();
   private final List<Graphic> graphics = new ArrayList<>();
+  // Graphics kept across clear(), drawn on top of the others. The array is replaced, never
+  // modified, so onDraw reads it without the lock.
+  private volatile Graphic[] retainedGraphics = new Graphic[0];
   // Matrix for transforming from image coordinates to overlay view coordinates.
   private final Matrix transformationMatrix = new Matrix();
 
@@ -54,6 +62,8 @@ public class GraphicOverlay extends View {
   private float postScaleHeightOffset;
   private boolean isImageFlipped;
   private boolean needUpdateTransformation = true;
+  // The frame whose results are drawn, to trace the drawing.
+  private volatile long frameId;
 
   /**
    * Base class for a custom graphics object to be rendered within the graphic overlay. Subclass
@@ -159,8 +169,20 @@ public class GraphicOverlay extends View {
       if (!visualizeZ) {
         return;
       }
+      paint.setColor(
+          getColorByZValue(canvas, rescaleZForVisualization, zInImagePixel, zMin, zMax));
+    }
 
-      // When visualizeZ is true, sets up the paint to different colors based on z values.
+    /**
+     * Returns the color that {@link #updatePaintColorByZValue} sets for {@code zInImagePixel}, so
+     * that graphics can pick the colors of many items before drawing them.
+     */
+    public int getColorByZValue(
+        Canvas canvas,
+        boolean rescaleZForVisualization,
+        float zInImagePixel,
+        float zMin,
+        float zMax) {
       // Gets the range of z value.
       float zLowerBoundInScreenPixel;
       float zUpperBoundInScreenPixel;
@@ -178,19 +200,19 @@ public class GraphicOverlay extends View {
       float zInScreenPixel = scale(zInImagePixel);
 
       if (zInScreenPixel < 0) {
-        // Sets up the paint to be red if the item is in front of the z origin.
+        // Red if the item is in front of the z origin.
         // Maps values within [zLowerBoundInScreenPixel, 0) to [255, 0) and use it to control the
         // color. The larger the value is, the more red it will be.
         int v = (int) (zInScreenPixel / zLowerBoundInScreenPixel * 255);
         v = Ints.constrainToRange(v, 0, 255);
-        paint.setARGB(255, 255, 255 - v, 255 - v);
+        return Color.argb(255, 255, 255 - v, 255 - v);
       } else {
-        // Sets up the paint to be blue if the item is behind the z origin.
+        // Blue if the item is behind the z origin.
         // Maps values within [0, zUpperBoundInScreenPixel] to [0, 255] and use it to control the
         // color. The larger the value is, the more blue it will be.
         int v = (int) (zInScreenPixel / zUpperBoundInScreenPixel * 255);
         v = Ints.constrainToRange(v, 0, 255);
-        paint.setARGB(255, 255 - v, 255 - v, 255);
+        return Color.argb(255, 255 - v, 255 - v, 255);
       }
     }
   }
@@ -210,6 +232,11 @@ public class GraphicOverlay extends View {
     postInvalidate();
   }
 
+  /** Sets the id of the frame whose results are drawn next, to trace the drawing. */
+  public void setFrameId(long frameId) {
+    this.frameId = frameId;
+  }
+
   /** Adds a graphic to the overlay. */
   public void add(Graphic graphic) {
     synchronized (lock) {
@@ -225,6 +252,28 @@ public class GraphicOverlay extends View {
     postInvalidate();
   }
 
+  /**
+   * Adds a graphic that stays on the overlay until {@link #removeRetained}, rather than until the
+   * next {@link #clear()}. For graphics that update themselves every frame, which then don't have
+   * to be added again under the lock that drawing holds.
+   */
+  public void addRetained(Graphic graphic) {
+    synchronized (lock) {
+      retainedGraphics = ObjectArrays.concat(retainedGraphics, graphic);
+    }
+    postInvalidate();
+  }
+
+  /** Removes a graphic added with {@link #addRetained}. */
+  public void removeRetained(Graphic graphic) {
+    synchronized (lock) {
+      List<Graphic> graphics = new ArrayList<>(Arrays.asList(retainedGraphics));
+      graphics.remove(graphic);
+      retainedGraphics = graphics.toArray(new Graphic[0]);
+    }
+    postInvalidate();
+  }
+
   /**
    * Sets the source information of the image being processed by detectors, including size and
    * whether it is flipped, which informs how to transform image coordinates later.
@@ -288,12 +337,20 @@ public class GraphicOverlay extends View {
   protected void onDraw(Canvas canvas) {
     super.onDraw(canvas);
 
+    long startNanos = System.nanoTime();
+    Tracer.beginSection(Tracer.OVERLAY_DRAW, frameId);
     synchronized (lock) {
       updateTransformationIfNeeded();
 
-      for (Graphic graphic : graphics) {
-        graphic.draw(canvas);
+      // Index loop, as iterating would allocate an iterator per draw.
+      for (int i = 0; i < graphics.size(); i++) {
+        graphics.get(i).draw(canvas);
       }
     }
+    for (Graphic graphic : retainedGraphics) {
+      graphic.draw(canvas);
+    }
+    Tracer.endSection();
+    FrameMetrics.record(FrameMetrics.Stage.OVERLAY_DRAW, System.nanoTime() - startNanos);
   }
 }
@@ -0,0 +1,106 @@
+package com.example.pushupdetector.helper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts the planes of a YUV_420_888 image to NV21.
+ *
+ * <p>Works on the plane buffers and strides rather than on {@code android.media.Image.Plane}, so
+ * that it has no Android dependencies and can be tested and benchmarked on a JVM.
+ */
+public class Nv21Converter {
+  private Nv21Converter() {}
+
+  /**
+   * Converts YUV_420_888 to NV21 bytebuffer.
+   *
+   * <p>The NV21 format consists of a single byte array containing the Y, U and V values. For an
+   * image of size S, the first S positions of the array contain all the Y values. The remaining
+   * positions contain interleaved V and U values. U and V are subsampled by a factor of 2 in both
+   * dimensions, so there are S/4 U values and S/4 V values. In summary, the NV21 array will contain
+   * S Y values followed by S/4 VU values: YYYYYYYYYYYYYY(...)YVUVUVUVU(...)VU
+   *
+   * <p>YUV_420_888 is a generic format that can describe any YUV image where U and V are subsampled
+   * by a factor of 2 in both dimensions. The Y plane is guaranteed not to be interleaved, so we can
+   * just copy its values into the first part of the NV21 array. The U and V planes may already have
+   * the representation in the NV21 format. This happens if the planes share the same buffer, the V
+   * buffer is one position before the U buffer and the planes have a pixelStride of 2. If this is
+   * case, we can just copy them to the NV21 array.
+   *
+   * @param planeBuffers the Y, U and V plane buffers.
+   * @param rowStrides the row stride of every plane.
+   * @param pixelStrides the pixel stride of every plane.
+   */
+  public static ByteBuffer yuv420ThreePlanesToNV21(
+      ByteBuffer[] planeBuffers, int[] rowStrides, int[] pixelStrides, int width, int height) {
+    byte[] out = new byte[nv21Size(width, height)];
+    return yuv420ThreePlanesToNV21(planeBuffers, rowStrides, pixelStrides, width, height, out);
+  }
+
+  /**
+   * Same as {@link #yuv420ThreePlanesToNV21(ByteBuffer[], int[], int[], int, int)}, but writes to
+   * {@code out}, e.g. reused across frames, of at least {@link #nv21Size} bytes.
+   */
+  public static ByteBuffer yuv420ThreePlanesToNV21(ByteBuffer[] planeBuffers, int[] rowStrides,
+      int[] pixelStrides, int width, int height, byte[] out) {
+    int imageSize = width * height;
+
+    if (areUVPlanesNV21(planeBuffers, width, height)) {
+      // Copy the Y values.
+      planeBuffers[0].get(out, 0, imageSize);
+
+      ByteBuffer uBuffer = planeBuffers[1];
+      ByteBuffer vBuffer = planeBuffers[2];
+      // Get the first V value from the V buffer, since the U buffer does not contain it.
+      vBuffer.get(out, imageSize, 1);
+      // Copy the first U value and the remaining VU values from the U buffer.
+      uBuffer.get(out, imageSize + 1, 2 * imageSize / 4 - 1);
+    } else {
+      // Fallback to unpacking the planes row by row, which is slower but also works.
+      // Unpack Y.
+      PlaneUnpacker.unpackPlane(
+          planeBuffers[0], rowStrides[0], pixelStrides[0], width, height, out, 0, 1);
+      // Unpack U.
+      PlaneUnpacker.unpackPlane(
+          planeBuffers[1], rowStrides[1], pixelStrides[1], width, height, out, imageSize + 1, 2);
+      // Unpack V.
+      PlaneUnpacker.unpackPlane(
+          planeBuffers[2], rowStrides[2], pixelStrides[2], width, height, out, imageSize, 2);
+    }
+
+    return ByteBuffer.wrap(out, 0, nv21Size(width, height));
+  }
+
+  /** Returns the size in bytes of an NV21 image. */
+  public static int nv21Size(int width, int height) {
+    int imageSize = width * height;
+    return imageSize + 2 * (imageSize / 4);
+  }
+
+  /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
+  private static boolean areUVPlanesNV21(ByteBuffer[] planeBuffers, int width, int height) {
+    int imageSize = width * height;
+
+    ByteBuffer uBuffer = planeBuffers[1];
+    ByteBuffer vBuffer = planeBuffers[2];
+
+    // Backup buffer properties.
+    int vBufferPosition = vBuffer.position();
+    int uBufferLimit = uBuffer.limit();
+
+    // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
+    vBuffer.position(vBufferPosition + 1);
+    // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
+    uBuffer.limit(uBufferLimit - 1);
+
+    // Check that the buffers are equal and have the expected number of elements.
+    boolean areNV21 =
+        (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
+
+    // Restore buffers to their initial state.
+    vBuffer.position(vBufferPosition);
+    uBuffer.limit(uBufferLimit);
+
+    return areNV21;
+  }
+}
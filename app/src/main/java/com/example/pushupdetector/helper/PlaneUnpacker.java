@@ -0,0 +1,101 @@
+package com.example.pushupdetector.helper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Unpacks an image plane, with any row and pixel strides, into a byte array with no row padding,
+ * e.g. the planes of a YUV_420_888 image into NV21, see {@link Nv21Converter}.
+ *
+ * <p>Rows are read with bulk copies rather than one {@code ByteBuffer.get(index)} per pixel:
+ * straight into the output when neither side is interleaved, otherwise into a scratch row that is
+ * then spread to the output. The scratch row is kept per thread and only grows, so converting
+ * frames of the same size allocates nothing.
+ */
+public class PlaneUnpacker {
+  private static final ThreadLocal<byte[]> scratchRow = new ThreadLocal<>();
+
+  private PlaneUnpacker() {}
+
+  /**
+   * Unpacks an image plane into a byte array.
+   *
+   * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
+   * spaced by 'pixelStride'. Note that there is no row padding on the output. The position of
+   * {@code buffer} is left unchanged.
+   */
+  public static void unpackPlane(ByteBuffer buffer, int planeRowStride, int planePixelStride,
+      int width, int height, byte[] out, int offset, int pixelStride) {
+    int numRow = numRows(buffer, planeRowStride);
+    if (numRow == 0) {
+      return;
+    }
+    int numCol = numCols(width, height, numRow);
+    unpackRows(buffer.duplicate(), planeRowStride, planePixelStride, numCol, numRow,
+        out, offset, pixelStride);
+  }
+
+  // Compute the size of the current plane.
+  // We assume that it has the aspect ratio as the original image.
+  private static int numRows(ByteBuffer buffer, int planeRowStride) {
+    return (buffer.limit() + planeRowStride - 1) / planeRowStride;
+  }
+
+  private static int numCols(int width, int height, int numRow) {
+    int scaleFactor = height / numRow;
+    return width / scaleFactor;
+  }
+
+  /** Unpacks the first {@code numRow} rows, reading through {@code buffer}. */
+  private static void unpackRows(ByteBuffer buffer, int planeRowStride, int planePixelStride,
+      int numCol, int numRow, byte[] out, int offset, int pixelStride) {
+    // The last row may end at the last pixel, without padding.
+    int rowLength = (numCol - 1) * planePixelStride + 1;
+    int outputPos = offset;
+    if (planePixelStride == 1 && pixelStride == 1) {
+      for (int row = 0; row < numRow; row++) {
+        buffer.position(row * planeRowStride);
+        buffer.get(out, outputPos, numCol);
+        outputPos += numCol;
+      }
+      return;
+    }
+
+    byte[] scratch = scratchRow(rowLength);
+    for (int row = 0; row < numRow; row++) {
+      buffer.position(row * planeRowStride);
+      buffer.get(scratch, 0, rowLength);
+      spread(scratch, planePixelStride, numCol, out, outputPos, pixelStride);
+      outputPos += numCol * pixelStride;
+    }
+  }
+
+  /** Returns this thread's scratch row, grown to at least {@code length} bytes. */
+  private static byte[] scratchRow(int length) {
+    byte[] scratch = scratchRow.get();
+    if (scratch == null || scratch.length < length) {
+      scratch = new byte[length];
+      scratchRow.set(scratch);
+    }
+    return scratch;
+  }
+
+  /** Copies {@code count} values, {@code fromStride} apart, to {@code toStride} apart. */
+  private static void spread(
+      byte[] from, int fromStride, int count, byte[] to, int toOffset, int toStride) {
+    // NV21 chroma is every other byte, from packed or interleaved planes. Constant strides let the
+    // compiler unroll these loops.
+    if (toStride == 2 && fromStride == 1) {
+      for (int i = 0; i < count; i++) {
+        to[toOffset + 2 * i] = from[i];
+      }
+    } else if (toStride == 2 && fromStride == 2) {
+      for (int i = 0; i < count; i++) {
+        to[toOffset + 2 * i] = from[2 * i];
+      }
+    } else {
+      for (int i = 0; i < count; i++) {
+        to[toOffset + i * toStride] = from[i * fromStride];
+      }
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package com.example.pushupdetector.helper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts NV21 and YUV_420_888 images to ARGB_8888 pixels, rotated and mirrored in the same pass.
+ *
+ * <p>Colors are converted with the full range BT.601 equations of JPEG, in 16.16 fixed point, so
+ * that the pixels match those of compressing the image with {@code YuvImage} and decoding it,
+ * without the codec round trip and its allocations. The pixels are written to an array that is
+ * reused for every image of the same size, ready for {@code Bitmap.setPixels}.
+ *
+ * <p>Works on byte buffers and strides rather than on {@code android.media.Image}, so that it has
+ * no Android dependencies and can be tested and benchmarked on a JVM. Not thread safe.
+ */
+public class YuvToArgbConverter {
+  private static final int SHIFT = 16;
+  private static final int HALF = 1 << (SHIFT - 1);
+  // 1.402, 0.344136, 0.714136 and 1.772 in 16.16 fixed point.
+  private static final int V_TO_R = 91881;
+  private static final int U_TO_G = 22554;
+  private static final int V_TO_G = 46802;
+  private static final int U_TO_B = 116130;
+
+  private int[] pixels = new int[0];
+  private int outputWidth;
+  private int outputHeight;
+
+  // Rows of the plane buffers that have no backing array.
+  private byte[] yRow = new byte[0];
+  private byte[] uRow = new byte[0];
+  private byte[] vRow = new byte[0];
+
+  /**
+   * Converts an NV21 image, rotated clockwise by {@code rotationDegrees} and then mirrored along X
+   * if {@code flipX}, as {@code BitmapUtils} does.
+   *
+   * @return the pixels, row by row, of the {@link #getOutputWidth()} x {@link #getOutputHeight()}
+   *     output. The array is reused by the next conversion and may be larger than the output.
+   */
+  public int[] convertNv21(
+      ByteBuffer nv21, int width, int height, int rotationDegrees, boolean flipX) {
+    prepareOutput(width, height, rotationDegrees);
+    int imageSize = width * height;
+    int uvRowSize = 2 * ((width + 1) / 2);
+    for (int row = 0; row < height; row++) {
+      int yOffset = row * width;
+      int uvOffset = imageSize + (row / 2) * uvRowSize;
+      if (nv21.hasArray()) {
+        byte[] array = nv21.array();
+        yOffset += nv21.arrayOffset();
+        uvOffset += nv21.arrayOffset();
+        // V comes first in each chroma pair.
+        convertRow(array, yOffset, array, uvOffset + 1, array, uvOffset, /* uvPixelStride= */ 2,
+            width, height, row, rotationDegrees, flipX);
+      } else {
+        yRow = read(nv21, yOffset, width, yRow);
+        vRow = read(nv21, uvOffset, uvRowSize, vRow);
+        convertRow(yRow, 0, vRow, 1, vRow, 0, /* uvPixelStride= */ 2,
+            width, height, row, rotationDegrees, flipX);
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Converts a YUV_420_888 image, rotated and mirrored as in {@link #convertNv21}.
+   *
+   * @param planeBuffers the Y, U and V plane buffers.
+   * @param rowStrides the row stride of every plane.
+   * @param pixelStrides the pixel stride of every plane. The Y plane is expected to be packed.
+   */
+  public int[] convertYuv420(ByteBuffer[] planeBuffers, int[] rowStrides, int[] pixelStrides,
+      int width, int height, int rotationDegrees, boolean flipX) {
+    prepareOutput(width, height, rotationDegrees);
+    int uvWidth = (width + 1) / 2;
+    int uvPixelStride = pixelStrides[1];
+    // The last pixel of a chroma row may be the last byte of the plane, without row padding.
+    int uvRowSize = (uvWidth - 1) * uvPixelStride + 1;
+    for (int row = 0; row < height; row++) {
+      yRow = read(planeBuffers[0], row * rowStrides[0], width, yRow);
+      if (row % 2 == 0) {
+        uRow = read(planeBuffers[1], (row / 2) * rowStrides[1], uvRowSize, uRow);
+        vRow = read(planeBuffers[2], (row / 2) * rowStrides[2], uvRowSize, vRow);
+      }
+      convertRow(yRow, 0, uRow, 0, vRow, 0, uvPixelStride,
+          width, height, row, rotationDegrees, flipX);
+    }
+    return pixels;
+  }
+
+  /** Returns the width of the last output, i.e. the height of the image if rotated by 90. */
+  public int getOutputWidth() {
+    return outputWidth;
+  }
+
+  public int getOutputHeight() {
+    return outputHeight;
+  }
+
+  private void prepareOutput(int width, int height, int rotationDegrees) {
+    boolean transposed = isTransposed(rotationDegrees);
+    outputWidth = transposed ? height : width;
+    outputHeight = transposed ? width : height;
+    if (pixels.length < width * height) {
+      pixels = new int[width * height];
+    }
+  }
+
+  /**
+   * Converts row {@code row} of the image. Chroma values are read every {@code uvPixelStride}
+   * bytes, each one shared by two pixels. The output index of a pixel moves by a fixed step along
+   * the row, which folds the rotation and the mirroring into the loop.
+   */
+  private void convertRow(byte[] y, int yOffset, byte[] u, int uOffset, byte[] v, int vOffset,
+      int uvPixelStride, int width, int height, int row, int rotationDegrees, boolean flipX) {
+    // Output coordinates of the first pixel of the row, and the steps along the row.
+    int outX;
+    int outY;
+    int stepX;
+    int stepY;
+    switch (normalize(rotationDegrees)) {
+      case 90:
+        outX = height - 1 - row;
+        outY = 0;
+        stepX = 0;
+        stepY = 1;
+        break;
+      case 180:
+        outX = width - 1;
+        outY = height - 1 - row;
+        stepX = -1;
+        stepY = 0;
+        break;
+      case 270:
+        outX = row;
+        outY = width - 1;
+        stepX = 0;
+        stepY = -1;
+        break;
+      default:
+        outX = 0;
+        outY = row;
+        stepX = 1;
+        stepY = 0;
+    }
+    if (flipX) {
+      outX = outputWidth - 1 - outX;
+      stepX = -stepX;
+    }
+    int outIndex = outY * outputWidth + outX;
+    int outStep = stepY * outputWidth + stepX;
+
+    int[] pixels = this.pixels;
+    for (int col = 0; col < width; col += 2) {
+      int uvIndex = (col / 2) * uvPixelStride;
+      int uValue = (u[uOffset + uvIndex] & 0xFF) - 128;
+      int vValue = (v[vOffset + uvIndex] & 0xFF) - 128;
+      int r = V_TO_R * vValue + HALF;
+      int g = -U_TO_G * uValue - V_TO_G * vValue + HALF;
+      int b = U_TO_B * uValue + HALF;
+
+      pixels[outIndex] = argb((y[yOffset + col] & 0xFF) << SHIFT, r, g, b);
+      outIndex += outStep;
+      if (col + 1 < width) {
+        pixels[outIndex] = argb((y[yOffset + col + 1] & 0xFF) << SHIFT, r, g, b);
+        outIndex += outStep;
+      }
+    }
+  }
+
+  private static int argb(int y, int r, int g, int b) {
+    return 0xFF000000
+        | (clamp((y + r) >> SHIFT) << 16)
+        | (clamp((y + g) >> SHIFT) << 8)
+        | clamp((y + b) >> SHIFT);
+  }
+
+  // Without branches, which camera noise makes hard to predict.
+  private static int clamp(int value) {
+    value &= ~(value >> 31);
+    return (value | ((255 - value) >> 31)) & 0xFF;
+  }
+
+  private static boolean isTransposed(int rotationDegrees) {
+    int rotation = normalize(rotationDegrees);
+    return rotation == 90 || rotation == 270;
+  }
+
+  private static int normalize(int rotationDegrees) {
+    return ((rotationDegrees % 360) + 360) % 360;
+  }
+
+  /**
+   * Reads up to {@code length} bytes at {@code position} of {@code buffer}, fewer at the end of
+   * the buffer, into {@code row}, grown if needed, and returns it. Leaves the position unchanged.
+   */
+  private static byte[] read(ByteBuffer buffer, int position, int length, byte[] row) {
+    if (row.length < length) {
+      row = new byte[length];
+    }
+    int savedPosition = buffer.position();
+    buffer.position(position);
+    buffer.get(row, 0, Math.min(length, buffer.limit() - position));
+    buffer.position(savedPosition);
+    return row;
+  }
+}
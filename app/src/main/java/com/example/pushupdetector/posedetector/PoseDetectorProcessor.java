@@ -3,14 +3,27 @@
 package com.example.pushupdetector.posedetector;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.example.pushupdetector.helper.GraphicOverlay;
+import com.example.pushupdetector.posedetector.classification.LandmarkFrameQueue;
+import com.example.pushupdetector.posedetector.classification.LandmarkRecorder;
+import com.example.pushupdetector.posedetector.classification.MlKitPoses;
 import com.example.pushupdetector.posedetector.classification.PoseClassifierProcessor;
+import com.example.pushupdetector.posedetector.classification.PoseEmbedding;
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.metrics.FrameRateMeter;
+import com.example.pushupdetector.posedetector.metrics.StageStats;
+import com.example.pushupdetector.posedetector.trace.Tracer;
 import com.google.android.gms.tasks.Task;
 import com.google.android.odml.image.MlImage;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.pose.Pose;
 import com.google.mlkit.vision.pose.PoseDetection;
@@ -18,14 +31,31 @@ import com.google.mlkit.vision.pose.PoseDetector;
 import com.google.mlkit.vision.pose.PoseDetectorOptionsBase;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
-/** A processor to run pose detector. */
+/**
+ * A processor to run pose detector.
+ *
+ * <p>In stream mode, detection and classification are two stages that overlap: once a pose is
+ * detected, its landmarks are copied to a small {@link LandmarkFrameQueue} and the frame is done
+ * with, so the camera can deliver the next one while the classification executor classifies
+ * them. Poses are drawn with the latest classification, which may be a frame behind.
+ */
 public class PoseDetectorProcessor
     extends VisionProcessorBase<PoseDetectorProcessor.PoseWithClassification> {
   private static final String TAG = "PoseDetectorProcessor";
+  // About a second of frames.
+  public static final int MAX_PENDING_POSES = 30;
+  // Classifying takes a few milliseconds, so more than a couple of frames waiting means it can't
+  // keep up, and older frames are better dropped than classified late.
+  private static final int CLASSIFICATION_QUEUE_SIZE = 2;
+  private static final long STATS_LOG_INTERVAL_NANOS = 1_000_000_000L;
 
   private final PoseDetector detector;
 
@@ -34,10 +64,49 @@ public class PoseDetectorProcessor
   private final boolean rescaleZForVisualization;
   private final boolean runClassification;
   private final boolean isStreamMode;
-  private final Context context;
   private final Executor classificationExecutor;
+  @Nullable private final ListenableFuture<PoseClassifierProcessor> classifierFuture;
+  private final NotReadyPolicy notReadyPolicy;
+
+  // Landmarks of detected poses waiting to be classified, and of the one being classified.
+  private final LandmarkFrameQueue classificationQueue =
+      new LandmarkFrameQueue(CLASSIFICATION_QUEUE_SIZE);
+  private final LandmarkFrameQueue.Frame classificationFrame = new LandmarkFrameQueue.Frame();
+  // Landmarks of the last detected pose, only touched on the main thread.
+  private final float[] detectedLandmarks = new float[PoseEmbedding.NUM_LANDMARKS * 3];
+  // Set on the classification executor, drawn on the main thread.
+  private volatile List<String> latestClassificationResult = Collections.emptyList();
+
+  // Poses detected before the classifier was ready. Only touched on the classification executor.
+  private final LandmarkFrameQueue pendingFrames = new LandmarkFrameQueue(MAX_PENDING_POSES);
+  private final LandmarkFrameQueue.Frame pendingFrame = new LandmarkFrameQueue.Frame();
+  private final float[] stillImageLandmarks = new float[PoseEmbedding.NUM_LANDMARKS * 3];
+  private boolean classifierFailed;
+
+  // How long frames spend being detected, waiting to be classified and being classified.
+  private final StageStats detectionStats = new StageStats("Detection");
+  private final StageStats queueStats = new StageStats("Classification queue");
+  private final StageStats classificationStats = new StageStats("Classification");
+  // Marked on the classification executor.
+  private final FrameRateMeter classifiedFrameRate = new FrameRateMeter();
+  private long lastStatsLogNanos;
+  // Set from the main thread, used on the classification executor.
+  @Nullable private volatile LandmarkRecorder landmarkRecorder;
+  // Draws the poses, kept on the overlay across frames. Only touched on the main thread.
+  @Nullable private PoseGraphic poseGraphic;
+  @Nullable private GraphicOverlay poseGraphicOverlay;
+
+  /** What to do with poses detected while the classifier is still loading. */
+  public enum NotReadyPolicy {
+    /** Draw the pose without classifying it. */
+    SKIP,
+    /**
+     * Keep up to {@link #MAX_PENDING_POSES} of the most recent poses and feed them to the
+     * classifier, in order, once it is ready, so the rep counter doesn't miss the first moves.
+     */
+    QUEUE
+  }
 
-  private PoseClassifierProcessor poseClassifierProcessor;
   /** Internal class to hold Pose and classification results. */
   protected static class PoseWithClassification {
     private final Pose pose;
@@ -65,6 +134,35 @@ public class PoseDetectorProcessor
       boolean rescaleZForVisualization,
       boolean runClassification,
       boolean isStreamMode) {
+    this(
+        context,
+        options,
+        showInFrameLikelihood,
+        visualizeZ,
+        rescaleZForVisualization,
+        runClassification,
+        isStreamMode,
+        /* classifierFuture= */ null,
+        NotReadyPolicy.SKIP);
+  }
+
+  /**
+   * Creates a processor that classifies poses with the classifier of {@code classifierFuture},
+   * typically started with {@link PoseClassifierProcessor#loadAsync} before the camera is bound.
+   * If it is null and {@code runClassification} is set, the classifier starts loading now.
+   * Poses detected before the classifier is ready are handled according to {@code
+   * notReadyPolicy}.
+   */
+  public PoseDetectorProcessor(
+      Context context,
+      PoseDetectorOptionsBase options,
+      boolean showInFrameLikelihood,
+      boolean visualizeZ,
+      boolean rescaleZForVisualization,
+      boolean runClassification,
+      boolean isStreamMode,
+      @Nullable ListenableFuture<PoseClassifierProcessor> classifierFuture,
+      NotReadyPolicy notReadyPolicy) {
     super(context);
     this.showInFrameLikelihood = showInFrameLikelihood;
     this.visualizeZ = visualizeZ;
@@ -72,66 +170,240 @@ public class PoseDetectorProcessor
     detector = PoseDetection.getClient(options);
     this.runClassification = runClassification;
     this.isStreamMode = isStreamMode;
-    this.context = context;
+    this.notReadyPolicy = notReadyPolicy;
     classificationExecutor = Executors.newSingleThreadExecutor();
+    if (runClassification && classifierFuture == null) {
+      classifierFuture =
+          PoseClassifierProcessor.loadAsync(context, isStreamMode, classificationExecutor);
+    }
+    this.classifierFuture = classifierFuture;
+    if (runClassification && notReadyPolicy == NotReadyPolicy.QUEUE) {
+      // Classifies the queued poses as soon as the classifier is ready, not with the next frame.
+      classifierFuture.addListener(this::onClassifierLoaded, classificationExecutor);
+    }
   }
 
   public void stop() {
+    // Drops the results still on their way, so that none brings the pose graphic back.
+    super.stop();
+    if (poseGraphic != null) {
+      poseGraphicOverlay.removeRetained(poseGraphic);
+      poseGraphic = null;
+      poseGraphicOverlay = null;
+    }
     detector.close();
   }
 
+  /** Returns the rate at which live frames are classified. */
+  public FrameRateMeter getClassifiedFrameRate() {
+    return classifiedFrameRate;
+  }
+
+  /** Records the landmarks of every following frame with {@code landmarkRecorder}, if not null. */
+  public void setLandmarkRecorder(@Nullable LandmarkRecorder landmarkRecorder) {
+    this.landmarkRecorder = landmarkRecorder;
+  }
+
   protected Task<PoseWithClassification> detectInImage(InputImage image) {
-    return detector
-        .process(image)
-        .continueWith(
-            classificationExecutor,
-            task -> {
-              Pose pose = task.getResult();
-              List<String> classificationResult = new ArrayList<>();
-              if (runClassification) {
-                if (poseClassifierProcessor == null) {
-                  poseClassifierProcessor = new PoseClassifierProcessor(context, isStreamMode);
-                }
-                classificationResult.add(poseClassifierProcessor.getPoseResult(pose));
-              }
-              return new PoseWithClassification(pose, classificationResult);
-            });
+    long frameId = getFrameId();
+    Tracer.beginAsyncSection(Tracer.DETECTION, frameId);
+    return classifyWhenDetected(
+        detector.process(image), frameId, SystemClock.elapsedRealtimeNanos());
   }
 
   protected Task<PoseWithClassification> detectInImage(MlImage image) {
-    return detector
-        .process(image)
-        .continueWith(
-            classificationExecutor,
-            task -> {
-              Pose pose = task.getResult();
-              List<String> classificationResult = new ArrayList<>();
-              if (runClassification) {
-                if (poseClassifierProcessor == null) {
-                  poseClassifierProcessor = new PoseClassifierProcessor(context, isStreamMode);
-                }
-                classificationResult.add(poseClassifierProcessor.getPoseResult(pose));
-              }
-              return new PoseWithClassification(pose, classificationResult);
-            });
+    long frameId = getFrameId();
+    Tracer.beginAsyncSection(Tracer.DETECTION, frameId);
+    return classifyWhenDetected(
+        detector.process(image), frameId, SystemClock.elapsedRealtimeNanos());
+  }
+
+  private Task<PoseWithClassification> classifyWhenDetected(
+      Task<Pose> detection, long frameId, long detectionStartNanos) {
+    if (!isStreamMode) {
+      // A single image is shown with its own classification.
+      return detection.continueWith(
+          classificationExecutor,
+          task -> {
+            Tracer.endAsyncSection(Tracer.DETECTION, frameId);
+            Pose pose = task.getResult();
+            FrameMetrics.record(
+                FrameMetrics.Stage.DETECTION,
+                SystemClock.elapsedRealtimeNanos() - detectionStartNanos);
+            boolean hasLandmarks = MlKitPoses.packLandmarks(pose, stillImageLandmarks);
+            return new PoseWithClassification(
+                pose, recordAndClassify(hasLandmarks ? stillImageLandmarks : null, frameId));
+          });
+    }
+    // On the main thread. The returned task completes here, which releases the camera frame.
+    return detection.continueWith(
+        task -> {
+          Tracer.endAsyncSection(Tracer.DETECTION, frameId);
+          Pose pose = task.getResult();
+          long detectedNanos = SystemClock.elapsedRealtimeNanos();
+          detectionStats.record(detectionStartNanos, detectedNanos);
+          FrameMetrics.record(FrameMetrics.Stage.DETECTION, detectedNanos - detectionStartNanos);
+          boolean hasLandmarks = MlKitPoses.packLandmarks(pose, detectedLandmarks);
+          if (classificationQueue.offer(
+              hasLandmarks ? detectedLandmarks : null, frameId, detectedNanos)) {
+            classificationExecutor.execute(this::drainClassificationQueue);
+          }
+          logStageStats(detectedNanos);
+          return new PoseWithClassification(pose, latestClassificationResult);
+        });
+  }
+
+  @WorkerThread
+  private void drainClassificationQueue() {
+    while (classificationQueue.poll(classificationFrame)) {
+      long startNanos = SystemClock.elapsedRealtimeNanos();
+      queueStats.record(classificationFrame.getTimestampNanos(), startNanos);
+      latestClassificationResult =
+          recordAndClassify(classificationFrame.getLandmarks(), classificationFrame.getFrameId());
+      long endNanos = SystemClock.elapsedRealtimeNanos();
+      classificationStats.record(startNanos, endNanos);
+      classifiedFrameRate.mark(endNanos);
+    }
+  }
+
+  /**
+   * Logs how the stages did since the last log, about a second ago. Busy shares adding up to more
+   * than 100% show that the stages overlap.
+   */
+  private void logStageStats(long nowNanos) {
+    if (nowNanos - lastStatsLogNanos < STATS_LOG_INTERVAL_NANOS) {
+      return;
+    }
+    lastStatsLogNanos = nowNanos;
+    Log.d(TAG, detectionStats.toString());
+    Log.d(TAG, queueStats.toString());
+    Log.d(
+        TAG,
+        classificationStats
+            + ", dropped "
+            + classificationQueue.getDroppedCount()
+            + " of "
+            + classificationQueue.getOfferedCount()
+            + " frames so far");
+    Log.d(
+        TAG,
+        String.format(
+            Locale.US,
+            "Classified frame rate: %.1f (now %.1f)",
+            classifiedFrameRate.getWindowedFps(nowNanos, STATS_LOG_INTERVAL_NANOS),
+            classifiedFrameRate.getInstantaneousFps()));
+    detectionStats.reset();
+    queueStats.reset();
+    classificationStats.reset();
+  }
+
+  /**
+   * Records and classifies the landmarks of a pose, or null if no pose was detected, in frame
+   * {@code frameId}.
+   */
+  @WorkerThread
+  private List<String> recordAndClassify(@Nullable float[] landmarks, long frameId) {
+    Tracer.beginSection(Tracer.CLASSIFICATION, frameId);
+    try {
+      LandmarkRecorder recorder = landmarkRecorder;
+      if (recorder != null) {
+        recorder.record(landmarks);
+      }
+      return classify(landmarks, frameId);
+    } finally {
+      Tracer.endSection();
+    }
+  }
+
+  @WorkerThread
+  private List<String> classify(@Nullable float[] landmarks, long frameId) {
+    List<String> classificationResult = new ArrayList<>();
+    if (!runClassification || classifierFailed) {
+      return classificationResult;
+    }
+    if (!classifierFuture.isDone()) {
+      if (notReadyPolicy == NotReadyPolicy.QUEUE) {
+        // Keeps the most recent ones.
+        pendingFrames.offer(landmarks, frameId, SystemClock.elapsedRealtimeNanos());
+      }
+      return classificationResult;
+    }
+
+    PoseClassifierProcessor poseClassifierProcessor = getLoadedClassifier();
+    if (poseClassifierProcessor == null) {
+      return classificationResult;
+    }
+    // In case this frame runs before the listener on the classifier future does.
+    classifyPendingFrames(poseClassifierProcessor);
+    classificationResult.add(poseClassifierProcessor.getPoseResult(landmarks));
+    return classificationResult;
+  }
+
+  /** Classifies the poses queued while the classifier was loading, once it has loaded. */
+  @WorkerThread
+  private void onClassifierLoaded() {
+    if (classifierFailed || pendingFrames.size() == 0) {
+      return;
+    }
+    PoseClassifierProcessor poseClassifierProcessor = getLoadedClassifier();
+    if (poseClassifierProcessor == null) {
+      return;
+    }
+    String poseResult = classifyPendingFrames(poseClassifierProcessor);
+    if (poseResult != null) {
+      // Shows the reps counted from the queued poses without waiting for the next frame.
+      latestClassificationResult = Collections.singletonList(poseResult);
+    }
+  }
+
+  /** Classifies the queued poses in order, returning the result of the last one, if any. */
+  @WorkerThread
+  @Nullable
+  private String classifyPendingFrames(PoseClassifierProcessor poseClassifierProcessor) {
+    String poseResult = null;
+    while (pendingFrames.poll(pendingFrame)) {
+      poseResult = poseClassifierProcessor.getPoseResult(pendingFrame.getLandmarks());
+    }
+    return poseResult;
+  }
+
+  /** Returns the classifier of the done {@link #classifierFuture}, or null if it failed to load. */
+  @WorkerThread
+  @Nullable
+  private PoseClassifierProcessor getLoadedClassifier() {
+    try {
+      return Futures.getDone(classifierFuture);
+    } catch (ExecutionException | CancellationException e) {
+      Log.e(TAG, "Pose classifier failed to load, poses won't be classified.", e);
+      classifierFailed = true;
+      pendingFrames.clear();
+      return null;
+    }
   }
 
   protected void onSuccess(
       @NonNull PoseWithClassification poseWithClassification,
       @NonNull GraphicOverlay graphicOverlay) {
-    graphicOverlay.add(
-        new PoseGraphic(
-            graphicOverlay,
-            poseWithClassification.pose,
-            showInFrameLikelihood,
-            visualizeZ,
-            rescaleZForVisualization,
-            poseWithClassification.classificationResult));
+    if (poseGraphicOverlay != graphicOverlay) {
+      if (poseGraphic != null) {
+        poseGraphicOverlay.removeRetained(poseGraphic);
+      }
+      poseGraphic =
+          new PoseGraphic(
+              graphicOverlay, showInFrameLikelihood, visualizeZ, rescaleZForVisualization);
+      poseGraphicOverlay = graphicOverlay;
+      graphicOverlay.addRetained(poseGraphic);
+    }
+    poseGraphic.update(
+        poseWithClassification.pose, poseWithClassification.classificationResult);
   }
 
   @Override
   protected void onFailure(@NonNull Exception e) {
     Log.e(TAG, "Pose detection failed!", e);
+    if (poseGraphic != null) {
+      poseGraphic.clear();
+    }
   }
 
   @Override
@@ -1,84 +1,182 @@
-
-
 package com.example.pushupdetector.posedetector;
 
-import static androidx.constraintlayout.helper.widget.MotionEffect.TAG;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.util.Log;
 
 import com.example.pushupdetector.helper.GraphicOverlay;
+import com.example.pushupdetector.posedetector.classification.PoseEmbedding;
 import com.google.mlkit.vision.common.PointF3D;
 import com.google.mlkit.vision.pose.Pose;
 import com.google.mlkit.vision.pose.PoseLandmark;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
-/** Draw the detected pose in preview. */
+/**
+ * Draw the detected pose in preview.
+ *
+ * <p>One graphic is kept on the overlay, with {@link GraphicOverlay#addRetained}, and updated
+ * with the pose of every frame. Poses are copied into one skeleton allocated up front, so that
+ * updates don't allocate. Updates and drawing both run on the main thread, so the skeleton is
+ * never written while it is drawn, and needs no lock.
+ *
+ * <p>The skeleton is drawn in batches: all landmarks are mapped to the view with one {@link
+ * android.graphics.Matrix#mapPoints} call, and the points and lines of each color are drawn with
+ * one {@link Canvas#drawPoints} and one {@link Canvas#drawLines} call.
+ */
 public class PoseGraphic extends GraphicOverlay.Graphic {
 
   private static final float DOT_RADIUS = 8.0f;
   private static final float IN_FRAME_LIKELIHOOD_TEXT_SIZE = 30.0f;
   private static final float STROKE_WIDTH = 10.0f;
   private static final float POSE_CLASSIFICATION_TEXT_SIZE = 60.0f;
+  private static final int NUM_LANDMARKS = PoseEmbedding.NUM_LANDMARKS;
+  // Keeps 4 bits of each channel of the z colors, so that landmarks at about the same depth
+  // share a color, and a draw call.
+  private static final int Z_COLOR_MASK = 0xFFF0F0F0;
+
+  // The lines of the skeleton, as start landmark, end landmark and color when z isn't shown.
+  private static final int[][] CONNECTIONS = {
+    // Face
+    {PoseLandmark.NOSE, PoseLandmark.LEFT_EYE_INNER, Color.WHITE},
+    {PoseLandmark.LEFT_EYE_INNER, PoseLandmark.LEFT_EYE, Color.WHITE},
+    {PoseLandmark.LEFT_EYE, PoseLandmark.LEFT_EYE_OUTER, Color.WHITE},
+    {PoseLandmark.LEFT_EYE_OUTER, PoseLandmark.LEFT_EAR, Color.WHITE},
+    {PoseLandmark.NOSE, PoseLandmark.RIGHT_EYE_INNER, Color.WHITE},
+    {PoseLandmark.RIGHT_EYE_INNER, PoseLandmark.RIGHT_EYE, Color.WHITE},
+    {PoseLandmark.RIGHT_EYE, PoseLandmark.RIGHT_EYE_OUTER, Color.WHITE},
+    {PoseLandmark.RIGHT_EYE_OUTER, PoseLandmark.RIGHT_EAR, Color.WHITE},
+    {PoseLandmark.LEFT_MOUTH, PoseLandmark.RIGHT_MOUTH, Color.WHITE},
+    {PoseLandmark.LEFT_SHOULDER, PoseLandmark.RIGHT_SHOULDER, Color.WHITE},
+    {PoseLandmark.LEFT_HIP, PoseLandmark.RIGHT_HIP, Color.WHITE},
+    // Left body
+    {PoseLandmark.LEFT_SHOULDER, PoseLandmark.LEFT_ELBOW, Color.GREEN},
+    {PoseLandmark.LEFT_ELBOW, PoseLandmark.LEFT_WRIST, Color.GREEN},
+    {PoseLandmark.LEFT_SHOULDER, PoseLandmark.LEFT_HIP, Color.GREEN},
+    {PoseLandmark.LEFT_HIP, PoseLandmark.LEFT_KNEE, Color.GREEN},
+    {PoseLandmark.LEFT_KNEE, PoseLandmark.LEFT_ANKLE, Color.GREEN},
+    {PoseLandmark.LEFT_WRIST, PoseLandmark.LEFT_THUMB, Color.GREEN},
+    {PoseLandmark.LEFT_WRIST, PoseLandmark.LEFT_PINKY, Color.GREEN},
+    {PoseLandmark.LEFT_WRIST, PoseLandmark.LEFT_INDEX, Color.GREEN},
+    {PoseLandmark.LEFT_INDEX, PoseLandmark.LEFT_PINKY, Color.GREEN},
+    {PoseLandmark.LEFT_ANKLE, PoseLandmark.LEFT_HEEL, Color.GREEN},
+    {PoseLandmark.LEFT_HEEL, PoseLandmark.LEFT_FOOT_INDEX, Color.GREEN},
+    // Right body
+    {PoseLandmark.RIGHT_SHOULDER, PoseLandmark.RIGHT_ELBOW, Color.YELLOW},
+    {PoseLandmark.RIGHT_ELBOW, PoseLandmark.RIGHT_WRIST, Color.YELLOW},
+    {PoseLandmark.RIGHT_SHOULDER, PoseLandmark.RIGHT_HIP, Color.YELLOW},
+    {PoseLandmark.RIGHT_HIP, PoseLandmark.RIGHT_KNEE, Color.YELLOW},
+    {PoseLandmark.RIGHT_KNEE, PoseLandmark.RIGHT_ANKLE, Color.YELLOW},
+    {PoseLandmark.RIGHT_WRIST, PoseLandmark.RIGHT_THUMB, Color.YELLOW},
+    {PoseLandmark.RIGHT_WRIST, PoseLandmark.RIGHT_PINKY, Color.YELLOW},
+    {PoseLandmark.RIGHT_WRIST, PoseLandmark.RIGHT_INDEX, Color.YELLOW},
+    {PoseLandmark.RIGHT_INDEX, PoseLandmark.RIGHT_PINKY, Color.YELLOW},
+    {PoseLandmark.RIGHT_ANKLE, PoseLandmark.RIGHT_HEEL, Color.YELLOW},
+    {PoseLandmark.RIGHT_HEEL, PoseLandmark.RIGHT_FOOT_INDEX, Color.YELLOW},
+  };
 
-  private final Pose pose;
   private final boolean showInFrameLikelihood;
   private final boolean visualizeZ;
   private final boolean rescaleZForVisualization;
-  private float zMin = Float.MAX_VALUE;
-  private float zMax = Float.MIN_VALUE;
 
-  private final List<String> poseClassification;
   private final Paint classificationTextPaint;
-  private final Paint leftPaint;
-  private final Paint rightPaint;
-  private final Paint whitePaint;
+  private final Paint inFrameLikelihoodTextPaint;
+  private final Paint pointPaint;
+  private final Paint linePaint;
+
+  // The pose drawn. Only touched on the main thread.
+  private final Skeleton skeleton = new Skeleton();
+
+  // Drawing buffers, only touched on the main thread: view coordinates and colors of the points
+  // and lines, and the ones of a color being batched.
+  private final float[] points = new float[NUM_LANDMARKS * 2];
+  private final int[] pointColors = new int[NUM_LANDMARKS];
+  private final float[] lines = new float[CONNECTIONS.length * 4];
+  private final int[] lineColors = new int[CONNECTIONS.length];
+  private final float[] batch = new float[max(NUM_LANDMARKS * 2, CONNECTIONS.length * 4)];
+  private final boolean[] batched = new boolean[max(NUM_LANDMARKS, CONNECTIONS.length)];
+
+  /** The landmarks of one pose, in image coordinates, with its classification. */
+  private static class Skeleton {
+    // Interleaved x, y, z values, indexed by landmark type.
+    final float[] landmarks = new float[NUM_LANDMARKS * 3];
+    final float[] inFrameLikelihoods = new float[NUM_LANDMARKS];
+    boolean hasPose;
+    float zMin;
+    float zMax;
+    List<String> classification = Collections.emptyList();
+  }
 
   PoseGraphic(
       GraphicOverlay overlay,
-      Pose pose,
       boolean showInFrameLikelihood,
       boolean visualizeZ,
-      boolean rescaleZForVisualization,
-      List<String> poseClassification) {
+      boolean rescaleZForVisualization) {
     super(overlay);
-    this.pose = pose;
     this.showInFrameLikelihood = showInFrameLikelihood;
     this.visualizeZ = visualizeZ;
     this.rescaleZForVisualization = rescaleZForVisualization;
 
-    this.poseClassification = poseClassification;
     classificationTextPaint = new Paint();
     classificationTextPaint.setColor(Color.WHITE);
     classificationTextPaint.setTextSize(POSE_CLASSIFICATION_TEXT_SIZE);
     classificationTextPaint.setShadowLayer(5.0f, 0f, 0f, Color.BLACK);
 
-    whitePaint = new Paint();
-    whitePaint.setStrokeWidth(STROKE_WIDTH);
-    whitePaint.setColor(Color.WHITE);
-    whitePaint.setTextSize(IN_FRAME_LIKELIHOOD_TEXT_SIZE);
-    leftPaint = new Paint();
-    leftPaint.setStrokeWidth(STROKE_WIDTH);
-    leftPaint.setColor(Color.GREEN);
-    rightPaint = new Paint();
-    rightPaint.setStrokeWidth(STROKE_WIDTH);
-    rightPaint.setColor(Color.YELLOW);
+    inFrameLikelihoodTextPaint = new Paint();
+    inFrameLikelihoodTextPaint.setColor(Color.WHITE);
+    inFrameLikelihoodTextPaint.setTextSize(IN_FRAME_LIKELIHOOD_TEXT_SIZE);
+    // Round points of the width of a dot.
+    pointPaint = new Paint();
+    pointPaint.setStrokeWidth(DOT_RADIUS * 2);
+    pointPaint.setStrokeCap(Paint.Cap.ROUND);
+    linePaint = new Paint();
+    linePaint.setStrokeWidth(STROKE_WIDTH);
+  }
+
+  /**
+   * Sets the pose drawn from the next draw on, with the lines of its classification. Must be
+   * called on the main thread. Doesn't allocate.
+   */
+  void update(Pose pose, List<String> poseClassification) {
+    List<PoseLandmark> landmarks = pose.getAllPoseLandmarks();
+    skeleton.hasPose = !landmarks.isEmpty();
+    skeleton.zMin = Float.MAX_VALUE;
+    skeleton.zMax = -Float.MAX_VALUE;
+    // Index loop, as iterating would allocate an iterator per frame.
+    for (int i = 0; i < landmarks.size(); i++) {
+      PoseLandmark landmark = landmarks.get(i);
+      PointF3D position = landmark.getPosition3D();
+      int type = landmark.getLandmarkType();
+      skeleton.landmarks[type * 3] = position.getX();
+      skeleton.landmarks[type * 3 + 1] = position.getY();
+      skeleton.landmarks[type * 3 + 2] = position.getZ();
+      skeleton.inFrameLikelihoods[type] = landmark.getInFrameLikelihood();
+      skeleton.zMin = min(skeleton.zMin, position.getZ());
+      skeleton.zMax = max(skeleton.zMax, position.getZ());
+    }
+    skeleton.classification = poseClassification;
+  }
+
+  /** Stops drawing the pose, until the next {@link #update}. Must be called on the main thread. */
+  void clear() {
+    skeleton.hasPose = false;
+    skeleton.classification = Collections.emptyList();
   }
 
   @Override
   public void draw(Canvas canvas) {
-    List<PoseLandmark> landmarks = pose.getAllPoseLandmarks();
-    if (landmarks.isEmpty()) {
+    if (!skeleton.hasPose) {
       return;
     }
 
     // Draw pose classification text.
+    List<String> poseClassification = skeleton.classification;
     float classificationX = POSE_CLASSIFICATION_TEXT_SIZE * 0.5f;
     for (int i = 0; i < poseClassification.size(); i++) {
       float classificationY =
@@ -88,124 +186,75 @@ public class PoseGraphic extends GraphicOverlay.Graphic {
           poseClassification.get(i), classificationX, classificationY, classificationTextPaint);
     }
 
-    // Draw all the points
-    for (PoseLandmark landmark : landmarks) {
-      drawPoint(canvas, landmark, whitePaint);
-      if (visualizeZ && rescaleZForVisualization) {
-        zMin = min(zMin, landmark.getPosition3D().getZ());
-        zMax = max(zMax, landmark.getPosition3D().getZ());
-      }
+    // Packs the points, with their colors, and maps them all to the view at once.
+    float[] landmarks = skeleton.landmarks;
+    for (int landmark = 0; landmark < NUM_LANDMARKS; landmark++) {
+      points[landmark * 2] = landmarks[landmark * 3];
+      points[landmark * 2 + 1] = landmarks[landmark * 3 + 1];
+      pointColors[landmark] =
+          visualizeZ ? getZColor(canvas, landmarks[landmark * 3 + 2]) : Color.WHITE;
+    }
+    getTransformationMatrix().mapPoints(points);
+    for (int i = 0; i < CONNECTIONS.length; i++) {
+      int start = CONNECTIONS[i][0];
+      int end = CONNECTIONS[i][1];
+      lines[i * 4] = points[start * 2];
+      lines[i * 4 + 1] = points[start * 2 + 1];
+      lines[i * 4 + 2] = points[end * 2];
+      lines[i * 4 + 3] = points[end * 2 + 1];
+      // Gets average z for the current body line
+      float avgZInImagePixel = (landmarks[start * 3 + 2] + landmarks[end * 3 + 2]) / 2;
+      lineColors[i] =
+          visualizeZ ? getZColor(canvas, avgZInImagePixel) : CONNECTIONS[i][2];
     }
 
-    PoseLandmark nose = pose.getPoseLandmark(PoseLandmark.NOSE);
-    PoseLandmark lefyEyeInner = pose.getPoseLandmark(PoseLandmark.LEFT_EYE_INNER);
-    PoseLandmark lefyEye = pose.getPoseLandmark(PoseLandmark.LEFT_EYE);
-    PoseLandmark leftEyeOuter = pose.getPoseLandmark(PoseLandmark.LEFT_EYE_OUTER);
-    PoseLandmark rightEyeInner = pose.getPoseLandmark(PoseLandmark.RIGHT_EYE_INNER);
-    PoseLandmark rightEye = pose.getPoseLandmark(PoseLandmark.RIGHT_EYE);
-    PoseLandmark rightEyeOuter = pose.getPoseLandmark(PoseLandmark.RIGHT_EYE_OUTER);
-    PoseLandmark leftEar = pose.getPoseLandmark(PoseLandmark.LEFT_EAR);
-    PoseLandmark rightEar = pose.getPoseLandmark(PoseLandmark.RIGHT_EAR);
-    PoseLandmark leftMouth = pose.getPoseLandmark(PoseLandmark.LEFT_MOUTH);
-    PoseLandmark rightMouth = pose.getPoseLandmark(PoseLandmark.RIGHT_MOUTH);
-
-    PoseLandmark leftShoulder = pose.getPoseLandmark(PoseLandmark.LEFT_SHOULDER);
-    PoseLandmark rightShoulder = pose.getPoseLandmark(PoseLandmark.RIGHT_SHOULDER);
-    PoseLandmark leftElbow = pose.getPoseLandmark(PoseLandmark.LEFT_ELBOW);
-    PoseLandmark rightElbow = pose.getPoseLandmark(PoseLandmark.RIGHT_ELBOW);
-    PoseLandmark leftWrist = pose.getPoseLandmark(PoseLandmark.LEFT_WRIST);
-    PoseLandmark rightWrist = pose.getPoseLandmark(PoseLandmark.RIGHT_WRIST);
-    PoseLandmark leftHip = pose.getPoseLandmark(PoseLandmark.LEFT_HIP);
-    PoseLandmark rightHip = pose.getPoseLandmark(PoseLandmark.RIGHT_HIP);
-    PoseLandmark leftKnee = pose.getPoseLandmark(PoseLandmark.LEFT_KNEE);
-    PoseLandmark rightKnee = pose.getPoseLandmark(PoseLandmark.RIGHT_KNEE);
-    PoseLandmark leftAnkle = pose.getPoseLandmark(PoseLandmark.LEFT_ANKLE);
-    PoseLandmark rightAnkle = pose.getPoseLandmark(PoseLandmark.RIGHT_ANKLE);
-
-    PoseLandmark leftPinky = pose.getPoseLandmark(PoseLandmark.LEFT_PINKY);
-    PoseLandmark rightPinky = pose.getPoseLandmark(PoseLandmark.RIGHT_PINKY);
-    PoseLandmark leftIndex = pose.getPoseLandmark(PoseLandmark.LEFT_INDEX);
-    PoseLandmark rightIndex = pose.getPoseLandmark(PoseLandmark.RIGHT_INDEX);
-    PoseLandmark leftThumb = pose.getPoseLandmark(PoseLandmark.LEFT_THUMB);
-    PoseLandmark rightThumb = pose.getPoseLandmark(PoseLandmark.RIGHT_THUMB);
-    PoseLandmark leftHeel = pose.getPoseLandmark(PoseLandmark.LEFT_HEEL);
-    PoseLandmark rightHeel = pose.getPoseLandmark(PoseLandmark.RIGHT_HEEL);
-    PoseLandmark leftFootIndex = pose.getPoseLandmark(PoseLandmark.LEFT_FOOT_INDEX);
-    PoseLandmark rightFootIndex = pose.getPoseLandmark(PoseLandmark.RIGHT_FOOT_INDEX);
-
-    // Face
-    drawLine(canvas, nose, lefyEyeInner, whitePaint);
-    drawLine(canvas, lefyEyeInner, lefyEye, whitePaint);
-    drawLine(canvas, lefyEye, leftEyeOuter, whitePaint);
-    drawLine(canvas, leftEyeOuter, leftEar, whitePaint);
-    drawLine(canvas, nose, rightEyeInner, whitePaint);
-    drawLine(canvas, rightEyeInner, rightEye, whitePaint);
-    drawLine(canvas, rightEye, rightEyeOuter, whitePaint);
-    drawLine(canvas, rightEyeOuter, rightEar, whitePaint);
-    drawLine(canvas, leftMouth, rightMouth, whitePaint);
-
-    drawLine(canvas, leftShoulder, rightShoulder, whitePaint);
-    drawLine(canvas, leftHip, rightHip, whitePaint);
-
-    // Left body
-    drawLine(canvas, leftShoulder, leftElbow, leftPaint);
-    drawLine(canvas, leftElbow, leftWrist, leftPaint);
-    drawLine(canvas, leftShoulder, leftHip, leftPaint);
-    drawLine(canvas, leftHip, leftKnee, leftPaint);
-    drawLine(canvas, leftKnee, leftAnkle, leftPaint);
-    drawLine(canvas, leftWrist, leftThumb, leftPaint);
-    drawLine(canvas, leftWrist, leftPinky, leftPaint);
-    drawLine(canvas, leftWrist, leftIndex, leftPaint);
-    drawLine(canvas, leftIndex, leftPinky, leftPaint);
-    drawLine(canvas, leftAnkle, leftHeel, leftPaint);
-    drawLine(canvas, leftHeel, leftFootIndex, leftPaint);
-
-    // Right body
-    drawLine(canvas, rightShoulder, rightElbow, rightPaint);
-    drawLine(canvas, rightElbow, rightWrist, rightPaint);
-    drawLine(canvas, rightShoulder, rightHip, rightPaint);
-    drawLine(canvas, rightHip, rightKnee, rightPaint);
-    drawLine(canvas, rightKnee, rightAnkle, rightPaint);
-    drawLine(canvas, rightWrist, rightThumb, rightPaint);
-    drawLine(canvas, rightWrist, rightPinky, rightPaint);
-    drawLine(canvas, rightWrist, rightIndex, rightPaint);
-    drawLine(canvas, rightIndex, rightPinky, rightPaint);
-    drawLine(canvas, rightAnkle, rightHeel, rightPaint);
-    drawLine(canvas, rightHeel, rightFootIndex, rightPaint);
+    drawByColor(canvas, points, pointColors, NUM_LANDMARKS, /* stride= */ 2, pointPaint);
+    drawByColor(canvas, lines, lineColors, CONNECTIONS.length, /* stride= */ 4, linePaint);
 
     // Draw inFrameLikelihood for all points
     if (showInFrameLikelihood) {
-      for (PoseLandmark landmark : landmarks) {
+      for (int landmark = 0; landmark < NUM_LANDMARKS; landmark++) {
         canvas.drawText(
-            String.format(Locale.US, "%.2f", landmark.getInFrameLikelihood()),
-            translateX(landmark.getPosition().x),
-            translateY(landmark.getPosition().y),
-            whitePaint);
+            String.format(Locale.US, "%.2f", skeleton.inFrameLikelihoods[landmark]),
+            points[landmark * 2],
+            points[landmark * 2 + 1],
+            inFrameLikelihoodTextPaint);
       }
     }
   }
 
-  void drawPoint(Canvas canvas, PoseLandmark landmark, Paint paint) {
-    PointF3D point = landmark.getPosition3D();
-    updatePaintColorByZValue(
-        paint, canvas, visualizeZ, rescaleZForVisualization, point.getZ(), zMin, zMax);
-    canvas.drawCircle(translateX(point.getX()), translateY(point.getY()), DOT_RADIUS, paint);
+  private int getZColor(Canvas canvas, float zInImagePixel) {
+    return getColorByZValue(
+            canvas, rescaleZForVisualization, zInImagePixel, skeleton.zMin, skeleton.zMax)
+        & Z_COLOR_MASK;
   }
 
-  void drawLine(Canvas canvas, PoseLandmark startLandmark, PoseLandmark endLandmark, Paint paint) {
-    PointF3D start = startLandmark.getPosition3D();
-    PointF3D end = endLandmark.getPosition3D();
-
-    // Gets average z for the current body line
-    float avgZInImagePixel = (start.getZ() + end.getZ()) / 2;
-    updatePaintColorByZValue(
-        paint, canvas, visualizeZ, rescaleZForVisualization, avgZInImagePixel, zMin, zMax);
-
-    canvas.drawLine(
-        translateX(start.getX()),
-        translateY(start.getY()),
-        translateX(end.getX()),
-        translateY(end.getY()),
-        paint);
+  /**
+   * Draws {@code count} points, or lines, of {@code coordinates}, with one call per color.
+   *
+   * @param stride 2 for points given as x, y, 4 for lines given as start x, y and end x, y.
+   */
+  private void drawByColor(
+      Canvas canvas, float[] coordinates, int[] colors, int count, int stride, Paint paint) {
+    Arrays.fill(batched, 0, count, false);
+    for (int i = 0; i < count; i++) {
+      if (batched[i]) {
+        continue;
+      }
+      int batchSize = 0;
+      for (int j = i; j < count; j++) {
+        if (!batched[j] && colors[j] == colors[i]) {
+          System.arraycopy(coordinates, j * stride, batch, batchSize, stride);
+          batchSize += stride;
+          batched[j] = true;
+        }
+      }
+      paint.setColor(colors[i]);
+      if (stride == 4) {
+        canvas.drawLines(batch, 0, batchSize, paint);
+      } else {
+        canvas.drawPoints(batch, 0, batchSize, paint);
+      }
+    }
   }
 }
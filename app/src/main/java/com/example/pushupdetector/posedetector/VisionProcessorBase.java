@@ -21,11 +21,16 @@ import androidx.annotation.RequiresApi;
 import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageProxy;
 
-import com.example.pushupdetector.helper.BitmapUtils;
 import com.example.pushupdetector.helper.CameraImageGraphic;
+import com.example.pushupdetector.helper.FrameBitmapConverter;
 import com.example.pushupdetector.helper.FrameMetadata;
 import com.example.pushupdetector.helper.GraphicOverlay;
 import com.example.pushupdetector.helper.ScopedExecutor;
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.metrics.FrameMetricsGraphic;
+import com.example.pushupdetector.posedetector.metrics.FrameRateMeter;
+import com.example.pushupdetector.posedetector.metrics.LatencyHistogram;
+import com.example.pushupdetector.posedetector.trace.Tracer;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.TaskExecutors;
 import com.google.android.gms.tasks.Tasks;
@@ -37,8 +42,7 @@ import com.google.mlkit.common.MlKitException;
 import com.google.mlkit.vision.common.InputImage;
 
 import java.nio.ByteBuffer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Locale;
 
 /**
  * Abstract base class for vision frame processors. Subclasses need to implement {@link
@@ -52,12 +56,21 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   protected static final String MANUAL_TESTING_LOG = "LogTagForTest";
   private static final String TAG = "VisionProcessorBase";
 
+  private static final long STATS_LOG_INTERVAL_NANOS = 1_000_000_000L;
+
   private final ActivityManager activityManager;
-  private final Timer fpsTimer = new Timer();
   private final ScopedExecutor executor;
+  // Converts live frames to the bitmaps drawn behind the results, reusing them.
+  private final FrameBitmapConverter frameBitmapConverter = new FrameBitmapConverter();
 
   // Whether this processor is already shut down
   private boolean isShutdown;
+  // Whether to draw the stage latencies of FrameMetrics over live frames.
+  private boolean showMetricsHud;
+  // The retained graphic that draws them while shown, and the overlay it is on. Only touched on
+  // the main thread.
+  @Nullable private FrameMetricsGraphic metricsGraphic;
+  @Nullable private GraphicOverlay metricsGraphicOverlay;
 
   // Used to calculate latency, running in the same thread, no sync needed.
   private int numRuns = 0;
@@ -68,9 +81,14 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   private long maxDetectorMs = 0;
   private long minDetectorMs = Long.MAX_VALUE;
 
-  // Frame count that have been processed so far in an one second interval to calculate FPS.
-  private int frameProcessedInOneSecondInterval = 0;
-  private int framesPerSecond = 0;
+  // Rates of the frames received and of those whose results were drawn.
+  private final FrameRateMeter inputFrameRate = new FrameRateMeter();
+  private final FrameRateMeter detectedFrameRate = new FrameRateMeter();
+  private long lastStatsLogNanos;
+
+  // Id of the frame being processed, to trace it through the stages. Frames are handed to the
+  // detector one at a time, on the thread that delivers them.
+  private long frameId;
 
   // To keep the latest images and its metadata.
   @GuardedBy("this")
@@ -88,22 +106,13 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   protected VisionProcessorBase(Context context) {
     activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
     executor = new ScopedExecutor(TaskExecutors.MAIN_THREAD);
-    fpsTimer.scheduleAtFixedRate(
-        new TimerTask() {
-          @Override
-          public void run() {
-            framesPerSecond = frameProcessedInOneSecondInterval;
-            frameProcessedInOneSecondInterval = 0;
-          }
-        },
-        /* delay= */ 0,
-        /* period= */ 1000);
   }
 
   // -----------------Code for processing single still image----------------------------------------
   @Override
   public void processBitmap(Bitmap bitmap, final GraphicOverlay graphicOverlay) {
     long frameStartMs = SystemClock.elapsedRealtime();
+    frameId++;
 
     if (isMlImageEnabled(graphicOverlay.getContext())) {
       MlImage mlImage = new BitmapMlImageBuilder(bitmap).build();
@@ -130,6 +139,7 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   @Override
   public synchronized void processByteBuffer(
       ByteBuffer data, final FrameMetadata frameMetadata, final GraphicOverlay graphicOverlay) {
+    inputFrameRate.mark(SystemClock.elapsedRealtimeNanos());
     latestImage = data;
     latestImageMetaData = frameMetadata;
     if (processingImage == null && processingMetaData == null) {
@@ -150,10 +160,17 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   private void processImage(
       ByteBuffer data, final FrameMetadata frameMetadata, final GraphicOverlay graphicOverlay) {
     long frameStartMs = SystemClock.elapsedRealtime();
+    frameId++;
 
     // If live viewport is on (that is the underneath surface view takes care of the camera preview
     // drawing), skip the unnecessary bitmap creation that used for the manual preview drawing.
-    Bitmap bitmap = BitmapUtils.getBitmap(data, frameMetadata);
+    long conversionStartNanos = System.nanoTime();
+    Tracer.beginFrame(frameId);
+    Tracer.beginSection(Tracer.CONVERSION, frameId);
+    Bitmap bitmap = frameBitmapConverter.getBitmap(data, frameMetadata);
+    Tracer.endSection();
+    FrameMetrics.record(
+        FrameMetrics.Stage.YUV_CONVERSION, System.nanoTime() - conversionStartNanos);
 
     if (isMlImageEnabled(graphicOverlay.getContext())) {
       MlImage mlImage =
@@ -192,12 +209,20 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
   @RequiresApi(VERSION_CODES.LOLLIPOP)
   public void processImageProxy(ImageProxy image, GraphicOverlay graphicOverlay) {
     long frameStartMs = SystemClock.elapsedRealtime();
+    inputFrameRate.mark(SystemClock.elapsedRealtimeNanos());
     if (isShutdown) {
       image.close();
       return;
     }
+    frameId++;
 
-    Bitmap bitmap = BitmapUtils.getBitmap(image);
+    long conversionStartNanos = System.nanoTime();
+    Tracer.beginFrame(frameId);
+    Tracer.beginSection(Tracer.CONVERSION, frameId);
+    Bitmap bitmap = frameBitmapConverter.getBitmap(image);
+    Tracer.endSection();
+    FrameMetrics.record(
+        FrameMetrics.Stage.YUV_CONVERSION, System.nanoTime() - conversionStartNanos);
 
     if (isMlImageEnabled(graphicOverlay.getContext())) {
       MlImage mlImage =
@@ -215,7 +240,8 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
           // images when finished using them. Otherwise, new images may not be received or the
           // camera may stall.
           // Currently MlImage doesn't support ImageProxy directly, so we still need to call
-          // ImageProxy.close() here.
+          // ImageProxy.close() here. The task completes once the detector is done with the image,
+          // so the image is closed then, not after any slower work on the results.
           .addOnCompleteListener(results -> image.close());
       return;
     }
@@ -261,17 +287,21 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
       boolean shouldShowFps,
       long frameStartMs) {
     final long detectorStartMs = SystemClock.elapsedRealtime();
+    final long frameId = this.frameId;
     return task.addOnSuccessListener(
             executor,
             results -> {
               long endMs = SystemClock.elapsedRealtime();
+              long endNanos = SystemClock.elapsedRealtimeNanos();
               long currentFrameLatencyMs = endMs - frameStartMs;
               long currentDetectorLatencyMs = endMs - detectorStartMs;
               if (numRuns >= 500) {
                 resetLatencyStats();
               }
               numRuns++;
-              frameProcessedInOneSecondInterval++;
+              if (shouldShowFps) {
+                detectedFrameRate.mark(endNanos);
+              }
               totalFrameMs += currentFrameLatencyMs;
               maxFrameMs = max(currentFrameLatencyMs, maxFrameMs);
               minFrameMs = min(currentFrameLatencyMs, minFrameMs);
@@ -279,10 +309,19 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
               maxDetectorMs = max(currentDetectorLatencyMs, maxDetectorMs);
               minDetectorMs = min(currentDetectorLatencyMs, minDetectorMs);
 
-              // Only log inference info once per second. When frameProcessedInOneSecondInterval is
-              // equal to 1, it means this is the first frame processed during the current second.
-              if (frameProcessedInOneSecondInterval == 1) {
+              // Only log inference info once per second.
+              if (endNanos - lastStatsLogNanos >= STATS_LOG_INTERVAL_NANOS) {
+                lastStatsLogNanos = endNanos;
                 Log.d(TAG, "Num of Runs: " + numRuns);
+                Log.d(
+                    TAG,
+                    String.format(
+                        Locale.US,
+                        "Frame rate: input=%.1f (now %.1f), detected=%.1f (now %.1f)",
+                        inputFrameRate.getWindowedFps(endNanos, STATS_LOG_INTERVAL_NANOS),
+                        inputFrameRate.getInstantaneousFps(),
+                        detectedFrameRate.getWindowedFps(endNanos, STATS_LOG_INTERVAL_NANOS),
+                        detectedFrameRate.getInstantaneousFps()));
                 Log.d(
                     TAG,
                     "Frame latency: max="
@@ -303,13 +342,30 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
                 activityManager.getMemoryInfo(mi);
                 long availableMegs = mi.availMem / 0x100000L;
                 Log.d(TAG, "Memory available in system: " + availableMegs + " MB");
+                for (FrameMetrics.Stage stage : FrameMetrics.Stage.values()) {
+                  LatencyHistogram histogram = FrameMetrics.getHistogram(stage);
+                  if (histogram.getCount() > 0) {
+                    Log.d(
+                        TAG,
+                        String.format(
+                            Locale.US,
+                            "%s latency: p50=%.2f, p90=%.2f, p99=%.2f, max=%.2f",
+                            stage.getDisplayName(),
+                            FrameMetrics.toMs(histogram.getPercentileNanos(50)),
+                            FrameMetrics.toMs(histogram.getPercentileNanos(90)),
+                            FrameMetrics.toMs(histogram.getPercentileNanos(99)),
+                            FrameMetrics.toMs(histogram.getMaxNanos())));
+                  }
+                }
               }
 
               graphicOverlay.clear();
+              graphicOverlay.setFrameId(frameId);
               if (originalCameraImage != null) {
                 graphicOverlay.add(new CameraImageGraphic(graphicOverlay, originalCameraImage));
               }
               VisionProcessorBase.this.onSuccess(results, graphicOverlay);
+              updateMetricsHud(graphicOverlay, shouldShowFps && showMetricsHud);
               graphicOverlay.postInvalidate();
             })
         .addOnFailureListener(
@@ -329,12 +385,57 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
             });
   }
 
+  /** Sets whether to draw the latency percentiles of {@link FrameMetrics} over live frames. */
+  public void setShowMetricsHud(boolean showMetricsHud) {
+    this.showMetricsHud = showMetricsHud;
+  }
+
+  /**
+   * Keeps the metrics HUD on {@code graphicOverlay} while {@code show}, and off it otherwise. The
+   * HUD is one retained graphic, which redraws the latest latencies on every draw.
+   */
+  private void updateMetricsHud(GraphicOverlay graphicOverlay, boolean show) {
+    if (metricsGraphic != null && (!show || metricsGraphicOverlay != graphicOverlay)) {
+      removeMetricsHud();
+    }
+    if (show && metricsGraphic == null) {
+      metricsGraphic = new FrameMetricsGraphic(graphicOverlay);
+      metricsGraphicOverlay = graphicOverlay;
+      graphicOverlay.addRetained(metricsGraphic);
+    }
+  }
+
+  private void removeMetricsHud() {
+    if (metricsGraphic != null) {
+      metricsGraphicOverlay.removeRetained(metricsGraphic);
+      metricsGraphic = null;
+      metricsGraphicOverlay = null;
+    }
+  }
+
+  /** Returns the rate at which live frames are received, including those dropped. */
+  public FrameRateMeter getInputFrameRate() {
+    return inputFrameRate;
+  }
+
+  /** Returns the rate at which the results of live frames are drawn. */
+  public FrameRateMeter getDetectedFrameRate() {
+    return detectedFrameRate;
+  }
+
+  /**
+   * Returns the id of the frame being processed, which {@link #detectInImage} can trace it with.
+   */
+  protected long getFrameId() {
+    return frameId;
+  }
+
   @Override
   public void stop() {
     executor.shutdown();
     isShutdown = true;
+    removeMetricsHud();
     resetLatencyStats();
-    fpsTimer.cancel();
   }
 
   private void resetLatencyStats() {
@@ -347,6 +448,12 @@ public abstract class VisionProcessorBase<T> implements VisionImageProcessor {
     minDetectorMs = Long.MAX_VALUE;
   }
 
+  /**
+   * Runs the detector on {@code image}. Live CameraX frames are closed once the returned task
+   * completes, and the camera doesn't deliver the next frame until then, so the task should
+   * complete as soon as the detector is done with the image. Slower work on the results is better
+   * done on a stage of its own, as {@link PoseDetectorProcessor} does with classification.
+   */
   protected abstract Task<T> detectInImage(InputImage image);
 
   protected Task<T> detectInImage(MlImage image) {
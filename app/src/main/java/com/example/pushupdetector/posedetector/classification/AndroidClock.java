@@ -0,0 +1,15 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import android.os.SystemClock;
+
+/** A {@link Clock} backed by {@link SystemClock#elapsedRealtime()}. */
+public class AndroidClock implements Clock {
+  public static final AndroidClock INSTANCE = new AndroidClock();
+
+  private AndroidClock() {}
+
+  @Override
+  public long elapsedRealtimeMs() {
+    return SystemClock.elapsedRealtime();
+  }
+}
@@ -0,0 +1,24 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import android.util.Log;
+
+/** Sends the messages of the classification {@link Logger} to {@link Log}. */
+public class AndroidLoggerBackend implements Logger.Backend {
+  public static final AndroidLoggerBackend INSTANCE = new AndroidLoggerBackend();
+
+  private AndroidLoggerBackend() {}
+
+  @Override
+  public boolean isLoggable(String tag, int level) {
+    // Errors and warnings are always logged, as with Log.e() and Log.w().
+    return level >= Logger.WARN || Log.isLoggable(tag, level);
+  }
+
+  @Override
+  public void log(int level, String tag, String message, Throwable throwable) {
+    if (throwable != null) {
+      message = message + '\n' + Log.getStackTraceString(throwable);
+    }
+    Log.println(level, tag, message);
+  }
+}
@@ -0,0 +1,110 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.google.mlkit.vision.pose.Pose;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Records the landmarks of every frame of a session, so that it can be replayed with {@link
+ * ReplayEngine}, e.g. with {@code ./gradlew :pose-core:replay}.
+ *
+ * <p>Frames are timestamped with {@link AndroidClock}, the clock the smoothing of {@link
+ * PoseClassifierProcessor} reads, so a replay smooths exactly as the live session did.
+ */
+public class LandmarkRecorder implements Closeable {
+  private static final String TAG = "LandmarkRecorder";
+  // Under the app's external files, so sessions can be pulled without root.
+  private static final String DIRECTORY = "landmarks";
+
+  private final File file;
+  private final LandmarkStreamWriter writer;
+  private final float[] landmarkBuffer = new float[PoseEmbedding.NUM_LANDMARKS * 3];
+  private boolean stopped;
+
+  /** Starts recording a new session to a file named after the current time. */
+  public static LandmarkRecorder start(Context context) throws IOException {
+    File directory = new File(context.getExternalFilesDir(null), DIRECTORY);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Can't create " + directory);
+    }
+    String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+    return new LandmarkRecorder(
+        new File(directory, "session-" + name + LandmarkStreamWriter.FILE_EXTENSION));
+  }
+
+  private LandmarkRecorder(File file) throws IOException {
+    this.file = file;
+    writer = new LandmarkStreamWriter(new BufferedOutputStream(new FileOutputStream(file)));
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Records the landmarks of {@code pose}, or an empty frame if it has none. Recording stops at
+   * the first write error.
+   */
+  @WorkerThread
+  public synchronized void record(Pose pose) {
+    boolean hasLandmarks = MlKitPoses.packLandmarks(pose, landmarkBuffer);
+    record(hasLandmarks ? landmarkBuffer : null);
+  }
+
+  /**
+   * Records landmarks packed by {@link MlKitPoses#packLandmarks}, or an empty frame if null.
+   * Recording stops at the first write error.
+   */
+  @WorkerThread
+  public synchronized void record(float[] landmarks) {
+    if (stopped) {
+      return;
+    }
+    long timestampMs = AndroidClock.INSTANCE.elapsedRealtimeMs();
+    try {
+      writer.writeFrame(timestampMs, landmarks);
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to record landmarks to " + file + ", recording stopped.", e);
+      close();
+    }
+  }
+
+  /** Writes the buffered frames out, e.g. before the app may be killed in the background. */
+  public synchronized void flush() {
+    if (stopped) {
+      return;
+    }
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to record landmarks to " + file + ", recording stopped.", e);
+      close();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (stopped) {
+      return;
+    }
+    stopped = true;
+    try {
+      writer.close();
+    } catch (IOException e) {
+      Log.e(TAG, "Failed to close " + file, e);
+    }
+    Log.d(TAG, "Recorded " + writer.getFrameCount() + " frames to " + file);
+  }
+}
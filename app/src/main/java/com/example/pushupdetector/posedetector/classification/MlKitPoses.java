@@ -0,0 +1,35 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import com.google.mlkit.vision.common.PointF3D;
+import com.google.mlkit.vision.pose.Pose;
+import com.google.mlkit.vision.pose.PoseLandmark;
+
+import java.util.List;
+
+/** Converts ML Kit {@link Pose}s into the landmarks of the classification code. */
+public class MlKitPoses {
+  private MlKitPoses() {}
+
+  /**
+   * Packs the landmarks of {@code pose} into {@code out} as interleaved x, y, z values, in the
+   * order of {@link LandmarkType}, without allocating.
+   *
+   * @return whether the pose has landmarks; {@code out} is left untouched otherwise.
+   */
+  public static boolean packLandmarks(Pose pose, float[] out) {
+    List<PoseLandmark> landmarks = pose.getAllPoseLandmarks();
+    if (landmarks.isEmpty()) {
+      return false;
+    }
+    // Index loop, as iterating would allocate an iterator per frame.
+    for (int i = 0; i < landmarks.size(); i++) {
+      PoseLandmark landmark = landmarks.get(i);
+      PointF3D position = landmark.getPosition3D();
+      int offset = landmark.getLandmarkType() * 3;
+      out[offset] = position.getX();
+      out[offset + 1] = position.getY();
+      out[offset + 2] = position.getZ();
+    }
+    return true;
+  }
+}
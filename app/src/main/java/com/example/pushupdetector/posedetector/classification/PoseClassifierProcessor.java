@@ -5,6 +5,7 @@ package com.example.pushupdetector.posedetector.classification;
 import static com.example.pushupdetector.MainActivity.mainHandler;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.media.ToneGenerator;
@@ -20,24 +21,27 @@ import androidx.annotation.WorkerThread;
 import com.example.pushupdetector.MessageType;
 import com.example.pushupdetector.R;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.mlkit.vision.pose.Pose;
 
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Accepts a stream of {@link Pose} for classification and Rep counting.
  */
 public class PoseClassifierProcessor {
     public static final String TAG = "PoseClassifierProcessor";
-    private static final String POSE_SAMPLES_FILE = "fitness_pose_samples.csv";
+    private static final String POSE_SAMPLES_FILE = "fitness_pose_samples.bin";
 
-    // Specify classes for which we want rep counting.
+    // Specify classes for which we want rep counting, see {@link #newRepCounters()}.
     // These are the labels in the given {@code POSE_SAMPLES_FILE}. You can set your own class labels
     // for your pose samples.
     private static final String PUSHUPS_CLASS = "pushups_down";
@@ -46,20 +50,34 @@ public class PoseClassifierProcessor {
 
     private final boolean isStreamMode;
 
-    private EMASmoothing emaSmoothing;
-    private RepetitionCounter repCounter;
-    private PoseClassifier poseClassifier;
+    private RepCountingPipeline pipeline;
     private String lastRepResult;
     private int currReps = 0;
+    // Landmarks of the current pose, reused across frames.
+    private final float[] landmarkBuffer = new float[PoseEmbedding.NUM_LANDMARKS * 3];
 
     private final MediaPlayer mediaPlayer;
 
+    /**
+     * Starts loading a {@link PoseClassifierProcessor} (pose samples, classifier and audio) on
+     * {@code executor}, so that the first frames don't block on it.
+     *
+     * @return a future that completes once the processor is ready.
+     */
+    public static ListenableFuture<PoseClassifierProcessor> loadAsync(
+            Context context, boolean isStreamMode, Executor executor) {
+        Context applicationContext = context.getApplicationContext();
+        ListenableFutureTask<PoseClassifierProcessor> loadTask = ListenableFutureTask.create(
+                () -> new PoseClassifierProcessor(applicationContext, isStreamMode));
+        executor.execute(loadTask);
+        return loadTask;
+    }
+
     @WorkerThread
     public PoseClassifierProcessor(Context context, boolean isStreamMode) {
         Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
         this.isStreamMode = isStreamMode;
         if (isStreamMode) {
-            emaSmoothing = new EMASmoothing();
             lastRepResult = "";
         }
 
@@ -70,6 +88,7 @@ public class PoseClassifierProcessor {
             public void handleMessage(@NonNull Message msg) {
                 String message = (String) msg.obj;
                 if (TAG.equals(message)) {
+                    logSkippedFrames();
                     Message toMain = new Message();
                     toMain.arg1 = MessageType.FINISH.ordinal();
                     toMain.obj = currReps;
@@ -85,24 +104,47 @@ public class PoseClassifierProcessor {
     }
 
     private void loadPoseSamples(Context context) {
-        List<PoseSample> poseSamples = new ArrayList<>();
-        try {
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(context.getAssets().open(POSE_SAMPLES_FILE)));
-            String csvLine = reader.readLine();
-            while (csvLine != null) {
-                // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
-                PoseSample poseSample = PoseSample.getPoseSample(csvLine, ",");
-                if (poseSample != null) {
-                    poseSamples.add(poseSample);
-                }
-                csvLine = reader.readLine();
-            }
+        PoseSampleMatrix sampleMatrix;
+        // The asset is stored uncompressed, so it can be mapped straight from the APK.
+        try (AssetFileDescriptor fileDescriptor = context.getAssets().openFd(POSE_SAMPLES_FILE);
+             FileInputStream inputStream = fileDescriptor.createInputStream()) {
+            MappedByteBuffer buffer = inputStream.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY,
+                    fileDescriptor.getStartOffset(),
+                    fileDescriptor.getLength());
+            sampleMatrix = PoseSampleFile.read(buffer);
         } catch (IOException e) {
             Log.e(TAG, "Error when loading pose samples.\n" + e);
+            sampleMatrix = PoseSampleMatrix.fromSamples(Collections.<PoseSample>emptyList());
+        }
+        PoseClassifier poseClassifier =
+                new PoseClassifier(sampleMatrix, BruteForceSampleIndex.FACTORY);
+        // Smoothing works on the class ids of the samples, so it is created once they are loaded.
+        // In a stream, frames where the pose stays still, e.g. in a plank or between sets, reuse
+        // the previous classification.
+        EMASmoothing emaSmoothing = isStreamMode
+                ? new EMASmoothing(poseClassifier.getClassRegistry(), AndroidClock.INSTANCE)
+                : null;
+        MotionGate motionGate = isStreamMode ? new MotionGate() : null;
+        pipeline = new RepCountingPipeline(
+                poseClassifier, motionGate, emaSmoothing, newRepCounters());
+    }
+
+    /**
+     * Returns a counter for each class we want rep counting for. Every frame is classified once
+     * and then fed to all of them, so more exercises can be added here at little cost.
+     */
+    private static RepetitionCounterBank newRepCounters() {
+        return new RepetitionCounterBank(new RepetitionCounter(PUSHUPS_CLASS));
+    }
+
+    private synchronized void logSkippedFrames() {
+        MotionGate motionGate = pipeline.getMotionGate();
+        if (motionGate != null) {
+            Log.d(TAG, String.format(Locale.US, "Skipped classifying %d of %d frames (%.1f%%)",
+                    motionGate.getSkippedFrameCount(), motionGate.getFrameCount(),
+                    motionGate.getSkipRatio() * 100));
         }
-        poseClassifier = new PoseClassifier(poseSamples);
-        repCounter = new RepetitionCounter(PUSHUPS_CLASS);
     }
 
     /**
@@ -111,29 +153,37 @@ public class PoseClassifierProcessor {
      *
      * <p>Currently it returns up to 2 strings as following:
      * 0: PoseClass : X reps
+     *
+     * <p>A preloaded processor can outlive the {@code PoseDetectorProcessor} that used it, e.g.
+     * when the camera is flipped, so calls are serialized.
      */
     @WorkerThread
-    public String getPoseResult(Pose pose) {
-        Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
-        ClassificationResult classification = poseClassifier.classify(pose);
-
-        // Feed pose to smoothing even if no pose found.
-        classification = emaSmoothing.getSmoothedResult(classification);
-
-        // Return early without updating repCounter if no pose found.
-        if (pose.getAllPoseLandmarks().isEmpty()) {
-            return lastRepResult;
-        }
+    public synchronized String getPoseResult(Pose pose) {
+        boolean hasLandmarks = MlKitPoses.packLandmarks(pose, landmarkBuffer);
+        return getPoseResult(hasLandmarks ? landmarkBuffer : null);
+    }
 
-        int repsBefore = repCounter.getNumRepeats();
-        int repsAfter = repCounter.addClassificationResult(classification);
-        if (repsAfter > repsBefore) {
+    /**
+     * Same as {@link #getPoseResult(Pose)}, with the landmarks of the pose already packed by
+     * {@link MlKitPoses#packLandmarks}, or null if no pose was detected.
+     */
+    @WorkerThread
+    public synchronized String getPoseResult(float[] landmarks) {
+        Preconditions.checkState(Looper.myLooper() != Looper.getMainLooper());
+        pipeline.process(landmarks);
+        RepetitionCounterBank repCounters = pipeline.getRepCounters();
+        if (repCounters.getChangedCount() > 0) {
             // Play a fun beep when rep counter updates.
             mediaPlayer.start();
 
-            lastRepResult = String.format(
-                    Locale.US, "Counter : %d reps", repsAfter);
-            currReps = repsAfter;
+            // Show the last counter that changed, by class name when there are several.
+            RepetitionCounter repCounter = repCounters.getCounter(
+                    repCounters.getChangedCounter(repCounters.getChangedCount() - 1));
+            lastRepResult = repCounters.size() == 1
+                    ? String.format(Locale.US, "Counter : %d reps", repCounter.getNumRepeats())
+                    : String.format(Locale.US, "%s : %d reps",
+                            repCounter.getClassName(), repCounter.getNumRepeats());
+            currReps = pipeline.getNumRepeats();
         }
         return lastRepResult;
     }
@@ -0,0 +1,46 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import android.content.Context;
+import android.os.Build;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Writes the {@link FrameMetrics} of a session to a CSV file, headed by the device it ran on, so
+ * that the stage latencies of devices can be compared after the fact.
+ */
+public class FrameMetricsExporter {
+  // Under the app's external files, so reports can be pulled without root.
+  private static final String DIRECTORY = "metrics";
+
+  private FrameMetricsExporter() {}
+
+  /**
+   * Writes the report to a new file named after the current time.
+   *
+   * @return the file written.
+   */
+  public static File export(Context context) throws IOException {
+    File directory = new File(context.getExternalFilesDir(null), DIRECTORY);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Can't create " + directory);
+    }
+    String name = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+    File file = new File(directory, "session-" + name + ".csv");
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      writer.write(String.format(Locale.US, "# %s %s, Android %s (API %d)\n",
+          Build.MANUFACTURER, Build.MODEL, Build.VERSION.RELEASE, Build.VERSION.SDK_INT));
+      FrameMetrics.writeReport(writer);
+    }
+    return file;
+  }
+}
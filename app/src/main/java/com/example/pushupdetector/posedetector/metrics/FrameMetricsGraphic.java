@@ -0,0 +1,63 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.example.pushupdetector.helper.GraphicOverlay;
+
+/**
+ * Draws the latency percentiles of every {@link FrameMetrics} stage, in milliseconds, at the top
+ * left of the overlay, to see on the device which stages miss the frame budget.
+ *
+ * <p>Kept on the overlay with {@link GraphicOverlay#addRetained}, and drawing the latest
+ * percentiles on every draw. Lines are built in a reused {@link StringBuilder} rather than
+ * formatted, so that drawing doesn't allocate.
+ */
+public class FrameMetricsGraphic extends GraphicOverlay.Graphic {
+  private static final float TEXT_SIZE = 30.0f;
+  private static final float LINE_HEIGHT = TEXT_SIZE * 1.2f;
+  // values() returns a new array on every call.
+  private static final FrameMetrics.Stage[] STAGES = FrameMetrics.Stage.values();
+
+  private final Paint textPaint;
+  private final StringBuilder line = new StringBuilder();
+
+  public FrameMetricsGraphic(GraphicOverlay overlay) {
+    super(overlay);
+    textPaint = new Paint();
+    textPaint.setColor(Color.WHITE);
+    textPaint.setTextSize(TEXT_SIZE);
+    textPaint.setShadowLayer(5.0f, 0f, 0f, Color.BLACK);
+  }
+
+  @Override
+  public void draw(Canvas canvas) {
+    float x = TEXT_SIZE * 0.5f;
+    float y = LINE_HEIGHT;
+    canvas.drawText("ms: p50 / p90 / p99 / max", x, y, textPaint);
+    for (FrameMetrics.Stage stage : STAGES) {
+      LatencyHistogram histogram = FrameMetrics.getHistogram(stage);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      y += LINE_HEIGHT;
+      line.setLength(0);
+      line.append(stage.getDisplayName()).append(": ");
+      appendMs(histogram.getPercentileNanos(50));
+      line.append(" / ");
+      appendMs(histogram.getPercentileNanos(90));
+      line.append(" / ");
+      appendMs(histogram.getPercentileNanos(99));
+      line.append(" / ");
+      appendMs(histogram.getMaxNanos());
+      canvas.drawText(line, 0, line.length(), x, y, textPaint);
+    }
+  }
+
+  /** Appends {@code nanos} in milliseconds, to one decimal, as {@code %.1f} would. */
+  private void appendMs(long nanos) {
+    long tenthsOfMs = Math.round(FrameMetrics.toMs(nanos) * 10);
+    line.append(tenthsOfMs / 10).append('.').append(tenthsOfMs % 10);
+  }
+}
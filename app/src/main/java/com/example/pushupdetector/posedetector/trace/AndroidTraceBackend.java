@@ -0,0 +1,58 @@
+package com.example.pushupdetector.posedetector.trace;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Sends the spans of {@link Tracer} to {@link Trace}, to be recorded with Perfetto or systrace.
+ *
+ * <p>{@code Trace} sections only have a name, so slices are matched to their frame by the {@link
+ * Tracer#FRAME_ID} counter, set as every frame starts. Spans that end on another thread are async
+ * sections keyed by the frame; their cookie is an int, so it is the frame id modulo 2^32, which
+ * only repeats long after a section has ended. Counters and async sections need Android 10, and
+ * are dropped on older versions. Tracing costs next to nothing while no trace is being recorded.
+ */
+public class AndroidTraceBackend implements Tracer.Backend {
+  public static final AndroidTraceBackend INSTANCE = new AndroidTraceBackend();
+
+  private static final boolean HAS_ASYNC_SECTIONS_AND_COUNTERS =
+      Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+
+  private AndroidTraceBackend() {}
+
+  @Override
+  public void beginSection(String name, long frameId) {
+    Trace.beginSection(name);
+  }
+
+  @Override
+  public void endSection() {
+    Trace.endSection();
+  }
+
+  @Override
+  public void beginAsyncSection(String name, long frameId) {
+    if (HAS_ASYNC_SECTIONS_AND_COUNTERS) {
+      Trace.beginAsyncSection(name, asyncCookie(frameId));
+    }
+  }
+
+  @Override
+  public void endAsyncSection(String name, long frameId) {
+    if (HAS_ASYNC_SECTIONS_AND_COUNTERS) {
+      Trace.endAsyncSection(name, asyncCookie(frameId));
+    }
+  }
+
+  @Override
+  public void setCounter(String name, long value) {
+    if (HAS_ASYNC_SECTIONS_AND_COUNTERS) {
+      Trace.setCounter(name, value);
+    }
+  }
+
+  /** Returns the frame id modulo 2^32, as the cookie of its async sections. */
+  private static int asyncCookie(long frameId) {
+    return (int) (frameId & 0xFFFFFFFFL);
+  }
+}
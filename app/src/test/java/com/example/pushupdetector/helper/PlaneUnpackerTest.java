@@ -0,0 +1,96 @@
+package com.example.pushupdetector.helper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/** Checks {@link PlaneUnpacker} against a per-pixel unpacking. */
+public class PlaneUnpackerTest {
+  private static final int ROW_PADDING = 24;
+
+  private final Random random = new Random(/* seed= */ 18);
+
+  @Test
+  public void unpacksPackedPlane() {
+    assertUnpacksLikePerPixel(
+        /* width= */ 64, /* height= */ 48, /* chroma= */ false, /* planePixelStride= */ 1, 1);
+  }
+
+  @Test
+  public void unpacksPlanarChroma_everyOtherByte() {
+    assertUnpacksLikePerPixel(
+        /* width= */ 64, /* height= */ 48, /* chroma= */ true, /* planePixelStride= */ 1, 2);
+  }
+
+  @Test
+  public void unpacksInterleavedChroma() {
+    assertUnpacksLikePerPixel(
+        /* width= */ 64, /* height= */ 48, /* chroma= */ true, /* planePixelStride= */ 2, 2);
+  }
+
+  @Test
+  public void unpacksPlanesOfDifferentSizes_withTheSameScratchRow() {
+    assertUnpacksLikePerPixel(
+        /* width= */ 64, /* height= */ 48, /* chroma= */ true, /* planePixelStride= */ 2, 2);
+    assertUnpacksLikePerPixel(
+        /* width= */ 128, /* height= */ 96, /* chroma= */ true, /* planePixelStride= */ 2, 2);
+    assertUnpacksLikePerPixel(
+        /* width= */ 32, /* height= */ 24, /* chroma= */ true, /* planePixelStride= */ 2, 2);
+  }
+
+  @Test
+  public void leavesBufferPositionUnchanged() {
+    ByteBuffer buffer = randomPlane(/* numCol= */ 16, /* numRow= */ 8, 1);
+    buffer.position(5);
+
+    PlaneUnpacker.unpackPlane(buffer, 16 + ROW_PADDING, 1, 16, 8, new byte[16 * 8], 0, 1);
+
+    assertEquals(5, buffer.position());
+  }
+
+  private void assertUnpacksLikePerPixel(
+      int width, int height, boolean chroma, int planePixelStride, int pixelStride) {
+    int numCol = chroma ? width / 2 : width;
+    int numRow = chroma ? height / 2 : height;
+    int rowStride = numCol * planePixelStride + ROW_PADDING;
+    ByteBuffer buffer = randomPlane(numCol, numRow, planePixelStride);
+    int offset = 3;
+    byte[] expected = new byte[offset + width * height * pixelStride];
+    byte[] out = new byte[expected.length];
+    unpackPerPixel(
+        buffer, rowStride, planePixelStride, width, height, expected, offset, pixelStride);
+
+    PlaneUnpacker.unpackPlane(
+        buffer, rowStride, planePixelStride, width, height, out, offset, pixelStride);
+
+    assertArrayEquals(expected, out);
+  }
+
+  /** Returns a direct plane with padded rows, and no padding after the last row. */
+  private ByteBuffer randomPlane(int numCol, int numRow, int planePixelStride) {
+    int rowStride = numCol * planePixelStride + ROW_PADDING;
+    byte[] bytes = new byte[rowStride * (numRow - 1) + (numCol - 1) * planePixelStride + 1];
+    random.nextBytes(bytes);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.rewind();
+    return buffer;
+  }
+
+  private static void unpackPerPixel(ByteBuffer buffer, int planeRowStride, int planePixelStride,
+      int width, int height, byte[] out, int offset, int pixelStride) {
+    int numRow = (buffer.limit() + planeRowStride - 1) / planeRowStride;
+    int numCol = width / (height / numRow);
+    int outputPos = offset;
+    for (int row = 0; row < numRow; row++) {
+      for (int col = 0; col < numCol; col++) {
+        out[outputPos] = buffer.get(row * planeRowStride + col * planePixelStride);
+        outputPos += pixelStride;
+      }
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package com.example.pushupdetector.helper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Checks {@link YuvToArgbConverter} against a floating point conversion followed by rotation. */
+public class YuvToArgbConverterTest {
+  private static final int WIDTH = 16;
+  private static final int HEIGHT = 10;
+  private static final int[] ROTATIONS = {0, 90, 180, 270, -90};
+  // The fixed point conversion may round differently from the floating point one.
+  private static final int TOLERANCE = 1;
+
+  private final Random random = new Random(/* seed= */ 16);
+
+  @Test
+  public void convertNv21_matchesReference() {
+    byte[] nv21 = randomBytes(WIDTH * HEIGHT * 3 / 2);
+    YuvToArgbConverter converter = new YuvToArgbConverter();
+
+    for (int rotation : ROTATIONS) {
+      for (boolean flipX : new boolean[] {false, true}) {
+        int[] pixels =
+            converter.convertNv21(ByteBuffer.wrap(nv21), WIDTH, HEIGHT, rotation, flipX);
+        assertMatchesReference(nv21, rotation, flipX, converter, pixels);
+      }
+    }
+  }
+
+  @Test
+  public void convertNv21_directBuffer() {
+    byte[] nv21 = randomBytes(WIDTH * HEIGHT * 3 / 2);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(nv21.length);
+    buffer.put(nv21);
+    buffer.rewind();
+    YuvToArgbConverter converter = new YuvToArgbConverter();
+
+    int[] pixels = converter.convertNv21(buffer, WIDTH, HEIGHT, 90, true);
+
+    assertMatchesReference(nv21, 90, true, converter, pixels);
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void convertYuv420_planarWithRowPadding() {
+    byte[] nv21 = randomBytes(WIDTH * HEIGHT * 3 / 2);
+    int yRowStride = WIDTH + 8;
+    int uvRowStride = WIDTH / 2 + 4;
+    ByteBuffer yBuffer = ByteBuffer.allocateDirect(yRowStride * (HEIGHT - 1) + WIDTH);
+    ByteBuffer uBuffer = ByteBuffer.allocateDirect(uvRowStride * (HEIGHT / 2 - 1) + WIDTH / 2);
+    ByteBuffer vBuffer = ByteBuffer.allocateDirect(uBuffer.capacity());
+    for (int row = 0; row < HEIGHT; row++) {
+      for (int col = 0; col < WIDTH; col++) {
+        yBuffer.put(row * yRowStride + col, nv21[row * WIDTH + col]);
+      }
+    }
+    for (int row = 0; row < HEIGHT / 2; row++) {
+      for (int col = 0; col < WIDTH / 2; col++) {
+        int uvIndex = WIDTH * HEIGHT + row * WIDTH + col * 2;
+        vBuffer.put(row * uvRowStride + col, nv21[uvIndex]);
+        uBuffer.put(row * uvRowStride + col, nv21[uvIndex + 1]);
+      }
+    }
+    YuvToArgbConverter converter = new YuvToArgbConverter();
+
+    for (int rotation : ROTATIONS) {
+      int[] pixels = converter.convertYuv420(new ByteBuffer[] {yBuffer, uBuffer, vBuffer},
+          new int[] {yRowStride, uvRowStride, uvRowStride}, new int[] {1, 1, 1},
+          WIDTH, HEIGHT, rotation, false);
+      assertMatchesReference(nv21, rotation, false, converter, pixels);
+    }
+  }
+
+  @Test
+  public void convertYuv420_interleavedChromaMatchesNv21() {
+    byte[] nv21 = randomBytes(WIDTH * HEIGHT * 3 / 2);
+    int imageSize = WIDTH * HEIGHT;
+    // As most cameras lay it out: the V plane starts one byte before the U plane.
+    ByteBuffer yBuffer = ByteBuffer.wrap(nv21, 0, imageSize).slice();
+    ByteBuffer vBuffer = ByteBuffer.wrap(nv21, imageSize, imageSize / 2 - 1).slice();
+    ByteBuffer uBuffer = ByteBuffer.wrap(nv21, imageSize + 1, imageSize / 2 - 1).slice();
+    YuvToArgbConverter nv21Converter = new YuvToArgbConverter();
+    YuvToArgbConverter yuv420Converter = new YuvToArgbConverter();
+
+    int[] expected = nv21Converter.convertNv21(ByteBuffer.wrap(nv21), WIDTH, HEIGHT, 270, true);
+    int[] pixels = yuv420Converter.convertYuv420(new ByteBuffer[] {yBuffer, uBuffer, vBuffer},
+        new int[] {WIDTH, WIDTH, WIDTH}, new int[] {1, 2, 2}, WIDTH, HEIGHT, 270, true);
+
+    assertArrayEquals(Arrays.copyOf(expected, imageSize), Arrays.copyOf(pixels, imageSize));
+  }
+
+  @Test
+  public void convert_reusesPixelArray() {
+    byte[] nv21 = randomBytes(WIDTH * HEIGHT * 3 / 2);
+    YuvToArgbConverter converter = new YuvToArgbConverter();
+
+    int[] first = converter.convertNv21(ByteBuffer.wrap(nv21), WIDTH, HEIGHT, 0, false);
+    int[] second = converter.convertNv21(ByteBuffer.wrap(nv21), WIDTH, HEIGHT, 90, false);
+
+    assertTrue(first == second);
+    assertEquals(HEIGHT, converter.getOutputWidth());
+    assertEquals(WIDTH, converter.getOutputHeight());
+  }
+
+  private void assertMatchesReference(
+      byte[] nv21, int rotation, boolean flipX, YuvToArgbConverter converter, int[] pixels) {
+    int[] expected = referenceConversion(nv21, rotation, flipX);
+    int outputWidth = converter.getOutputWidth();
+    assertEquals(rotation % 180 == 0 ? WIDTH : HEIGHT, outputWidth);
+    assertEquals(WIDTH * HEIGHT / outputWidth, converter.getOutputHeight());
+    for (int i = 0; i < WIDTH * HEIGHT; i++) {
+      String message = "rotation " + rotation + ", flipX " + flipX + ", pixel " + i;
+      assertEquals(message, 0xFF, pixels[i] >>> 24);
+      for (int shift = 0; shift < 24; shift += 8) {
+        int channel = (pixels[i] >> shift) & 0xFF;
+        int expectedChannel = (expected[i] >> shift) & 0xFF;
+        assertTrue(message + ": " + channel + " vs " + expectedChannel,
+            Math.abs(channel - expectedChannel) <= TOLERANCE);
+      }
+    }
+  }
+
+  /** Converts each pixel with the JPEG equations, then rotates and mirrors the image. */
+  private static int[] referenceConversion(byte[] nv21, int rotation, boolean flipX) {
+    int[] upright = new int[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int uvIndex = WIDTH * HEIGHT + (y / 2) * WIDTH + (x / 2) * 2;
+        double luma = nv21[y * WIDTH + x] & 0xFF;
+        double v = (nv21[uvIndex] & 0xFF) - 128;
+        double u = (nv21[uvIndex + 1] & 0xFF) - 128;
+        upright[y * WIDTH + x] = 0xFF000000
+            | (channel(luma + 1.402 * v) << 16)
+            | (channel(luma - 0.344136 * u - 0.714136 * v) << 8)
+            | channel(luma + 1.772 * u);
+      }
+    }
+
+    int normalized = ((rotation % 360) + 360) % 360;
+    int outputWidth = normalized % 180 == 0 ? WIDTH : HEIGHT;
+    int[] rotated = new int[WIDTH * HEIGHT];
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int outX;
+        int outY;
+        if (normalized == 90) {
+          outX = HEIGHT - 1 - y;
+          outY = x;
+        } else if (normalized == 180) {
+          outX = WIDTH - 1 - x;
+          outY = HEIGHT - 1 - y;
+        } else if (normalized == 270) {
+          outX = y;
+          outY = WIDTH - 1 - x;
+        } else {
+          outX = x;
+          outY = y;
+        }
+        if (flipX) {
+          outX = outputWidth - 1 - outX;
+        }
+        rotated[outY * outputWidth + outX] = upright[y * WIDTH + x];
+      }
+    }
+    return rotated;
+  }
+
+  private static int channel(double value) {
+    return (int) Math.max(0, Math.min(255, Math.round(value)));
+  }
+
+  private byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,70 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.BruteForceSampleIndex;
+import com.example.pushupdetector.posedetector.classification.PoseClassifier;
+import com.example.pushupdetector.posedetector.classification.PoseEmbedding;
+import com.example.pushupdetector.posedetector.classification.PoseSampleMatrix;
+import com.example.pushupdetector.posedetector.classification.TestPoseSamples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rescores a recorded session with {@link PoseClassifier#classifyBatch} and with {@link
+ * PoseClassifier#classify} in a loop. Scores are in frames per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchClassificationBenchmark {
+  private static final int NUM_FRAMES = 512;
+  // About half a second at 30 fps.
+  private static final int FRAMES_PER_MOVE = 15;
+  private static final int NUM_VALUES = PoseEmbedding.NUM_LANDMARKS * 3;
+
+  @Param({"300", "3000", "30000"})
+  public int librarySize;
+
+  private PoseClassifier classifier;
+  private float[] frames;
+  private float[] frame;
+  private float[] confidences;
+
+  @Setup
+  public void setUp() throws IOException {
+    TestPoseSamples poses = new TestPoseSamples(/* seed= */ 8);
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(poses.syntheticSamples(librarySize));
+    classifier = new PoseClassifier(sampleMatrix, BruteForceSampleIndex.FACTORY);
+    frames = poses.session(NUM_FRAMES, FRAMES_PER_MOVE);
+    frame = new float[NUM_VALUES];
+    confidences = new float[NUM_FRAMES * classifier.getClassNames().length];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_FRAMES)
+  public void classifyLoop(Blackhole blackhole) {
+    for (int f = 0; f < NUM_FRAMES; f++) {
+      System.arraycopy(frames, f * NUM_VALUES, frame, 0, NUM_VALUES);
+      blackhole.consume(classifier.classify(frame));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_FRAMES)
+  public float[] classifyBatch() {
+    classifier.classifyBatch(frames, NUM_FRAMES, confidences);
+    return confidences;
+  }
+}
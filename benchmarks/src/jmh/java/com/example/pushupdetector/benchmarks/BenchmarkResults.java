@@ -0,0 +1,25 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.ClassificationResult;
+
+/** Builds classification results as the classifier returns them for the push-up classes. */
+final class BenchmarkResults {
+  static final String PUSHUPS_DOWN_CLASS = "pushups_down";
+  static final String PUSHUPS_UP_CLASS = "pushups_up";
+  // The default mean distance top K of the classifier.
+  static final int TOP_K = 10;
+
+  private BenchmarkResults() {}
+
+  /** Returns a result where {@code downVotes} of the top K neighbours are down poses. */
+  static ClassificationResult pushUpResult(int downVotes) {
+    ClassificationResult result = new ClassificationResult();
+    if (downVotes > 0) {
+      result.putClassConfidence(PUSHUPS_DOWN_CLASS, downVotes);
+    }
+    if (downVotes < TOP_K) {
+      result.putClassConfidence(PUSHUPS_UP_CLASS, TOP_K - downVotes);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.ClassRegistry;
+import com.example.pushupdetector.posedetector.classification.ClassificationResult;
+import com.example.pushupdetector.posedetector.classification.EMASmoothing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smooths one classification result per operation, with a full window: either a result keyed by
+ * class name into a new result, or a result of the sample classes into a reused one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EMASmoothingBenchmark {
+  // Power of two, so that the next result is picked with a mask.
+  private static final int NUM_RESULTS = 256;
+  // A 30 fps camera, so that the window is never reset.
+  private static final long FRAME_INTERVAL_MS = 33;
+
+  private final ClassificationResult[] results = new ClassificationResult[NUM_RESULTS];
+  private final ClassificationResult[] denseResults = new ClassificationResult[NUM_RESULTS];
+  private EMASmoothing emaSmoothing;
+  private EMASmoothing denseEmaSmoothing;
+  private ClassificationResult smoothedResult;
+  private long nowMs;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    emaSmoothing = new EMASmoothing(() -> nowMs);
+    ClassRegistry classRegistry = new ClassRegistry(new String[] {
+        BenchmarkResults.PUSHUPS_DOWN_CLASS, BenchmarkResults.PUSHUPS_UP_CLASS});
+    denseEmaSmoothing = new EMASmoothing(classRegistry, () -> nowMs);
+    smoothedResult = new ClassificationResult(classRegistry);
+    Random random = new Random(/* seed= */ 3);
+    for (int i = 0; i < NUM_RESULTS; i++) {
+      results[i] = BenchmarkResults.pushUpResult(random.nextInt(11));
+      denseResults[i] = new ClassificationResult(classRegistry);
+      for (String className : results[i].getAllClasses()) {
+        denseResults[i].putClassConfidence(className, results[i].getClassConfidence(className));
+      }
+    }
+  }
+
+  @Benchmark
+  public ClassificationResult getSmoothedResult() {
+    nowMs += FRAME_INTERVAL_MS;
+    return emaSmoothing.getSmoothedResult(results[next++ & (NUM_RESULTS - 1)]);
+  }
+
+  @Benchmark
+  public ClassificationResult getSmoothedResultReused() {
+    nowMs += FRAME_INTERVAL_MS;
+    denseEmaSmoothing.getSmoothedResult(denseResults[next++ & (NUM_RESULTS - 1)], smoothedResult);
+    return smoothedResult;
+  }
+}
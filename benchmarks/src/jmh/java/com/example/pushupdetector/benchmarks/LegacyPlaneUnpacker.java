@@ -0,0 +1,35 @@
+package com.example.pushupdetector.benchmarks;
+
+import java.nio.ByteBuffer;
+
+/** The per-pixel plane unpacking that {@code PlaneUnpacker} replaced, kept as a baseline. */
+final class LegacyPlaneUnpacker {
+  private LegacyPlaneUnpacker() {}
+
+  static void unpackPlane(ByteBuffer buffer, int planeRowStride, int planePixelStride,
+      int width, int height, byte[] out, int offset, int pixelStride) {
+    buffer.rewind();
+
+    // Compute the size of the current plane.
+    // We assume that it has the aspect ratio as the original image.
+    int numRow = (buffer.limit() + planeRowStride - 1) / planeRowStride;
+    if (numRow == 0) {
+      return;
+    }
+    int scaleFactor = height / numRow;
+    int numCol = width / scaleFactor;
+
+    // Extract the data in the output buffer.
+    int outputPos = offset;
+    int rowStart = 0;
+    for (int row = 0; row < numRow; row++) {
+      int inputPos = rowStart;
+      for (int col = 0; col < numCol; col++) {
+        out[outputPos] = buffer.get(inputPos);
+        outputPos += pixelStride;
+        inputPos += planePixelStride;
+      }
+      rowStart += planeRowStride;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.helper.Nv21Converter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts one YUV_420_888 frame to NV21 per operation. {@code SEMI_PLANAR} chroma planes share an
+ * interleaved VU buffer, as on most devices, and take the bulk copy path. {@code PLANAR} chroma
+ * planes are separate and take the per-pixel path. The output is either allocated per frame or
+ * reused across frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class Nv21ConversionBenchmark {
+  @Param({"640x480", "1280x720"})
+  public String resolution;
+
+  @Param({"SEMI_PLANAR", "PLANAR"})
+  public String layout;
+
+  private final ByteBuffer[] planeBuffers = new ByteBuffer[3];
+  private final int[] rowStrides = new int[3];
+  private final int[] pixelStrides = new int[3];
+  private int width;
+  private int height;
+  private byte[] out;
+
+  @Setup
+  public void setUp() {
+    String[] size = resolution.split("x");
+    width = Integer.parseInt(size[0]);
+    height = Integer.parseInt(size[1]);
+    int imageSize = width * height;
+    out = new byte[Nv21Converter.nv21Size(width, height)];
+    Random random = new Random(/* seed= */ 5);
+
+    byte[] y = new byte[imageSize];
+    random.nextBytes(y);
+    planeBuffers[0] = ByteBuffer.wrap(y);
+    rowStrides[0] = width;
+    pixelStrides[0] = 1;
+
+    if (layout.equals("SEMI_PLANAR")) {
+      byte[] vu = new byte[imageSize / 2];
+      random.nextBytes(vu);
+      // The V plane starts one byte before the U plane in the same buffer.
+      planeBuffers[1] = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+      planeBuffers[2] = ByteBuffer.wrap(vu, 0, vu.length - 1).slice();
+      rowStrides[1] = rowStrides[2] = width;
+      pixelStrides[1] = pixelStrides[2] = 2;
+    } else {
+      byte[] u = new byte[imageSize / 4];
+      byte[] v = new byte[imageSize / 4];
+      random.nextBytes(u);
+      random.nextBytes(v);
+      planeBuffers[1] = ByteBuffer.wrap(u);
+      planeBuffers[2] = ByteBuffer.wrap(v);
+      rowStrides[1] = rowStrides[2] = width / 2;
+      pixelStrides[1] = pixelStrides[2] = 1;
+    }
+  }
+
+  @Benchmark
+  public ByteBuffer yuv420ThreePlanesToNV21() {
+    // The bulk copy path consumes the buffers, as if every frame came in fresh buffers.
+    for (ByteBuffer planeBuffer : planeBuffers) {
+      planeBuffer.rewind();
+    }
+    return Nv21Converter.yuv420ThreePlanesToNV21(
+        planeBuffers, rowStrides, pixelStrides, width, height);
+  }
+
+  @Benchmark
+  public ByteBuffer yuv420ThreePlanesToNV21Reused() {
+    for (ByteBuffer planeBuffer : planeBuffers) {
+      planeBuffer.rewind();
+    }
+    return Nv21Converter.yuv420ThreePlanesToNV21(
+        planeBuffers, rowStrides, pixelStrides, width, height, out);
+  }
+}
@@ -0,0 +1,78 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.helper.PlaneUnpacker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unpacks one plane of a YUV_420_888 frame into NV21 per operation, with the per-pixel loop that
+ * was used before and with {@link PlaneUnpacker}. Planes have padded row strides, as camera planes
+ * often do. {@code Y} is a packed luma plane, {@code PLANAR_U} a packed chroma plane spread every
+ * other byte, and {@code INTERLEAVED_U} a chroma plane whose values are every other byte, as when
+ * U and V share a buffer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PlaneUnpackingBenchmark {
+  private static final int ROW_PADDING = 64;
+
+  @Param({"640x480", "1920x1080"})
+  public String resolution;
+
+  @Param({"Y", "PLANAR_U", "INTERLEAVED_U"})
+  public String plane;
+
+  private ByteBuffer buffer;
+  private int rowStride;
+  private int planePixelStride;
+  private int pixelStride;
+  private int width;
+  private int height;
+  private byte[] out;
+
+  @Setup
+  public void setUp() {
+    String[] size = resolution.split("x");
+    width = Integer.parseInt(size[0]);
+    height = Integer.parseInt(size[1]);
+    int numRow = plane.equals("Y") ? height : height / 2;
+    int numCol = plane.equals("Y") ? width : width / 2;
+    planePixelStride = plane.equals("INTERLEAVED_U") ? 2 : 1;
+    pixelStride = plane.equals("Y") ? 1 : 2;
+    rowStride = numCol * planePixelStride + ROW_PADDING;
+
+    // Direct, like camera planes, and without padding after the last row.
+    byte[] bytes = new byte[rowStride * (numRow - 1) + (numCol - 1) * planePixelStride + 1];
+    new Random(/* seed= */ 18).nextBytes(bytes);
+    buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes);
+    buffer.rewind();
+    out = new byte[width * height * 3 / 2];
+  }
+
+  @Benchmark
+  public byte[] legacy() {
+    LegacyPlaneUnpacker.unpackPlane(
+        buffer, rowStride, planePixelStride, width, height, out, 0, pixelStride);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] bulk() {
+    PlaneUnpacker.unpackPlane(
+        buffer, rowStride, planePixelStride, width, height, out, 0, pixelStride);
+    return out;
+  }
+}
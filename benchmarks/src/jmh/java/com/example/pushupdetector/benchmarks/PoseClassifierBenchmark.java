@@ -0,0 +1,114 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.BruteForceSampleIndex;
+import com.example.pushupdetector.posedetector.classification.ClassificationResult;
+import com.example.pushupdetector.posedetector.classification.ForkJoinSampleIndex;
+import com.example.pushupdetector.posedetector.classification.PoseClassifier;
+import com.example.pushupdetector.posedetector.classification.PoseSampleIndex;
+import com.example.pushupdetector.posedetector.classification.PoseSampleMatrix;
+import com.example.pushupdetector.posedetector.classification.TestPoseSamples;
+import com.example.pushupdetector.posedetector.classification.TopKHeap;
+import com.example.pushupdetector.posedetector.classification.VantagePointTreeIndex;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies one pose per operation against sample libraries of different sizes and indexes.
+ * {@link #search} times the index alone and counts the samples it prunes: the pruned fraction of
+ * an index is its {@code pruned} count over its {@code scanned} count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PoseClassifierBenchmark {
+  // Power of two, so that the next query is picked with a mask.
+  private static final int NUM_QUERIES = 256;
+  // The classifier's nearest neighbours by max distance, and its axes weights.
+  private static final int TOP_K = 30;
+  private static final float WX = 1;
+  private static final float WY = 1;
+  private static final float WZ = 0.2f;
+
+  @Param({"300", "3000", "30000", "100000"})
+  public int librarySize;
+
+  @Param({"BRUTE_FORCE", "VANTAGE_POINT_TREE", "FORK_JOIN"})
+  public String index;
+
+  private PoseClassifier classifier;
+  private float[][] queries;
+  private PoseSampleIndex sampleIndex;
+  private float[][] packedQueries;
+  private float[][] flippedQueries;
+  private final TopKHeap topK = new TopKHeap(TOP_K);
+  private int next;
+
+  /** The samples searched and pruned by {@link #search}, reported next to its score. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class SearchCounters {
+    public long scanned;
+    public long pruned;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      scanned = 0;
+      pruned = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    TestPoseSamples poses = new TestPoseSamples(/* seed= */ 2);
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(poses.syntheticSamples(librarySize));
+    classifier = new PoseClassifier(sampleMatrix, indexFactory(index));
+    queries = poses.queries(NUM_QUERIES);
+
+    sampleIndex = indexFactory(index).create(sampleMatrix, WX, WY, WZ);
+    packedQueries = new float[NUM_QUERIES][sampleMatrix.getStride()];
+    flippedQueries = new float[NUM_QUERIES][sampleMatrix.getStride()];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      TestPoseSamples.packQuery(poses.query(), packedQueries[i], flippedQueries[i]);
+    }
+  }
+
+  @Benchmark
+  public ClassificationResult classify() {
+    return classifier.classify(queries[next++ & (NUM_QUERIES - 1)]);
+  }
+
+  @Benchmark
+  public TopKHeap search(SearchCounters counters) {
+    int query = next++ & (NUM_QUERIES - 1);
+    topK.clear();
+    counters.pruned += sampleIndex.search(packedQueries[query], flippedQueries[query], topK);
+    counters.scanned += librarySize;
+    return topK;
+  }
+
+  private static PoseSampleIndex.Factory indexFactory(String index) {
+    switch (index) {
+      case "BRUTE_FORCE":
+        return BruteForceSampleIndex.FACTORY;
+      case "VANTAGE_POINT_TREE":
+        return VantagePointTreeIndex.FACTORY;
+      case "FORK_JOIN":
+        return ForkJoinSampleIndex.FACTORY;
+      default:
+        throw new IllegalArgumentException("Unknown index " + index);
+    }
+  }
+}
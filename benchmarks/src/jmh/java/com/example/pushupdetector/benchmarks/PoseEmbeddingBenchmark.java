@@ -0,0 +1,56 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.Point3D;
+import com.example.pushupdetector.posedetector.classification.PoseEmbedding;
+import com.example.pushupdetector.posedetector.classification.TestPoseSamples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Embeds one pose per operation, through the packed and the list-based API. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PoseEmbeddingBenchmark {
+  // Power of two, so that the next pose is picked with a mask.
+  private static final int NUM_POSES = 256;
+
+  private final float[] normalizedLandmarks = new float[PoseEmbedding.NUM_LANDMARKS * 3];
+  private final float[] embedding = new float[PoseEmbedding.EMBEDDING_SIZE * 3];
+  private float[][] poses;
+  private List<List<Point3D>> poseLists;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    TestPoseSamples testPoses = new TestPoseSamples(/* seed= */ 1);
+    poses = new float[NUM_POSES][];
+    poseLists = new ArrayList<>(NUM_POSES);
+    for (int i = 0; i < NUM_POSES; i++) {
+      poseLists.add(testPoses.query());
+      poses[i] = TestPoseSamples.packLandmarks(poseLists.get(i));
+    }
+  }
+
+  @Benchmark
+  public float[] packed() {
+    float[] pose = poses[next++ & (NUM_POSES - 1)];
+    PoseEmbedding.getPoseEmbedding(pose, normalizedLandmarks, embedding, 0);
+    return embedding;
+  }
+
+  @Benchmark
+  public List<Point3D> list() {
+    return PoseEmbedding.getPoseEmbedding(poseLists.get(next++ & (NUM_POSES - 1)));
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.PoseSample;
+import com.example.pushupdetector.posedetector.classification.TestPoseSamples;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Parses one line of the pose samples csv per operation, including its embedding. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PoseSampleParsingBenchmark {
+  private String[] csvLines;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    csvLines = new TestPoseSamples(/* seed= */ 4).csvLines().toArray(new String[0]);
+  }
+
+  @Benchmark
+  public PoseSample getPoseSample() {
+    if (next == csvLines.length) {
+      next = 0;
+    }
+    return PoseSample.getPoseSample(csvLines[next++], ",");
+  }
+}
@@ -0,0 +1,45 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.posedetector.classification.ClassificationResult;
+import com.example.pushupdetector.posedetector.classification.RepetitionCounter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Counts one smoothed result per operation, going up and down so that reps are counted. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RepetitionCounterBenchmark {
+  // Two reps, from all up votes to all down votes and back.
+  private static final int NUM_RESULTS = 4 * BenchmarkResults.TOP_K;
+
+  private final ClassificationResult[] results = new ClassificationResult[NUM_RESULTS];
+  private RepetitionCounter repetitionCounter;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    repetitionCounter = new RepetitionCounter(BenchmarkResults.PUSHUPS_DOWN_CLASS);
+    for (int i = 0; i < NUM_RESULTS; i++) {
+      int phase = i % (2 * BenchmarkResults.TOP_K);
+      int downVotes = phase <= BenchmarkResults.TOP_K ? phase : 2 * BenchmarkResults.TOP_K - phase;
+      results[i] = BenchmarkResults.pushUpResult(downVotes);
+    }
+  }
+
+  @Benchmark
+  public int addClassificationResult() {
+    if (next == NUM_RESULTS) {
+      next = 0;
+    }
+    return repetitionCounter.addClassificationResult(results[next++]);
+  }
+}
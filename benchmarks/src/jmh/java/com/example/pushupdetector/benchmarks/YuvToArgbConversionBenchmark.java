@@ -0,0 +1,51 @@
+package com.example.pushupdetector.benchmarks;
+
+import com.example.pushupdetector.helper.YuvToArgbConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts one NV21 frame to ARGB pixels per operation, upright or rotated by 90 degrees as for a
+ * phone held in portrait.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class YuvToArgbConversionBenchmark {
+  @Param({"640x480", "1280x720"})
+  public String resolution;
+
+  @Param({"0", "90"})
+  public int rotationDegrees;
+
+  private final YuvToArgbConverter converter = new YuvToArgbConverter();
+  private ByteBuffer nv21;
+  private int width;
+  private int height;
+
+  @Setup
+  public void setUp() {
+    String[] size = resolution.split("x");
+    width = Integer.parseInt(size[0]);
+    height = Integer.parseInt(size[1]);
+    byte[] bytes = new byte[width * height * 3 / 2];
+    new Random(/* seed= */ 6).nextBytes(bytes);
+    nv21 = ByteBuffer.wrap(bytes);
+  }
+
+  @Benchmark
+  public int[] convertNv21() {
+    return converter.convertNv21(nv21, width, height, rotationDegrees, /* flipX= */ false);
+  }
+}
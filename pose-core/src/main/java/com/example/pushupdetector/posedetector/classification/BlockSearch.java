@@ -0,0 +1,176 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/**
+ * Finds the max distance top K samples of a block of consecutive frames at once, for {@link
+ * PoseClassifier#classifyBatch}. Returns exactly the samples a linear scan would return for each
+ * frame, but does much less work when consecutive frames are alike:
+ *
+ * <ul>
+ *   <li>Each sample is compared against every frame of the block while it is in cache.
+ *   <li>A block first looks at the nearest samples of the last frame of the previous block, so the
+ *       heaps are tight from the start and most other samples can be abandoned early.
+ *   <li>Samples are first compared on the few coordinates that vary the most across samples,
+ *       packed contiguously, and only evaluated in full if these don't rule them out.
+ * </ul>
+ *
+ * <p>Not thread safe.
+ */
+class BlockSearch {
+  static final int BLOCK_SIZE = 8;
+  // Number of coordinates compared before the full max distance.
+  private static final int PREFIX_SIZE = 8;
+
+  private final PoseSampleMatrix sampleMatrix;
+  private final float wx;
+  private final float wy;
+  private final float wz;
+  private final int stride;
+  private final float[] queries;
+  private final float[] flippedQueries;
+  private final TopKHeap[] heaps;
+
+  private final int[] prefixCoordinates;
+  private final float[] prefixWeights;
+  private final float[] samplePrefixes;
+  private final float[] queryPrefixes;
+  private final float[] flippedQueryPrefixes;
+
+  private final int[] seeds;
+  // The last block each sample was seeded in, so that seeds are not offered twice.
+  private final int[] seedBlocks;
+  private int seedCount;
+  private int blockCount;
+
+  BlockSearch(PoseSampleMatrix sampleMatrix, int topK, float wx, float wy, float wz) {
+    this.sampleMatrix = sampleMatrix;
+    this.wx = wx;
+    this.wy = wy;
+    this.wz = wz;
+    stride = sampleMatrix.getStride();
+    queries = new float[BLOCK_SIZE * stride];
+    flippedQueries = new float[BLOCK_SIZE * stride];
+    heaps = new TopKHeap[BLOCK_SIZE];
+    for (int i = 0; i < BLOCK_SIZE; i++) {
+      heaps[i] = new TopKHeap(topK);
+    }
+
+    prefixCoordinates = sampleMatrix.mostVaryingCoordinates(PREFIX_SIZE, wx, wy, wz);
+    float[] weights = {wx, wy, wz};
+    prefixWeights = new float[prefixCoordinates.length];
+    for (int k = 0; k < prefixCoordinates.length; k++) {
+      prefixWeights[k] = weights[prefixCoordinates[k] % 3];
+    }
+    samplePrefixes = sampleMatrix.gather(prefixCoordinates);
+    queryPrefixes = new float[BLOCK_SIZE * prefixCoordinates.length];
+    flippedQueryPrefixes = new float[BLOCK_SIZE * prefixCoordinates.length];
+
+    seeds = new int[topK];
+    seedBlocks = new int[sampleMatrix.size()];
+  }
+
+  /**
+   * Returns the buffer the embeddings of the block are written to, the embedding of frame {@code
+   * f} starting at {@code f * stride}.
+   */
+  float[] queries() {
+    return queries;
+  }
+
+  /** Returns the buffer the embeddings of the mirror images of the block are written to. */
+  float[] flippedQueries() {
+    return flippedQueries;
+  }
+
+  /** Returns the nearest samples of frame {@code f} of the last block searched. */
+  TopKHeap result(int f) {
+    return heaps[f];
+  }
+
+  /** Forgets the previous block, e.g. before searching frames of another session. */
+  void reset() {
+    seedCount = 0;
+  }
+
+  /**
+   * Searches the first {@code blockSize} frames of the query buffers.
+   *
+   * @return the number of samples, summed over frames, whose evaluation was abandoned early.
+   */
+  int search(int blockSize) {
+    int prefixSize = prefixCoordinates.length;
+    for (int f = 0; f < blockSize; f++) {
+      heaps[f].clear();
+      for (int k = 0; k < prefixSize; k++) {
+        queryPrefixes[f * prefixSize + k] = queries[f * stride + prefixCoordinates[k]];
+        flippedQueryPrefixes[f * prefixSize + k] =
+            flippedQueries[f * stride + prefixCoordinates[k]];
+      }
+    }
+
+    // The heaps keep the same samples whatever the order they are offered in, so seeding them
+    // only tightens their thresholds sooner.
+    int block = ++blockCount;
+    int abandoned = 0;
+    for (int i = 0; i < seedCount; i++) {
+      seedBlocks[seeds[i]] = block;
+      abandoned += offer(seeds[i], blockSize);
+    }
+    for (int sample = 0; sample < sampleMatrix.size(); sample++) {
+      if (seedBlocks[sample] != block) {
+        abandoned += offer(sample, blockSize);
+      }
+    }
+
+    // The next block starts from the nearest samples of the last frame of this one.
+    TopKHeap last = heaps[blockSize - 1];
+    seedCount = last.size();
+    for (int i = 0; i < seedCount; i++) {
+      seeds[i] = last.getId(i);
+    }
+    return abandoned;
+  }
+
+  /** Offers {@code sample} to the heap of every frame, returning how many abandoned it. */
+  private int offer(int sample, int blockSize) {
+    int prefixSize = prefixCoordinates.length;
+    int prefixOffset = sample * prefixSize;
+    int abandoned = 0;
+    for (int f = 0; f < blockSize; f++) {
+      TopKHeap heap = heaps[f];
+      float bound = heap.threshold();
+      if (prefixExceeds(prefixOffset, f * prefixSize, bound)) {
+        abandoned++;
+        continue;
+      }
+      float maxDistance = sampleMatrix.minMaxDistance(
+          sample, queries, flippedQueries, f * stride, wx, wy, wz, bound);
+      if (maxDistance == Float.POSITIVE_INFINITY) {
+        abandoned++;
+        continue;
+      }
+      heap.offer(sample, maxDistance);
+    }
+    return abandoned;
+  }
+
+  /**
+   * Returns whether the max distance over the prefix coordinates alone, which is a lower bound of
+   * the full one, exceeds {@code bound} for both the original and the flipped query.
+   */
+  private boolean prefixExceeds(int sampleOffset, int queryOffset, float bound) {
+    float originalMax = 0;
+    float flippedMax = 0;
+    for (int k = 0; k < prefixWeights.length; k++) {
+      float value = samplePrefixes[sampleOffset + k];
+      float weight = prefixWeights[k];
+      originalMax =
+          Math.max(originalMax, Math.abs((value - queryPrefixes[queryOffset + k]) * weight));
+      flippedMax = Math.max(
+          flippedMax, Math.abs((value - flippedQueryPrefixes[queryOffset + k]) * weight));
+      if (originalMax > bound && flippedMax > bound) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
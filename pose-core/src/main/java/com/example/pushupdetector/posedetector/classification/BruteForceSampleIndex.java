@@ -0,0 +1,38 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/**
+ * A {@link PoseSampleIndex} that scans all samples linearly. This is the fastest option for small
+ * sample libraries.
+ */
+public class BruteForceSampleIndex implements PoseSampleIndex {
+  public static final Factory FACTORY = BruteForceSampleIndex::new;
+
+  private final PoseSampleMatrix sampleMatrix;
+  private final float wx;
+  private final float wy;
+  private final float wz;
+
+  public BruteForceSampleIndex(PoseSampleMatrix sampleMatrix, float wx, float wy, float wz) {
+    this.sampleMatrix = sampleMatrix;
+    this.wx = wx;
+    this.wy = wy;
+    this.wz = wz;
+  }
+
+  @Override
+  public int search(float[] query, float[] flippedQuery, TopKHeap out) {
+    int abandoned = 0;
+    // Once the heap is full, a sample is abandoned as soon as its partial max distance exceeds the
+    // current K-th best.
+    for (int i = 0; i < sampleMatrix.size(); i++) {
+      float maxDistance =
+          sampleMatrix.minMaxDistance(i, query, flippedQuery, wx, wy, wz, out.threshold());
+      if (maxDistance == Float.POSITIVE_INFINITY) {
+        abandoned++;
+        continue;
+      }
+      out.offer(i, maxDistance);
+    }
+    return abandoned;
+  }
+}
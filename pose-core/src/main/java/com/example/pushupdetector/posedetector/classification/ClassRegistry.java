@@ -0,0 +1,54 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns pose class names into dense ids, 0 to {@link #size()} - 1, so that {@link
+ * ClassificationResult}s can store confidences in arrays indexed by id.
+ *
+ * <p>The classes of a sample library are registered when it is loaded, see {@link
+ * PoseSampleMatrix#getClassRegistry()}, and classes are never removed, so ids can be cached.
+ * Registering classes is not thread safe.
+ */
+public class ClassRegistry {
+  private final Map<String, Integer> classIds = new HashMap<>();
+  private final List<String> classNames = new ArrayList<>();
+
+  public ClassRegistry() {}
+
+  /** Creates a registry where class {@code classNames[i]} has id {@code i}. */
+  public ClassRegistry(String[] classNames) {
+    for (String className : classNames) {
+      intern(className);
+    }
+  }
+
+  /** Returns the id of {@code className}, registering it if needed. */
+  public int intern(String className) {
+    Integer classId = classIds.get(className);
+    if (classId == null) {
+      classId = classNames.size();
+      classNames.add(className);
+      classIds.put(className, classId);
+    }
+    return classId;
+  }
+
+  /** Returns the id of {@code className}, or -1 if it is not registered. */
+  public int getId(String className) {
+    Integer classId = classIds.get(className);
+    return classId != null ? classId : -1;
+  }
+
+  public String getName(int classId) {
+    return classNames.get(classId);
+  }
+
+  /** Returns the number of registered classes. */
+  public int size() {
+    return classNames.size();
+  }
+}
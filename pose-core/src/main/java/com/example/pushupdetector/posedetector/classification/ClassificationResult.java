@@ -0,0 +1,98 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Represents Pose classification result as outputted by {@link PoseClassifier}. Can be manipulated.
+ *
+ * <p>Confidences are stored in arrays indexed by the dense class ids of a {@link ClassRegistry},
+ * usually the one of the sample library, so that results can be reused across frames with {@link
+ * #clear()} and read without boxing or hashing. The methods taking class names are adapters over
+ * the registry.
+ */
+public class ClassificationResult {
+  private final ClassRegistry classRegistry;
+  // For a class id, how many times this class appears in the top K nearest neighbors. The value is
+  // in range [0, K] and could be a float after EMA smoothing. We use this number to represent the
+  // confidence of a pose being in this class. Classes without a confidence are not in the result.
+  private float[] confidences;
+  private boolean[] hasConfidence;
+
+  /** Creates an empty result with its own registry, for classes given by name. */
+  public ClassificationResult() {
+    this(new ClassRegistry());
+  }
+
+  /** Creates an empty result for the classes of {@code classRegistry}. */
+  public ClassificationResult(ClassRegistry classRegistry) {
+    this.classRegistry = classRegistry;
+    confidences = new float[classRegistry.size()];
+    hasConfidence = new boolean[classRegistry.size()];
+  }
+
+  public ClassRegistry getClassRegistry() {
+    return classRegistry;
+  }
+
+  /** Removes all confidences, so that the result can be reused. */
+  public void clear() {
+    Arrays.fill(hasConfidence, false);
+    Arrays.fill(confidences, 0);
+  }
+
+  /** Returns whether the class of id {@code classId} is in the result. */
+  public boolean hasConfidence(int classId) {
+    return classId < hasConfidence.length && hasConfidence[classId];
+  }
+
+  /** Returns the confidence of the class of id {@code classId}, 0 if it is not in the result. */
+  public float getConfidence(int classId) {
+    return classId < confidences.length ? confidences[classId] : 0;
+  }
+
+  public void setConfidence(int classId, float confidence) {
+    ensureCapacity(classId);
+    confidences[classId] = confidence;
+    hasConfidence[classId] = true;
+  }
+
+  public void incrementConfidence(int classId) {
+    ensureCapacity(classId);
+    confidences[classId]++;
+    hasConfidence[classId] = true;
+  }
+
+  public Set<String> getAllClasses() {
+    Set<String> allClasses = new HashSet<>();
+    for (int classId = 0; classId < hasConfidence.length; classId++) {
+      if (hasConfidence[classId]) {
+        allClasses.add(classRegistry.getName(classId));
+      }
+    }
+    return allClasses;
+  }
+
+  public float getClassConfidence(String className) {
+    int classId = classRegistry.getId(className);
+    return classId >= 0 ? getConfidence(classId) : 0;
+  }
+
+  public void incrementClassConfidence(String className) {
+    incrementConfidence(classRegistry.intern(className));
+  }
+
+  public void putClassConfidence(String className, float confidence) {
+    setConfidence(classRegistry.intern(className), confidence);
+  }
+
+  private void ensureCapacity(int classId) {
+    if (classId >= confidences.length) {
+      // The registry got classes after this result was created.
+      int capacity = Math.max(classId + 1, classRegistry.size());
+      confidences = Arrays.copyOf(confidences, capacity);
+      hasConfidence = Arrays.copyOf(hasConfidence, capacity);
+    }
+  }
+}
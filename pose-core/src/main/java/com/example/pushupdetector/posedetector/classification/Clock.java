@@ -0,0 +1,10 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/** A monotonic time source, injected so that pose streams can be replayed or faked in tests. */
+public interface Clock {
+  /** A clock based on {@link System#nanoTime()}. */
+  Clock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+  /** Returns milliseconds since an arbitrary origin. Never goes backwards. */
+  long elapsedRealtimeMs();
+}
@@ -0,0 +1,199 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.Arrays;
+
+/**
+ * Runs EMA smoothing over a window with given stream of pose classification results.
+ *
+ * <p>The window is a ring buffer of confidences indexed by dense class ids, and the weighted sum
+ * of each class over the window is kept up to date as results enter and leave it, so each result
+ * costs O(classes) rather than O(window x classes). Not thread safe.
+ */
+public class EMASmoothing {
+  private static final int DEFAULT_WINDOW_SIZE = 10;
+  private static final float DEFAULT_ALPHA = 0.2f;
+
+  private static final long RESET_THRESHOLD_MS = 100;
+
+  private final int windowSize;
+  private final double decay;
+  private final Clock clock;
+  // The weight of the oldest result of a full window.
+  private final double oldestWeight;
+  // weightSums[n] is the sum of the weights of a window of n results.
+  private final float[] weightSums;
+
+  // Dense ids of the classes seen so far, usually those of the sample library.
+  private final ClassRegistry classRegistry;
+  private int numClasses;
+
+  // This is a window of confidences as outputted by the {@link PoseClassifier}, one row of
+  // {@code numClasses} per result. We run smoothing over this window of size {@link
+  // windowSize}. Classes missing from a result have no confidence rather than a zero one.
+  private final float[][] confidences;
+  private final boolean[][] hasConfidence;
+  private int oldest;
+  private int size;
+  // Per class, the sum over the window of its confidences weighted by their age, and the number
+  // of results of the window that have a confidence for it.
+  private double[] weightedSums = new double[0];
+  private int[] counts = new int[0];
+
+  private long lastInputMs;
+
+  public EMASmoothing() {
+    this(Clock.SYSTEM);
+  }
+
+  public EMASmoothing(Clock clock) {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA, clock);
+  }
+
+  public EMASmoothing(int windowSize, float alpha) {
+    this(windowSize, alpha, Clock.SYSTEM);
+  }
+
+  /**
+   * Creates a smoothing whose window is reset when results are more than 100ms apart according
+   * to {@code clock}.
+   */
+  public EMASmoothing(int windowSize, float alpha, Clock clock) {
+    this(new ClassRegistry(), windowSize, alpha, clock);
+  }
+
+  /**
+   * Creates a smoothing for results of the classes of {@code classRegistry}, which are then
+   * smoothed by class id rather than by name.
+   */
+  public EMASmoothing(ClassRegistry classRegistry, Clock clock) {
+    this(classRegistry, DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA, clock);
+  }
+
+  public EMASmoothing(ClassRegistry classRegistry, int windowSize, float alpha, Clock clock) {
+    this.classRegistry = classRegistry;
+    this.windowSize = windowSize;
+    this.decay = 1.0 - alpha;
+    this.clock = clock;
+    this.oldestWeight = Math.pow(decay, windowSize - 1);
+    this.confidences = new float[windowSize][0];
+    this.hasConfidence = new boolean[windowSize][0];
+
+    // Summed the way the weights used to be applied, newest first, so that smoothed values come
+    // out the same.
+    weightSums = new float[windowSize + 1];
+    float factor = 1;
+    for (int n = 1; n <= windowSize; n++) {
+      weightSums[n] = weightSums[n - 1] + factor;
+      factor = (float) (factor * decay);
+    }
+  }
+
+  public ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
+    ClassificationResult smoothedResult = new ClassificationResult(classRegistry);
+    getSmoothedResult(classificationResult, smoothedResult);
+    return smoothedResult;
+  }
+
+  /**
+   * Adds {@code classificationResult} to the window and writes the smoothed result to {@code
+   * smoothedResult}, which is cleared first. Allocates nothing when both results use the registry
+   * of this smoothing.
+   */
+  public void getSmoothedResult(
+      ClassificationResult classificationResult, ClassificationResult smoothedResult) {
+    // Resets memory if the input is too far away from the previous one in time.
+    long nowMs = clock.elapsedRealtimeMs();
+    if (nowMs - lastInputMs > RESET_THRESHOLD_MS) {
+      clear();
+    }
+    lastInputMs = nowMs;
+
+    // If we are at window size, remove the last (oldest) result.
+    if (size == windowSize) {
+      removeOldest();
+    }
+    // Every result in the window gets one step older.
+    for (int c = 0; c < numClasses; c++) {
+      weightedSums[c] *= decay;
+    }
+    add(classificationResult);
+
+    smoothedResult.clear();
+    boolean sameRegistry = smoothedResult.getClassRegistry() == classRegistry;
+    float weightSum = weightSums[size];
+    for (int c = 0; c < numClasses; c++) {
+      if (counts[c] > 0) {
+        float confidence = (float) (weightedSums[c] / weightSum);
+        if (sameRegistry) {
+          smoothedResult.setConfidence(c, confidence);
+        } else {
+          smoothedResult.putClassConfidence(classRegistry.getName(c), confidence);
+        }
+      }
+    }
+  }
+
+  private void clear() {
+    size = 0;
+    Arrays.fill(weightedSums, 0);
+    Arrays.fill(counts, 0);
+  }
+
+  private void removeOldest() {
+    float[] row = confidences[oldest];
+    boolean[] hasRow = hasConfidence[oldest];
+    for (int c = 0; c < numClasses; c++) {
+      if (hasRow[c]) {
+        // Drop the sum once the class leaves the window, so rounding errors don't accumulate.
+        weightedSums[c] = --counts[c] == 0 ? 0 : weightedSums[c] - oldestWeight * row[c];
+      }
+    }
+    oldest = (oldest + 1) % windowSize;
+    size--;
+  }
+
+  private void add(ClassificationResult classificationResult) {
+    int slot = (oldest + size) % windowSize;
+    if (classificationResult.getClassRegistry() == classRegistry) {
+      ensureCapacity(classRegistry.size());
+      Arrays.fill(hasConfidence[slot], false);
+      for (int c = 0; c < numClasses; c++) {
+        if (classificationResult.hasConfidence(c)) {
+          add(slot, c, classificationResult.getConfidence(c));
+        }
+      }
+    } else {
+      // Results from elsewhere, e.g. built by hand, are matched to our classes by name.
+      for (String className : classificationResult.getAllClasses()) {
+        classRegistry.intern(className);
+      }
+      ensureCapacity(classRegistry.size());
+      Arrays.fill(hasConfidence[slot], false);
+      for (String className : classificationResult.getAllClasses()) {
+        add(slot, classRegistry.getId(className),
+            classificationResult.getClassConfidence(className));
+      }
+    }
+    size++;
+  }
+
+  private void add(int slot, int c, float confidence) {
+    confidences[slot][c] = confidence;
+    hasConfidence[slot][c] = true;
+    weightedSums[c] += confidence;
+    counts[c]++;
+  }
+
+  private void ensureCapacity(int classCount) {
+    if (classCount <= numClasses) {
+      return;
+    }
+    numClasses = classCount;
+    weightedSums = Arrays.copyOf(weightedSums, classCount);
+    counts = Arrays.copyOf(counts, classCount);
+    for (int i = 0; i < windowSize; i++) {
+      confidences[i] = Arrays.copyOf(confidences[i], classCount);
+      hasConfidence[i] = Arrays.copyOf(hasConfidence[i], classCount);
+    }
+  }
+}
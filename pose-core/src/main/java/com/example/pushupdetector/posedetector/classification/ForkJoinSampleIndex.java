@@ -0,0 +1,132 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A {@link PoseSampleIndex} that splits the linear scan across a {@link ForkJoinPool}.
+ *
+ * <p>Every partition keeps its own top K, which are merged afterwards. Since {@link TopKHeap}
+ * orders entries by distance and then by sample id, the merged result is exactly the one of a
+ * sequential scan. Libraries smaller than {@code minParallelSize} are scanned sequentially on the
+ * calling thread, as the fork/join overhead outweighs the gain there.
+ *
+ * <p>Partition heaps are reused across searches, so an instance must not be searched from several
+ * threads at once.
+ */
+public class ForkJoinSampleIndex implements PoseSampleIndex {
+  public static final Factory FACTORY = ForkJoinSampleIndex::new;
+
+  // Below this many samples a single thread with early abandoning keeps up comfortably.
+  public static final int DEFAULT_MIN_PARALLEL_SIZE = 16_384;
+  private static final int MIN_PARTITION_SIZE = 4_096;
+
+  private final PoseSampleMatrix sampleMatrix;
+  private final float wx;
+  private final float wy;
+  private final float wz;
+  private final ForkJoinPool pool;
+  private final int minParallelSize;
+  private final BruteForceSampleIndex sequentialIndex;
+  private final int partitionSize;
+  private final TopKHeap[] partitionHeaps;
+
+  public ForkJoinSampleIndex(PoseSampleMatrix sampleMatrix, float wx, float wy, float wz) {
+    this(sampleMatrix, wx, wy, wz, ForkJoinPool.commonPool(), DEFAULT_MIN_PARALLEL_SIZE);
+  }
+
+  public ForkJoinSampleIndex(PoseSampleMatrix sampleMatrix, float wx, float wy, float wz,
+      ForkJoinPool pool, int minParallelSize) {
+    this.sampleMatrix = sampleMatrix;
+    this.wx = wx;
+    this.wy = wy;
+    this.wz = wz;
+    this.pool = pool;
+    this.minParallelSize = minParallelSize;
+    this.sequentialIndex = new BruteForceSampleIndex(sampleMatrix, wx, wy, wz);
+
+    // A few partitions per worker evens out partitions that abandon less often than others.
+    int numPartitions = Math.max(1, Math.min(pool.getParallelism() * 4,
+        sampleMatrix.size() / MIN_PARTITION_SIZE));
+    this.partitionSize = (sampleMatrix.size() + numPartitions - 1) / numPartitions;
+    this.partitionHeaps = new TopKHeap[numPartitions];
+  }
+
+  /** Returns a factory for indexes that run on the given pool. */
+  public static Factory factory(ForkJoinPool pool, int minParallelSize) {
+    return (sampleMatrix, wx, wy, wz) ->
+        new ForkJoinSampleIndex(sampleMatrix, wx, wy, wz, pool, minParallelSize);
+  }
+
+  /** Returns whether searches are split across the pool, given the library size. */
+  public boolean isParallel() {
+    return sampleMatrix.size() >= minParallelSize
+        && partitionHeaps.length > 1
+        && pool.getParallelism() > 1;
+  }
+
+  @Override
+  public int search(float[] query, float[] flippedQuery, TopKHeap out) {
+    if (!isParallel()) {
+      return sequentialIndex.search(query, flippedQuery, out);
+    }
+
+    for (int i = 0; i < partitionHeaps.length; i++) {
+      if (partitionHeaps[i] == null || partitionHeaps[i].capacity() != out.capacity()) {
+        partitionHeaps[i] = new TopKHeap(out.capacity());
+      }
+      partitionHeaps[i].clear();
+    }
+    int abandoned = pool.invoke(new ScanTask(0, partitionHeaps.length, query, flippedQuery));
+
+    for (TopKHeap partitionHeap : partitionHeaps) {
+      for (int i = 0; i < partitionHeap.size(); i++) {
+        out.offer(partitionHeap.getId(i), partitionHeap.getKey(i));
+      }
+    }
+    return abandoned;
+  }
+
+  /** Scans partitions [{@code first}, {@code last}), returning the number of abandoned samples. */
+  // Tasks only live for one search on the pool and are never serialized, although ForkJoinTask is
+  // Serializable.
+  @SuppressWarnings("serial")
+  private class ScanTask extends RecursiveTask<Integer> {
+    private final int first;
+    private final int last;
+    private final float[] query;
+    private final float[] flippedQuery;
+
+    ScanTask(int first, int last, float[] query, float[] flippedQuery) {
+      this.first = first;
+      this.last = last;
+      this.query = query;
+      this.flippedQuery = flippedQuery;
+    }
+
+    @Override
+    protected Integer compute() {
+      if (last - first > 1) {
+        int mid = (first + last) >>> 1;
+        ScanTask right = new ScanTask(mid, last, query, flippedQuery);
+        right.fork();
+        int abandoned = new ScanTask(first, mid, query, flippedQuery).compute();
+        return abandoned + right.join();
+      }
+
+      TopKHeap heap = partitionHeaps[first];
+      int end = Math.min(sampleMatrix.size(), (first + 1) * partitionSize);
+      int abandoned = 0;
+      for (int i = first * partitionSize; i < end; i++) {
+        float maxDistance =
+            sampleMatrix.minMaxDistance(i, query, flippedQuery, wx, wy, wz, heap.threshold());
+        if (maxDistance == Float.POSITIVE_INFINITY) {
+          abandoned++;
+          continue;
+        }
+        heap.offer(i, maxDistance);
+      }
+      return abandoned;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded queue of landmark frames, which hands the landmarks of detected poses over to the
+ * classification stage, so that the detector doesn't wait for classification and the camera frame
+ * can be released as soon as the landmarks are copied out of it.
+ *
+ * <p>When the queue is full the oldest frame is dropped, since a frame that waited that long is
+ * already late for the rep counter and the overlay. Frames are copied into slots allocated up
+ * front, so nothing is allocated per frame.
+ *
+ * <p>The queue also tells the producer when the consumer has to be scheduled: {@link #offer}
+ * returns true only when the consumer isn't draining the queue already, i.e. the last {@link
+ * #poll} found it empty. Thread safe.
+ */
+public class LandmarkFrameQueue {
+  private final Frame[] slots;
+  private int head;
+  private int size;
+  private boolean draining;
+
+  private long offeredCount;
+  private long droppedCount;
+
+  /** @param capacity the most frames waiting at a time. */
+  public LandmarkFrameQueue(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Expected a capacity > 0, got %s", capacity);
+    slots = new Frame[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Frame();
+    }
+  }
+
+  /**
+   * Copies a frame to the end of the queue, dropping the oldest frame if it is full.
+   *
+   * @param landmarks packed as in {@link PoseClassifier#classify(float[])}, or null if no pose was
+   *     detected.
+   * @param frameId the id of the camera frame, e.g. to trace it.
+   * @param timestampNanos when the frame was detected, e.g. to measure how long it waited.
+   * @return whether the consumer has to be scheduled to drain the queue.
+   */
+  public synchronized boolean offer(float[] landmarks, long frameId, long timestampNanos) {
+    offeredCount++;
+    if (size == slots.length) {
+      head = (head + 1) % slots.length;
+      size--;
+      droppedCount++;
+    }
+    slots[(head + size) % slots.length].set(landmarks, frameId, timestampNanos);
+    size++;
+    if (draining) {
+      return false;
+    }
+    draining = true;
+    return true;
+  }
+
+  /**
+   * Moves the oldest frame to {@code out}.
+   *
+   * @return false if the queue is empty, in which case the consumer is done draining it and the
+   *     next {@link #offer} schedules it again.
+   */
+  public synchronized boolean poll(Frame out) {
+    if (size == 0) {
+      draining = false;
+      return false;
+    }
+    out.set(slots[head]);
+    head = (head + 1) % slots.length;
+    size--;
+    return true;
+  }
+
+  /** Drops the frames waiting, without counting them as dropped. */
+  public synchronized void clear() {
+    size = 0;
+  }
+
+  /** Returns the number of frames waiting. */
+  public synchronized int size() {
+    return size;
+  }
+
+  /** Returns the number of frames given to {@link #offer}. */
+  public synchronized long getOfferedCount() {
+    return offeredCount;
+  }
+
+  /** Returns the number of frames dropped before being polled. */
+  public synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /** The landmarks of one frame. */
+  public static class Frame {
+    private final float[] landmarks = new float[NUM_LANDMARKS * 3];
+    private boolean hasLandmarks;
+    private long frameId;
+    private long timestampNanos;
+
+    /** Returns the landmarks, or null if no pose was detected. Reused by the next frame. */
+    public float[] getLandmarks() {
+      return hasLandmarks ? landmarks : null;
+    }
+
+    public long getFrameId() {
+      return frameId;
+    }
+
+    public long getTimestampNanos() {
+      return timestampNanos;
+    }
+
+    private void set(float[] landmarks, long frameId, long timestampNanos) {
+      hasLandmarks = landmarks != null;
+      if (hasLandmarks) {
+        System.arraycopy(landmarks, 0, this.landmarks, 0, this.landmarks.length);
+      }
+      this.frameId = frameId;
+      this.timestampNanos = timestampNanos;
+    }
+
+    private void set(Frame frame) {
+      set(frame.getLandmarks(), frame.frameId, frame.timestampNanos);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads the frames written by {@link LandmarkStreamWriter}, typically from a memory-mapped file,
+ * without allocating per frame.
+ *
+ * <p>A frame cut short, e.g. because the app was killed while recording, ends the stream.
+ */
+public class LandmarkStreamReader {
+  private final ByteBuffer buffer;
+  private final float[] landmarks = new float[LandmarkStreamWriter.NUM_VALUES];
+
+  private long timestampMs;
+  private boolean hasLandmarks;
+
+  public LandmarkStreamReader(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.remaining() < LandmarkStreamWriter.HEADER_SIZE
+        || buffer.getInt() != LandmarkStreamWriter.MAGIC) {
+      throw new IOException("Not a landmark stream");
+    }
+    int version = buffer.getInt();
+    if (version != LandmarkStreamWriter.VERSION) {
+      throw new IOException("Unsupported landmark stream version " + version);
+    }
+    int numLandmarks = buffer.getInt();
+    if (numLandmarks != PoseEmbedding.NUM_LANDMARKS) {
+      throw new IOException("Unsupported number of landmarks " + numLandmarks);
+    }
+  }
+
+  /** Moves to the next frame, returning false at the end of the stream. */
+  public boolean next() {
+    if (buffer.remaining() < 8 + 1) {
+      return false;
+    }
+    int frameStart = buffer.position();
+    timestampMs = buffer.getLong();
+    hasLandmarks = buffer.get() != 0;
+    if (hasLandmarks) {
+      if (buffer.remaining() < landmarks.length * 4) {
+        buffer.position(frameStart);
+        return false;
+      }
+      for (int i = 0; i < landmarks.length; i++) {
+        landmarks[i] = buffer.getFloat();
+      }
+    }
+    return true;
+  }
+
+  public long getTimestampMs() {
+    return timestampMs;
+  }
+
+  /** Returns whether a pose was detected in the current frame. */
+  public boolean hasLandmarks() {
+    return hasLandmarks;
+  }
+
+  /**
+   * Returns the landmarks of the current frame, as written. The array is reused by the next call
+   * to {@link #next()} and only valid if {@link #hasLandmarks()}.
+   */
+  public float[] getLandmarks() {
+    return landmarks;
+  }
+}
@@ -0,0 +1,91 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a stream of detected poses, one frame at a time, so that a session can later be replayed
+ * with {@link ReplayEngine}.
+ *
+ * <p>All values are little-endian. The layout is:
+ *
+ * <pre>
+ *   int     MAGIC
+ *   int     VERSION
+ *   int     number of landmarks per frame
+ *   frames  until the end of the stream, each:
+ *     long    timestamp in milliseconds
+ *     byte    1 if a pose was detected, 0 otherwise
+ *     float[] x, y, z of every landmark, only if a pose was detected
+ * </pre>
+ */
+public class LandmarkStreamWriter implements Closeable, Flushable {
+  public static final int MAGIC = 0x534D4C50; // "PLMS"
+  public static final int VERSION = 1;
+  public static final String FILE_EXTENSION = ".plms";
+
+  static final int NUM_VALUES = PoseEmbedding.NUM_LANDMARKS * 3;
+  static final int HEADER_SIZE = 3 * 4;
+  static final int MAX_FRAME_SIZE = 8 + 1 + NUM_VALUES * 4;
+
+  private final OutputStream outputStream;
+  // Each frame is encoded here and written with a single call.
+  private final ByteBuffer frameBuffer =
+      ByteBuffer.allocate(MAX_FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+  private int frameCount;
+
+  /** Writes the header to {@code outputStream}, which is closed with this writer. */
+  public LandmarkStreamWriter(OutputStream outputStream) throws IOException {
+    this.outputStream = outputStream;
+    frameBuffer.putInt(MAGIC).putInt(VERSION).putInt(PoseEmbedding.NUM_LANDMARKS);
+    flushFrameBuffer();
+  }
+
+  /**
+   * Writes a frame.
+   *
+   * @param landmarks interleaved x, y, z values in the order of {@link LandmarkType}, or null if
+   *     no pose was detected in the frame.
+   */
+  public void writeFrame(long timestampMs, float[] landmarks) throws IOException {
+    frameBuffer.putLong(timestampMs);
+    if (landmarks == null) {
+      frameBuffer.put((byte) 0);
+    } else {
+      Preconditions.checkArgument(landmarks.length == NUM_VALUES,
+          "Expected %s landmark values, got %s", NUM_VALUES, landmarks.length);
+      frameBuffer.put((byte) 1);
+      for (float value : landmarks) {
+        frameBuffer.putFloat(value);
+      }
+    }
+    flushFrameBuffer();
+    frameCount++;
+  }
+
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    outputStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    outputStream.close();
+  }
+
+  private void flushFrameBuffer() throws IOException {
+    outputStream.write(frameBuffer.array(), 0, frameBuffer.position());
+    frameBuffer.clear();
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/**
+ * Logging facade of the classification code, so that it does not depend on a platform logger.
+ *
+ * <p>Messages go to a pluggable {@link Backend}. The default one writes warnings and errors to
+ * standard error and drops the rest. The app installs one backed by {@code android.util.Log}.
+ */
+public final class Logger {
+  // Same values as the android.util.Log priorities.
+  public static final int DEBUG = 3;
+  public static final int INFO = 4;
+  public static final int WARN = 5;
+  public static final int ERROR = 6;
+
+  /** Receives the messages of {@link Logger}. */
+  public interface Backend {
+    boolean isLoggable(String tag, int level);
+
+    /** Logs a message, {@code throwable} may be null. */
+    void log(int level, String tag, String message, Throwable throwable);
+  }
+
+  private static final Backend STANDARD_ERROR_BACKEND = new Backend() {
+    @Override
+    public boolean isLoggable(String tag, int level) {
+      return level >= WARN;
+    }
+
+    @Override
+    public void log(int level, String tag, String message, Throwable throwable) {
+      System.err.println(tag + ": " + message);
+      if (throwable != null) {
+        throwable.printStackTrace();
+      }
+    }
+  };
+
+  private static volatile Backend backend = STANDARD_ERROR_BACKEND;
+
+  private Logger() {}
+
+  public static void setBackend(Backend newBackend) {
+    backend = newBackend;
+  }
+
+  /**
+   * Returns whether messages of {@code level} are logged, to skip building messages that would be
+   * dropped.
+   */
+  public static boolean isLoggable(String tag, int level) {
+    return backend.isLoggable(tag, level);
+  }
+
+  public static void d(String tag, String message) {
+    log(DEBUG, tag, message, null);
+  }
+
+  public static void w(String tag, String message) {
+    log(WARN, tag, message, null);
+  }
+
+  public static void e(String tag, String message) {
+    log(ERROR, tag, message, null);
+  }
+
+  public static void e(String tag, String message, Throwable throwable) {
+    log(ERROR, tag, message, throwable);
+  }
+
+  private static void log(int level, String tag, String message, Throwable throwable) {
+    Backend current = backend;
+    if (current.isLoggable(tag, level)) {
+      current.log(level, tag, message, throwable);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Tells whether a pose has moved enough since the last classified one to be worth classifying
+ * again. While the user holds a plank or rests between sets, poses barely change, and the
+ * previous {@link ClassificationResult} can be reused instead of running the embedding and the
+ * nearest neighbour search.
+ *
+ * <p>A pose has moved when any landmark moved, along x or y, by more than the threshold times
+ * the size of the last classified pose, i.e. the larger side of its bounding box, so that the
+ * threshold doesn't depend on the image size or how far the user is. Z is left out as it is the
+ * noisiest. At most {@code maxSkippedFrames} frames in a row are skipped, so that slow drift
+ * still gets classified.
+ *
+ * <p>Not thread safe.
+ */
+public class MotionGate {
+  // Landmarks jitter by about 1% of the pose size between frames of a still pose.
+  private static final float DEFAULT_THRESHOLD = 0.02f;
+  // About 100ms at 30 fps, well under the time it takes to go down or up.
+  private static final int DEFAULT_MAX_SKIPPED_FRAMES = 3;
+
+  private final float threshold;
+  private final int maxSkippedFrames;
+
+  private final float[] lastLandmarks = new float[NUM_LANDMARKS * 3];
+  private boolean hasLastLandmarks;
+  private float maxOffset;
+  private int skippedFrames;
+
+  private long frameCount;
+  private long skippedFrameCount;
+
+  public MotionGate() {
+    this(DEFAULT_THRESHOLD, DEFAULT_MAX_SKIPPED_FRAMES);
+  }
+
+  /**
+   * @param threshold the largest landmark offset, relative to the pose size, of a pose that
+   *     hasn't moved.
+   * @param maxSkippedFrames the most frames in a row that can be skipped.
+   */
+  public MotionGate(float threshold, int maxSkippedFrames) {
+    Preconditions.checkArgument(threshold >= 0, "Expected a threshold >= 0, got %s", threshold);
+    Preconditions.checkArgument(
+        maxSkippedFrames >= 0, "Expected maxSkippedFrames >= 0, got %s", maxSkippedFrames);
+    this.threshold = threshold;
+    this.maxSkippedFrames = maxSkippedFrames;
+  }
+
+  /**
+   * Returns whether {@code landmarks}, packed as in {@link PoseClassifier#classify(float[])},
+   * need to be classified. If so, they become the pose later ones are compared with.
+   */
+  public boolean shouldClassify(float[] landmarks) {
+    frameCount++;
+    if (hasLastLandmarks && skippedFrames < maxSkippedFrames && !hasMoved(landmarks)) {
+      skippedFrames++;
+      skippedFrameCount++;
+      return false;
+    }
+    System.arraycopy(landmarks, 0, lastLandmarks, 0, lastLandmarks.length);
+    hasLastLandmarks = true;
+    maxOffset = threshold * poseSize(lastLandmarks);
+    skippedFrames = 0;
+    return true;
+  }
+
+  /** Forgets the last classified pose, e.g. when no pose was detected, so the next one is. */
+  public void reset() {
+    hasLastLandmarks = false;
+  }
+
+  /** Returns the number of frames given to {@link #shouldClassify} since the last counter reset. */
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  /** Returns the number of frames that were not classified since the last counter reset. */
+  public long getSkippedFrameCount() {
+    return skippedFrameCount;
+  }
+
+  /** Returns the ratio of skipped frames since the last counter reset, 0 without frames. */
+  public float getSkipRatio() {
+    return frameCount > 0 ? (float) skippedFrameCount / frameCount : 0;
+  }
+
+  public void resetCounters() {
+    frameCount = 0;
+    skippedFrameCount = 0;
+  }
+
+  // Stops at the first landmark that moved too much.
+  private boolean hasMoved(float[] landmarks) {
+    for (int i = 0; i < lastLandmarks.length; i += 3) {
+      if (Math.abs(landmarks[i] - lastLandmarks[i]) > maxOffset
+          || Math.abs(landmarks[i + 1] - lastLandmarks[i + 1]) > maxOffset) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static float poseSize(float[] landmarks) {
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    for (int i = 0; i < landmarks.length; i += 3) {
+      minX = Math.min(minX, landmarks[i]);
+      maxX = Math.max(maxX, landmarks[i]);
+      minY = Math.min(minY, landmarks[i + 1]);
+      maxY = Math.max(maxY, landmarks[i + 1]);
+    }
+    return Math.max(maxX - minX, maxY - minY);
+  }
+}
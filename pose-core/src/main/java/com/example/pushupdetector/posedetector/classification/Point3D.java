@@ -0,0 +1,55 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/** An immutable 3D point or vector, the platform-free counterpart of ML Kit's {@code PointF3D}. */
+public final class Point3D {
+  private final float x;
+  private final float y;
+  private final float z;
+
+  private Point3D(float x, float y, float z) {
+    this.x = x;
+    this.y = y;
+    this.z = z;
+  }
+
+  public static Point3D from(float x, float y, float z) {
+    return new Point3D(x, y, z);
+  }
+
+  public float getX() {
+    return x;
+  }
+
+  public float getY() {
+    return y;
+  }
+
+  public float getZ() {
+    return z;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Point3D)) {
+      return false;
+    }
+    Point3D other = (Point3D) o;
+    return Float.compare(x, other.x) == 0
+        && Float.compare(y, other.y) == 0
+        && Float.compare(z, other.z) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Float.floatToIntBits(x) + Float.floatToIntBits(y))
+        + Float.floatToIntBits(z);
+  }
+
+  @Override
+  public String toString() {
+    return "Point3D{x=" + x + ", y=" + y + ", z=" + z + "}";
+  }
+}
@@ -0,0 +1,319 @@
+
+
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.getPoseEmbedding;
+import static java.lang.Math.min;
+
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics.Stage;
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classifies {link Pose} based on given {@link PoseSample}s.
+ *
+ * <p>Inspired by K-Nearest Neighbors Algorithm with outlier filtering.
+ * https://en.wikipedia.org/wiki/K-nearest_neighbors_algorithm
+ *
+ * <p>Sample embeddings are packed into a {@link PoseSampleMatrix} once at construction, and the
+ * query landmarks and embeddings are computed in reusable buffers, so instances must not be shared
+ * between threads.
+ */
+public class PoseClassifier {
+    private static final String TAG = "PoseClassifier";
+    private static final int MAX_DISTANCE_TOP_K = 30;
+    private static final int MEAN_DISTANCE_TOP_K = 10;
+    // Note Z has a lower weight as it is generally less accurate than X & Y.
+    private static final Point3D AXES_WEIGHTS = Point3D.from(1, 1, 0.2f);
+
+    private final PoseSampleMatrix sampleMatrix;
+    private final PoseSampleIndex sampleIndex;
+    private final int maxDistanceTopK;
+    private final int meanDistanceTopK;
+    private final Point3D axesWeights;
+    // Packed query landmarks, embeddings and top-K heaps, reused across frames.
+    private final float[] landmarkBuffer = new float[NUM_LANDMARKS * 3];
+    private final float[] flippedLandmarkBuffer = new float[NUM_LANDMARKS * 3];
+    private final float[] normalizedLandmarkBuffer = new float[NUM_LANDMARKS * 3];
+    private final float[] embeddingBuffer;
+    private final float[] flippedEmbeddingBuffer;
+    private final TopKHeap maxDistances;
+    private final TopKHeap meanDistances;
+    // Used by classifyBatch, created on first use.
+    private BlockSearch blockSearch;
+
+    // Counters of samples whose distance evaluation was pruned or abandoned early in each stage.
+    private long evaluatedSampleCount;
+    private long maxDistanceAbandonedCount;
+    private long meanDistanceAbandonedCount;
+
+    public PoseClassifier(List<PoseSample> poseSamples) {
+        this(poseSamples, MAX_DISTANCE_TOP_K, MEAN_DISTANCE_TOP_K, AXES_WEIGHTS);
+    }
+
+    public PoseClassifier(List<PoseSample> poseSamples, int maxDistanceTopK,
+                          int meanDistanceTopK, Point3D axesWeights) {
+        this(PoseSampleMatrix.fromSamples(poseSamples), maxDistanceTopK, meanDistanceTopK,
+                axesWeights, BruteForceSampleIndex.FACTORY);
+    }
+
+    public PoseClassifier(PoseSampleMatrix sampleMatrix, PoseSampleIndex.Factory indexFactory) {
+        this(sampleMatrix, MAX_DISTANCE_TOP_K, MEAN_DISTANCE_TOP_K, AXES_WEIGHTS, indexFactory);
+    }
+
+    /**
+     * Creates a classifier that looks up the max distance top K samples through an index created
+     * by {@code indexFactory}, e.g. {@link VantagePointTreeIndex#FACTORY} for large libraries.
+     */
+    public PoseClassifier(PoseSampleMatrix sampleMatrix, int maxDistanceTopK,
+                          int meanDistanceTopK, Point3D axesWeights,
+                          PoseSampleIndex.Factory indexFactory) {
+        this.sampleMatrix = sampleMatrix;
+        this.sampleIndex = indexFactory.create(
+                sampleMatrix, axesWeights.getX(), axesWeights.getY(), axesWeights.getZ());
+        this.maxDistanceTopK = maxDistanceTopK;
+        this.meanDistanceTopK = meanDistanceTopK;
+        this.axesWeights = axesWeights;
+        this.embeddingBuffer = new float[sampleMatrix.getStride()];
+        this.flippedEmbeddingBuffer = new float[sampleMatrix.getStride()];
+        this.maxDistances = new TopKHeap(maxDistanceTopK);
+        this.meanDistances = new TopKHeap(meanDistanceTopK);
+    }
+
+    /**
+     * Returns the max range of confidence values.
+     *
+     * <p><Since we calculate confidence by counting {@link PoseSample}s that survived
+     * outlier-filtering by maxDistanceTopK and meanDistanceTopK, this range is the minimum of two.
+     */
+    public int confidenceRange() {
+        return min(maxDistanceTopK, meanDistanceTopK);
+    }
+
+    /** Returns the class names, indexed by the class ids of {@link #classifyBatch}. */
+    public String[] getClassNames() {
+        return sampleMatrix.getClassNames();
+    }
+
+    /**
+     * Returns the registry of the sample classes. Results of {@link #classify} use it, so they can
+     * be read by class id, e.g. {@link ClassificationResult#getConfidence(int)}.
+     */
+    public ClassRegistry getClassRegistry() {
+        return sampleMatrix.getClassRegistry();
+    }
+
+    /** Returns the number of samples scanned in the max distance stage since the last reset. */
+    public long getEvaluatedSampleCount() {
+        return evaluatedSampleCount;
+    }
+
+    /**
+     * Returns the number of samples whose max distance evaluation was pruned or abandoned early,
+     * because they could no longer enter the top K, since the last reset.
+     */
+    public long getMaxDistanceAbandonedCount() {
+        return maxDistanceAbandonedCount;
+    }
+
+    /**
+     * Returns the number of samples whose mean distance evaluation was abandoned early, because
+     * they could no longer enter the top K, since the last reset.
+     */
+    public long getMeanDistanceAbandonedCount() {
+        return meanDistanceAbandonedCount;
+    }
+
+    public void resetCounters() {
+        evaluatedSampleCount = 0;
+        maxDistanceAbandonedCount = 0;
+        meanDistanceAbandonedCount = 0;
+    }
+
+    /**
+     * Classifies {@link PoseEmbedding#NUM_LANDMARKS} landmarks, packed as interleaved x, y, z
+     * values. The array is only read during the call and can be reused for the next pose.
+     */
+    public ClassificationResult classify(float[] landmarks) {
+        ClassificationResult result = new ClassificationResult(getClassRegistry());
+        classify(landmarks, result);
+        return result;
+    }
+
+    /**
+     * Same as {@link #classify(float[])}, but writes the confidences to {@code result}, which is
+     * cleared first, so that one result can be reused for every frame. Allocates nothing when
+     * {@code result} uses {@link #getClassRegistry()}.
+     */
+    public void classify(float[] landmarks, ClassificationResult result) {
+        result.clear();
+        // Return early if no samples loaded.
+        if (sampleMatrix.size() == 0) {
+            return;
+        }
+        System.arraycopy(landmarks, 0, landmarkBuffer, 0, landmarkBuffer.length);
+        classifyLandmarkBuffer(result);
+    }
+
+    public ClassificationResult classify(List<Point3D> landmarks) {
+        ClassificationResult result = new ClassificationResult(getClassRegistry());
+        // Return early if no landmarks detected or no samples loaded.
+        if (landmarks.isEmpty() || sampleMatrix.size() == 0) {
+            return result;
+        }
+        checkLandmarkCount(landmarks.size());
+        PoseSampleMatrix.pack(landmarks, landmarkBuffer, 0);
+        classifyLandmarkBuffer(result);
+        return result;
+    }
+
+    /**
+     * Classifies {@code frameCount} poses packed one after another in {@code frames}, each as in
+     * {@link #classify(float[])}, and writes the confidence of class {@code c} in frame {@code f}
+     * to {@code confidences[f * getClassNames().length + c]}.
+     *
+     * <p>Gives the same confidences as classifying the frames one at a time, several times faster
+     * with the default {@link BruteForceSampleIndex} when consecutive frames are alike, as in
+     * recorded sessions: see {@link BlockSearch}. Other indexes search one frame at a time.
+     */
+    public void classifyBatch(float[] frames, int frameCount, float[] confidences) {
+        int numValues = landmarkBuffer.length;
+        int numClasses = sampleMatrix.getClassNames().length;
+        Preconditions.checkArgument(frames.length >= frameCount * numValues,
+                "Expected %s frames, got %s values", frameCount, frames.length);
+        Preconditions.checkArgument(confidences.length >= frameCount * numClasses,
+                "Expected room for %s confidences, got %s", frameCount * numClasses,
+                confidences.length);
+        Arrays.fill(confidences, 0, frameCount * numClasses, 0f);
+        // Return early if no samples loaded.
+        if (sampleMatrix.size() == 0) {
+            return;
+        }
+        if (blockSearch == null) {
+            blockSearch = new BlockSearch(sampleMatrix, maxDistanceTopK,
+                    axesWeights.getX(), axesWeights.getY(), axesWeights.getZ());
+        }
+        blockSearch.reset();
+
+        int stride = sampleMatrix.getStride();
+        float[] queries = blockSearch.queries();
+        float[] flippedQueries = blockSearch.flippedQueries();
+        for (int start = 0; start < frameCount; start += BlockSearch.BLOCK_SIZE) {
+            int blockSize = min(BlockSearch.BLOCK_SIZE, frameCount - start);
+            for (int f = 0; f < blockSize; f++) {
+                System.arraycopy(frames, (start + f) * numValues, landmarkBuffer, 0, numValues);
+                embedLandmarkBuffer(queries, flippedQueries, f * stride);
+            }
+            searchBlock(blockSize);
+
+            for (int f = 0; f < blockSize; f++) {
+                rankByMeanDistance(blockSearch.result(f), queries, flippedQueries, f * stride);
+                for (int i = 0; i < meanDistances.size(); i++) {
+                    int classId = sampleMatrix.getClassId(meanDistances.getId(i));
+                    confidences[(start + f) * numClasses + classId]++;
+                }
+            }
+        }
+    }
+
+    private void searchBlock(int blockSize) {
+        evaluatedSampleCount += (long) blockSize * sampleMatrix.size();
+        if (sampleIndex instanceof BruteForceSampleIndex) {
+            maxDistanceAbandonedCount += blockSearch.search(blockSize);
+            return;
+        }
+        // Other indexes prune by query, so they search one frame at a time.
+        int stride = sampleMatrix.getStride();
+        for (int f = 0; f < blockSize; f++) {
+            System.arraycopy(blockSearch.queries(), f * stride, embeddingBuffer, 0, stride);
+            System.arraycopy(
+                    blockSearch.flippedQueries(), f * stride, flippedEmbeddingBuffer, 0, stride);
+            TopKHeap result = blockSearch.result(f);
+            result.clear();
+            maxDistanceAbandonedCount +=
+                    sampleIndex.search(embeddingBuffer, flippedEmbeddingBuffer, result);
+        }
+    }
+
+    private static void checkLandmarkCount(int count) {
+        Preconditions.checkArgument(
+                count == NUM_LANDMARKS, "Expected %s landmarks, got %s", NUM_LANDMARKS, count);
+    }
+
+    private void classifyLandmarkBuffer(ClassificationResult result) {
+        boolean sameRegistry = result.getClassRegistry() == getClassRegistry();
+        long embeddingStartNanos = System.nanoTime();
+        embedLandmarkBuffer(embeddingBuffer, flippedEmbeddingBuffer, 0);
+        long searchStartNanos = System.nanoTime();
+        FrameMetrics.record(Stage.EMBEDDING, searchStartNanos - embeddingStartNanos);
+
+        // Classification is done in two stages:
+        //  * First we pick top-K samples by MAX distance. It allows to remove samples that are almost
+        //    the same as given pose, but maybe has few joints bent in the other direction.
+        //  * Then we pick top-K samples by MEAN distance. After outliers are removed, we pick samples
+        //    that are closest by average.
+        // Both stages keep the max distance on top of a bounded heap, so it can be replaced once
+        // top_k size is reached.
+
+        // Retrieve top K poseSamples by least distance to remove outliers.
+        maxDistances.clear();
+        maxDistanceAbandonedCount +=
+                sampleIndex.search(embeddingBuffer, flippedEmbeddingBuffer, maxDistances);
+        evaluatedSampleCount += sampleMatrix.size();
+
+        // Retrive top K poseSamples by least mean distance to remove outliers.
+        rankByMeanDistance(maxDistances, embeddingBuffer, flippedEmbeddingBuffer, 0);
+        FrameMetrics.record(Stage.KNN, System.nanoTime() - searchStartNanos);
+
+        for (int i = 0; i < meanDistances.size(); i++) {
+            int sample = meanDistances.getId(i);
+            if (Logger.isLoggable(TAG, Logger.DEBUG)) {
+                Logger.d(TAG, "classify: " + sampleMatrix.getClassName(sample));
+            }
+            if (sameRegistry) {
+                result.incrementConfidence(sampleMatrix.getClassId(sample));
+            } else {
+                result.incrementClassConfidence(sampleMatrix.getClassName(sample));
+            }
+        }
+    }
+
+    /**
+     * Writes the embeddings of the landmark buffer and of its mirror image from {@code offset} on.
+     */
+    private void embedLandmarkBuffer(float[] embeddings, float[] flippedEmbeddings, int offset) {
+        // We do flipping on X-axis so we are horizontal (mirror) invariant.
+        for (int i = 0; i < landmarkBuffer.length; i += 3) {
+            flippedLandmarkBuffer[i] = -landmarkBuffer[i];
+            flippedLandmarkBuffer[i + 1] = landmarkBuffer[i + 1];
+            flippedLandmarkBuffer[i + 2] = landmarkBuffer[i + 2];
+        }
+
+        getPoseEmbedding(landmarkBuffer, normalizedLandmarkBuffer, embeddings, offset);
+        getPoseEmbedding(
+                flippedLandmarkBuffer, normalizedLandmarkBuffer, flippedEmbeddings, offset);
+    }
+
+    /** Fills {@code meanDistances} with the samples of {@code candidates} closest by mean. */
+    private void rankByMeanDistance(
+            TopKHeap candidates, float[] query, float[] flippedQuery, int queryOffset) {
+        meanDistances.clear();
+        for (int i = 0; i < candidates.size(); i++) {
+            int sample = candidates.getId(i);
+            // The mean distance is the min of original and flipped mean distances.
+            float meanDistance = sampleMatrix.minMeanDistance(
+                    sample, query, flippedQuery, queryOffset,
+                    axesWeights.getX(), axesWeights.getY(), axesWeights.getZ(),
+                    meanDistances.threshold());
+            if (meanDistance == Float.POSITIVE_INFINITY) {
+                meanDistanceAbandonedCount++;
+                continue;
+            }
+            meanDistances.offer(sample, meanDistance);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+
+
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_ANKLE;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_ELBOW;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_HIP;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_KNEE;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_SHOULDER;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.LEFT_WRIST;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_ANKLE;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_ELBOW;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_HIP;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_KNEE;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_SHOULDER;
+import static com.example.pushupdetector.posedetector.classification.LandmarkType.RIGHT_WRIST;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates embedding for given list of Pose landmarks.
+ *
+ * <p>Landmarks and embeddings are handled as packed {@code float[]}s of interleaved x, y, z
+ * values, the layout of {@link PoseSampleMatrix}, so that callers can reuse their buffers across
+ * frames and no objects are allocated per pose.
+ */
+public class PoseEmbedding {
+    /** Number of landmarks of a pose, as detected by ML Kit. */
+    public static final int NUM_LANDMARKS = 33;
+    /** Number of 3D entries of an embedding. */
+    public static final int EMBEDDING_SIZE = 23;
+
+    private static final int NUM_DIMS = 3;
+    // Multiplier to apply to the torso to get minimal body size. Picked this by experimentation.
+    private static final float TORSO_MULTIPLIER = 2.5f;
+    private static final float Y_THRESHOLD = 2.5f;
+
+    // We use several pairwise 3D distances to form pose embedding. These were selected
+    // based on experimentation for best results with our default pose classes as captued in the
+    // pose samples csv. Feel free to play with this and add or remove for your use-cases.
+    //
+    // Every pair (from, to) adds the entry to - from. They follow the first entry, which goes from
+    // the hips center to the shoulders center.
+    private static final int[] EMBEDDING_PAIRS = {
+            // One joint.
+            LEFT_SHOULDER, LEFT_ELBOW,
+            RIGHT_SHOULDER, RIGHT_ELBOW,
+            LEFT_ELBOW, LEFT_WRIST,
+            RIGHT_ELBOW, RIGHT_WRIST,
+            LEFT_HIP, LEFT_KNEE,
+            RIGHT_HIP, RIGHT_KNEE,
+            LEFT_KNEE, LEFT_ANKLE,
+            RIGHT_KNEE, RIGHT_ANKLE,
+            // Two joints.
+            LEFT_SHOULDER, LEFT_WRIST,
+            RIGHT_SHOULDER, RIGHT_WRIST,
+            LEFT_HIP, LEFT_ANKLE,
+            RIGHT_HIP, RIGHT_ANKLE,
+            // Four joints.
+            LEFT_HIP, LEFT_WRIST,
+            RIGHT_HIP, RIGHT_WRIST,
+            // Five joints.
+            LEFT_SHOULDER, LEFT_ANKLE,
+            RIGHT_SHOULDER, RIGHT_ANKLE,
+            LEFT_HIP, LEFT_WRIST,
+            RIGHT_HIP, RIGHT_WRIST,
+            // Cross body.
+            LEFT_ELBOW, RIGHT_ELBOW,
+            LEFT_KNEE, RIGHT_KNEE,
+            LEFT_WRIST, RIGHT_WRIST,
+            LEFT_ANKLE, RIGHT_ANKLE,
+    };
+
+    /**
+     * Returns the embedding of the given landmarks.
+     *
+     * <p>Allocates the result, prefer {@link #getPoseEmbedding(float[], float[], float[], int)}
+     * for per-frame work.
+     */
+    public static List<Point3D> getPoseEmbedding(List<Point3D> landmarks) {
+        Preconditions.checkArgument(landmarks.size() == NUM_LANDMARKS,
+                "Expected %s landmarks, got %s", NUM_LANDMARKS, landmarks.size());
+        float[] packedLandmarks = new float[NUM_LANDMARKS * NUM_DIMS];
+        float[] embedding = new float[EMBEDDING_SIZE * NUM_DIMS];
+        PoseSampleMatrix.pack(landmarks, packedLandmarks, 0);
+        getPoseEmbedding(packedLandmarks, new float[packedLandmarks.length], embedding, 0);
+
+        List<Point3D> result = new ArrayList<>(EMBEDDING_SIZE);
+        for (int i = 0; i < embedding.length; i += NUM_DIMS) {
+            result.add(Point3D.from(embedding[i], embedding[i + 1], embedding[i + 2]));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the embedding of {@code landmarks}, {@link #NUM_LANDMARKS} packed landmarks, into
+     * {@code out} from {@code offset} on, as {@link #EMBEDDING_SIZE} packed entries.
+     *
+     * @param normalizedLandmarks scratch buffer of at least {@code NUM_LANDMARKS * 3} floats, which
+     *     receives the normalized landmarks.
+     */
+    public static void getPoseEmbedding(
+            float[] landmarks, float[] normalizedLandmarks, float[] out, int offset) {
+        getPoseEmbedding(landmarks, Y_THRESHOLD, normalizedLandmarks, out, offset);
+    }
+
+    @VisibleForTesting
+    static void getPoseEmbedding(float[] landmarks, float yThreshold,
+                                 float[] normalizedLandmarks, float[] out, int offset) {
+        normalize(landmarks, yThreshold, normalizedLandmarks);
+        getEmbedding(normalizedLandmarks, out, offset);
+    }
+
+    private static void normalize(float[] landmarks, float yThreshold, float[] out) {
+        int length = NUM_LANDMARKS * NUM_DIMS;
+
+        // Normalize scale.
+        float scale = 1 / getPoseSize(landmarks);
+        for (int i = 0; i < length; i++) {
+            out[i] = landmarks[i] * scale;
+        }
+
+        // [STEP 0]: Check whether the body is oriented Vertically or Horizontally
+        // Assume it's oriented Vertically
+        if (Math.abs(y(out, LEFT_SHOULDER) - y(out, LEFT_HIP)) < yThreshold) {
+            return;
+        }
+
+        // [STEP 1]: RH to (0, 0, 0)
+        float rhX = x(out, RIGHT_HIP);
+        float rhY = y(out, RIGHT_HIP);
+        float rhZ = z(out, RIGHT_HIP);
+        for (int i = 0; i < length; i += NUM_DIMS) {
+            out[i] -= rhX;
+            out[i + 1] -= rhY;
+            out[i + 2] -= rhZ;
+        }
+
+        // Steps 2 and 3 are rotations, which are composed into a single quaternion (w, qx, qy, qz)
+        // and applied to the landmarks once.
+
+        // [STEP 2]: LH to (|LH|, 0, 0)
+        double lhX = x(out, LEFT_HIP);
+        double lhY = y(out, LEFT_HIP);
+        double lhZ = z(out, LEFT_HIP);
+        double lhMagnitude = Math.sqrt(lhX * lhX + lhY * lhY + lhZ * lhZ);
+        double w = 1;
+        double qx = 0;
+        double qy = 0;
+        double qz = 0;
+        if (lhX != (float) lhMagnitude || lhY != 0 || lhZ != 0) {
+            // The shortest rotation from unit vector b to unit vector a is the normalized
+            // (1 + b.a, b x a). Here a is the X axis.
+            w = 1 + lhX / lhMagnitude;
+            qy = lhZ / lhMagnitude;
+            qz = -lhY / lhMagnitude;
+            double norm = Math.sqrt(w * w + qy * qy + qz * qz);
+            w /= norm;
+            qy /= norm;
+            qz /= norm;
+        }
+
+        // [STEP 3] LS to (+, 0, ?)
+        // LS after step 2: v + w * t + q x t, with t = 2 * q x v.
+        double lsX = x(out, LEFT_SHOULDER);
+        double lsY = y(out, LEFT_SHOULDER);
+        double lsZ = z(out, LEFT_SHOULDER);
+        double tx = 2 * (qy * lsZ - qz * lsY);
+        double ty = 2 * (qz * lsX - qx * lsZ);
+        double tz = 2 * (qx * lsY - qy * lsX);
+        double rotatedX = lsX + w * tx + (qy * tz - qz * ty);
+        double rotatedY = lsY + w * ty + (qz * tx - qx * tz);
+        double rotatedZ = lsZ + w * tz + (qx * ty - qy * tx);
+
+        if ((float) rotatedY != 0) {
+            double desiredZ = Math.sqrt(rotatedY * rotatedY + rotatedZ * rotatedZ);
+            // Rotation from LS to (LS.x, 0, desiredZ), which has the same length.
+            double lsMagnitudeSquared = rotatedX * rotatedX + desiredZ * desiredZ;
+            double w3 = 1 + (rotatedX * rotatedX + rotatedZ * desiredZ) / lsMagnitudeSquared;
+            double qx3 = rotatedY * desiredZ / lsMagnitudeSquared;
+            double qy3 = (rotatedZ * rotatedX - rotatedX * desiredZ) / lsMagnitudeSquared;
+            double qz3 = -rotatedY * rotatedX / lsMagnitudeSquared;
+            double norm = Math.sqrt(w3 * w3 + qx3 * qx3 + qy3 * qy3 + qz3 * qz3);
+            w3 /= norm;
+            qx3 /= norm;
+            qy3 /= norm;
+            qz3 /= norm;
+
+            // Step 3 after step 2 is the product (w3, q3) * (w, q).
+            double composedW = w3 * w - (qx3 * qx + qy3 * qy + qz3 * qz);
+            double composedX = w3 * qx + w * qx3 + (qy3 * qz - qz3 * qy);
+            double composedY = w3 * qy + w * qy3 + (qz3 * qx - qx3 * qz);
+            double composedZ = w3 * qz + w * qz3 + (qx3 * qy - qy3 * qx);
+            w = composedW;
+            qx = composedX;
+            qy = composedY;
+            qz = composedZ;
+        }
+
+        double r00 = 1 - 2 * (qy * qy + qz * qz);
+        double r01 = 2 * (qx * qy - w * qz);
+        double r02 = 2 * (qx * qz + w * qy);
+        double r10 = 2 * (qx * qy + w * qz);
+        double r11 = 1 - 2 * (qx * qx + qz * qz);
+        double r12 = 2 * (qy * qz - w * qx);
+        double r20 = 2 * (qx * qz - w * qy);
+        double r21 = 2 * (qy * qz + w * qx);
+        double r22 = 1 - 2 * (qx * qx + qy * qy);
+        for (int i = 0; i < length; i += NUM_DIMS) {
+            float x = out[i];
+            float y = out[i + 1];
+            float z = out[i + 2];
+            out[i] = (float) (r00 * x + r01 * y + r02 * z);
+            out[i + 1] = (float) (r10 * x + r11 * y + r12 * z);
+            out[i + 2] = (float) (r20 * x + r21 * y + r22 * z);
+        }
+    }
+
+    // Translation normalization should've been done prior to calling this method.
+    private static float getPoseSize(float[] landmarks) {
+        // Note: This approach uses only 2D landmarks to compute pose size as using Z wasn't helpful
+        // in our experimentation but you're welcome to tweak.
+        float hipsX = (x(landmarks, LEFT_HIP) + x(landmarks, RIGHT_HIP)) * 0.5f;
+        float hipsY = (y(landmarks, LEFT_HIP) + y(landmarks, RIGHT_HIP)) * 0.5f;
+        float shouldersX = (x(landmarks, LEFT_SHOULDER) + x(landmarks, RIGHT_SHOULDER)) * 0.5f;
+        float shouldersY = (y(landmarks, LEFT_SHOULDER) + y(landmarks, RIGHT_SHOULDER)) * 0.5f;
+
+        float torsoSize = (float) Math.hypot(shouldersX - hipsX, shouldersY - hipsY);
+
+        float maxDistance = torsoSize * TORSO_MULTIPLIER;
+        // torsoSize * TORSO_MULTIPLIER is the floor we want based on experimentation but actual size
+        // can be bigger for a given pose depending on extension of limbs etc so we calculate that.
+        for (int i = 0; i < NUM_LANDMARKS * NUM_DIMS; i += NUM_DIMS) {
+            float distance = (float) Math.hypot(landmarks[i] - hipsX, landmarks[i + 1] - hipsY);
+            if (distance > maxDistance) {
+                maxDistance = distance;
+            }
+        }
+        return maxDistance;
+    }
+
+    private static void getEmbedding(float[] lm, float[] out, int offset) {
+        // One joint, from the hips center to the shoulders center.
+        float hipsCenterX = (x(lm, LEFT_HIP) + x(lm, RIGHT_HIP)) * 0.5f;
+        float hipsCenterY = (y(lm, LEFT_HIP) + y(lm, RIGHT_HIP)) * 0.5f;
+        float hipsCenterZ = (z(lm, LEFT_HIP) + z(lm, RIGHT_HIP)) * 0.5f;
+        out[offset++] = (x(lm, LEFT_SHOULDER) + x(lm, RIGHT_SHOULDER)) * 0.5f - hipsCenterX;
+        out[offset++] = (y(lm, LEFT_SHOULDER) + y(lm, RIGHT_SHOULDER)) * 0.5f - hipsCenterY;
+        out[offset++] = (z(lm, LEFT_SHOULDER) + z(lm, RIGHT_SHOULDER)) * 0.5f - hipsCenterZ;
+
+        for (int i = 0; i < EMBEDDING_PAIRS.length; i += 2) {
+            int from = EMBEDDING_PAIRS[i] * NUM_DIMS;
+            int to = EMBEDDING_PAIRS[i + 1] * NUM_DIMS;
+            out[offset++] = lm[to] - lm[from];
+            out[offset++] = lm[to + 1] - lm[from + 1];
+            out[offset++] = lm[to + 2] - lm[from + 2];
+        }
+    }
+
+    private static float x(float[] landmarks, int landmark) {
+        return landmarks[landmark * NUM_DIMS];
+    }
+
+    private static float y(float[] landmarks, int landmark) {
+        return landmarks[landmark * NUM_DIMS + 1];
+    }
+
+    private static float z(float[] landmarks, int landmark) {
+        return landmarks[landmark * NUM_DIMS + 2];
+    }
+
+    private PoseEmbedding() {
+    }
+}
@@ -2,11 +2,13 @@
 
 package com.example.pushupdetector.posedetector.classification;
 
-import android.util.Log;
-
 import com.google.common.base.Splitter;
-import com.google.mlkit.vision.common.PointF3D;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,9 +22,9 @@ public class PoseSample {
 
   private final String name;
   private final String className;
-  private final List<PointF3D> embedding;
+  private final List<Point3D> embedding;
 
-  public PoseSample(String name, String className, List<PointF3D> landmarks) {
+  public PoseSample(String name, String className, List<Point3D> landmarks) {
     this.name = name;
     this.className = className;
     this.embedding = PoseEmbedding.getPoseEmbedding(landmarks);
@@ -36,31 +38,47 @@ public class PoseSample {
     return className;
   }
 
-  public List<PointF3D> getEmbedding() {
+  public List<Point3D> getEmbedding() {
     return embedding;
   }
 
+  /** Reads the samples of a csv file, skipping lines that aren't valid samples. */
+  public static List<PoseSample> readPoseSamples(File csvFile) throws IOException {
+    List<PoseSample> poseSamples = new ArrayList<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(csvFile.toPath(), StandardCharsets.UTF_8)) {
+      for (String csvLine = reader.readLine(); csvLine != null; csvLine = reader.readLine()) {
+        // If line is not a valid {@link PoseSample}, we'll get null and skip adding to the list.
+        PoseSample poseSample = getPoseSample(csvLine, ",");
+        if (poseSample != null) {
+          poseSamples.add(poseSample);
+        }
+      }
+    }
+    return poseSamples;
+  }
+
   public static PoseSample getPoseSample(String csvLine, String separator) {
     List<String> tokens = Splitter.onPattern(separator).splitToList(csvLine);
     // Format is expected to be Name,Class,X1,Y1,Z1,X2,Y2,Z2...
     // + 2 is for Name & Class.
     if (tokens.size() != (NUM_LANDMARKS * NUM_DIMS) + 2) {
-      Log.e(TAG, "Invalid number of tokens for PoseSample");
+      Logger.e(TAG, "Invalid number of tokens for PoseSample");
       return null;
     }
     String name = tokens.get(0);
     String className = tokens.get(1);
-    List<PointF3D> landmarks = new ArrayList<>();
+    List<Point3D> landmarks = new ArrayList<>();
     // Read from the third token, first 2 tokens are name and class.
     for (int i = 2; i < tokens.size(); i += NUM_DIMS) {
       try {
         landmarks.add(
-            PointF3D.from(
+            Point3D.from(
                 Float.parseFloat(tokens.get(i)),
                 Float.parseFloat(tokens.get(i + 1)),
                 Float.parseFloat(tokens.get(i + 2))));
       } catch (NullPointerException | NumberFormatException e) {
-        Log.e(TAG, "Invalid value " + tokens.get(i) + " for landmark position.");
+        Logger.e(TAG, "Invalid value " + tokens.get(i) + " for landmark position.");
         return null;
       }
     }
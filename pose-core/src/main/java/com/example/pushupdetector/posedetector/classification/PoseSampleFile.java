@@ -0,0 +1,132 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the binary pose sample file, which holds the pose samples of a csv with the
+ * embedding of every sample already computed, so that the app does not parse text or compute
+ * sample embeddings at startup. The {@code compilePoseSamples} Gradle task runs {@link #main} to
+ * compile the bundled csv.
+ *
+ * <p>All values are little-endian. The layout is:
+ *
+ * <pre>
+ *   int     MAGIC
+ *   int     VERSION
+ *   int     number of samples
+ *   int     number of embedding entries per sample
+ *   int     number of classes
+ *   classes number of classes x (short UTF-8 length, UTF-8 bytes), zero padded to 4 bytes
+ *   int[]   class id of every sample
+ *   float[] x, y, z of every embedding entry of every sample
+ * </pre>
+ */
+public class PoseSampleFile {
+  public static final int MAGIC = 0x50534D50; // "PSMP"
+  public static final int VERSION = 2;
+
+  private static final int NUM_DIMS = 3;
+
+  private PoseSampleFile() {}
+
+  /**
+   * Reads the samples from {@code buffer}, typically a memory-mapped asset, into a {@link
+   * PoseSampleMatrix}. The embeddings are copied in a single bulk read.
+   */
+  public static PoseSampleMatrix read(ByteBuffer buffer) throws IOException {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("Not a pose sample file");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported pose sample file version " + version);
+    }
+    int numSamples = buffer.getInt();
+    int embeddingSize = buffer.getInt();
+    int numClasses = buffer.getInt();
+
+    String[] classNames = new String[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      byte[] name = new byte[buffer.getShort()];
+      buffer.get(name);
+      classNames[i] = new String(name, StandardCharsets.UTF_8);
+    }
+    buffer.position((buffer.position() + 3) & ~3);
+
+    int[] classIds = new int[numSamples];
+    buffer.asIntBuffer().get(classIds);
+    buffer.position(buffer.position() + numSamples * 4);
+
+    // Queries are embedded by this build's PoseEmbedding, so the samples must match it.
+    if (embeddingSize != PoseEmbedding.EMBEDDING_SIZE) {
+      throw new IOException("Unsupported embedding size " + embeddingSize);
+    }
+    float[] embeddings = new float[numSamples * embeddingSize * NUM_DIMS];
+    buffer.asFloatBuffer().get(embeddings);
+    return new PoseSampleMatrix(embeddings, classIds, classNames, embeddingSize);
+  }
+
+  /** Writes the samples of {@code sampleMatrix} to {@code out}, in the layout above. */
+  public static void write(PoseSampleMatrix sampleMatrix, OutputStream out) throws IOException {
+    List<byte[]> classNames = new ArrayList<>();
+    int classTableSize = 0;
+    for (String className : sampleMatrix.getClassNames()) {
+      byte[] name = className.getBytes(StandardCharsets.UTF_8);
+      classNames.add(name);
+      classTableSize += 2 + name.length;
+    }
+    classTableSize = (classTableSize + 3) & ~3;
+
+    int numSamples = sampleMatrix.size();
+    float[] embeddings = sampleMatrix.getEmbeddings();
+    ByteBuffer buffer = ByteBuffer.allocate(
+            5 * 4 + classTableSize + numSamples * 4 + numSamples * sampleMatrix.getStride() * 4)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(numSamples)
+        .putInt(sampleMatrix.getEmbeddingSize()).putInt(classNames.size());
+    for (byte[] name : classNames) {
+      buffer.putShort((short) name.length).put(name);
+    }
+    buffer.position((buffer.position() + 3) & ~3);
+    for (int i = 0; i < numSamples; i++) {
+      buffer.putInt(sampleMatrix.getClassId(i));
+    }
+    buffer.asFloatBuffer().put(embeddings, 0, numSamples * sampleMatrix.getStride());
+    out.write(buffer.array());
+  }
+
+  /**
+   * Compiles a pose samples csv into a pose sample file.
+   *
+   * <p>Usage: {@code PoseSampleFile <pose samples .csv> <output .bin>}
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: PoseSampleFile <pose samples .csv> <output .bin>");
+      System.exit(2);
+    }
+    File csvFile = new File(args[0]);
+    List<PoseSample> poseSamples = PoseSample.readPoseSamples(csvFile);
+    if (poseSamples.isEmpty()) {
+      throw new IOException("No valid pose samples in " + csvFile);
+    }
+    File outputFile = new File(args[1]);
+    File outputDir = outputFile.getParentFile();
+    if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Failed to create " + outputDir);
+    }
+    try (OutputStream out = Files.newOutputStream(outputFile.toPath())) {
+      write(PoseSampleMatrix.fromSamples(poseSamples), out);
+    }
+    System.out.println("Compiled " + poseSamples.size() + " pose samples into " + outputFile);
+  }
+}
@@ -0,0 +1,24 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/**
+ * Finds the {@link PoseSample}s of a {@link PoseSampleMatrix} that are closest to a query embedding
+ * by the weighted L-infinity (max) distance, which {@link PoseClassifier} uses to filter outliers.
+ *
+ * <p>The distance of a sample is the min of its distances to the original and to the flipped
+ * query. Implementations must return exactly the samples a linear scan would return.
+ */
+public interface PoseSampleIndex {
+
+  /** Creates an index over the samples of a {@link PoseSampleMatrix}. */
+  interface Factory {
+    PoseSampleIndex create(PoseSampleMatrix sampleMatrix, float wx, float wy, float wz);
+  }
+
+  /**
+   * Offers the closest samples to {@code out}, which must be empty and whose capacity is the number
+   * of samples to retrieve.
+   *
+   * @return the number of samples that were pruned or whose evaluation was abandoned early.
+   */
+  int search(float[] query, float[] flippedQuery, TopKHeap out);
+}
@@ -0,0 +1,274 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs the embeddings of {@link PoseSample}s into a single contiguous {@code float[]}, so that
+ * {@link PoseClassifier} can compute distances without allocating {@link Point3D}s per frame.
+ *
+ * <p>Every sample occupies {@link #getStride()} floats, laid out as interleaved x, y, z values for
+ * each entry of its embedding. Class names are stored once and referenced by dense class ids.
+ */
+public class PoseSampleMatrix {
+  private static final int NUM_DIMS = 3;
+
+  private final float[] embeddings;
+  private final int[] classIds;
+  private final String[] classNames;
+  private final ClassRegistry classRegistry;
+  private final int numSamples;
+  private final int embeddingSize;
+  private final int stride;
+
+  PoseSampleMatrix(float[] embeddings, int[] classIds, String[] classNames, int embeddingSize) {
+    this.embeddings = embeddings;
+    this.classIds = classIds;
+    this.classNames = classNames;
+    this.classRegistry = new ClassRegistry(classNames);
+    this.numSamples = classIds.length;
+    this.embeddingSize = embeddingSize;
+    this.stride = embeddingSize * NUM_DIMS;
+  }
+
+  /** Packs the given samples. All samples are expected to have embeddings of the same size. */
+  public static PoseSampleMatrix fromSamples(List<PoseSample> poseSamples) {
+    int embeddingSize = poseSamples.isEmpty() ? 0 : poseSamples.get(0).getEmbedding().size();
+    int stride = embeddingSize * NUM_DIMS;
+    float[] embeddings = new float[poseSamples.size() * stride];
+    int[] classIds = new int[poseSamples.size()];
+    List<String> classNames = new ArrayList<>();
+    Map<String, Integer> classIdsByName = new HashMap<>();
+
+    for (int i = 0; i < poseSamples.size(); i++) {
+      PoseSample poseSample = poseSamples.get(i);
+      pack(poseSample.getEmbedding(), embeddings, i * stride);
+
+      Integer classId = classIdsByName.get(poseSample.getClassName());
+      if (classId == null) {
+        classId = classNames.size();
+        classNames.add(poseSample.getClassName());
+        classIdsByName.put(poseSample.getClassName(), classId);
+      }
+      classIds[i] = classId;
+    }
+    return new PoseSampleMatrix(
+        embeddings, classIds, classNames.toArray(new String[0]), embeddingSize);
+  }
+
+  /** Writes the given embedding into {@code out} as interleaved x, y, z from {@code offset} on. */
+  public static void pack(List<Point3D> embedding, float[] out, int offset) {
+    for (int i = 0; i < embedding.size(); i++) {
+      Point3D point = embedding.get(i);
+      out[offset++] = point.getX();
+      out[offset++] = point.getY();
+      out[offset++] = point.getZ();
+    }
+  }
+
+  /** Returns a copy whose i-th sample is sample {@code order[i]} of this matrix. */
+  PoseSampleMatrix reorder(int[] order) {
+    float[] reorderedEmbeddings = new float[embeddings.length];
+    int[] reorderedClassIds = new int[numSamples];
+    for (int i = 0; i < order.length; i++) {
+      System.arraycopy(embeddings, order[i] * stride, reorderedEmbeddings, i * stride, stride);
+      reorderedClassIds[i] = classIds[order[i]];
+    }
+    return new PoseSampleMatrix(reorderedEmbeddings, reorderedClassIds, classNames, embeddingSize);
+  }
+
+  /** Returns the embeddings of all samples, one after another. Not a copy. */
+  float[] getEmbeddings() {
+    return embeddings;
+  }
+
+  public int size() {
+    return numSamples;
+  }
+
+  /** Returns the number of 3D entries in each embedding. */
+  public int getEmbeddingSize() {
+    return embeddingSize;
+  }
+
+  /** Returns the number of floats occupied by each embedding. */
+  public int getStride() {
+    return stride;
+  }
+
+  public int getClassId(int sample) {
+    return classIds[sample];
+  }
+
+  public String getClassName(int sample) {
+    return classNames[classIds[sample]];
+  }
+
+  /** Returns the distinct class names, indexed by class id. */
+  public String[] getClassNames() {
+    return classNames;
+  }
+
+  /**
+   * Returns the registry of the sample classes, where each class has its class id here. Classes
+   * registered later, e.g. by results built by name, get ids past those of the samples.
+   */
+  public ClassRegistry getClassRegistry() {
+    return classRegistry;
+  }
+
+  /**
+   * Returns the indexes, within an embedding, of the {@code count} coordinates whose weighted
+   * values vary the most across samples, most varying first. These tell samples apart the soonest
+   * by the max distance.
+   */
+  int[] mostVaryingCoordinates(int count, float wx, float wy, float wz) {
+    float[] weights = {wx, wy, wz};
+    final double[] variances = new double[stride];
+    for (int c = 0; c < stride; c++) {
+      double sum = 0;
+      double sumOfSquares = 0;
+      for (int i = 0; i < numSamples; i++) {
+        double value = embeddings[i * stride + c] * weights[c % NUM_DIMS];
+        sum += value;
+        sumOfSquares += value * value;
+      }
+      double mean = sum / numSamples;
+      variances[c] = sumOfSquares / numSamples - mean * mean;
+    }
+    Integer[] coordinates = new Integer[stride];
+    for (int c = 0; c < stride; c++) {
+      coordinates[c] = c;
+    }
+    Arrays.sort(coordinates, (a, b) -> Double.compare(variances[b], variances[a]));
+
+    int[] mostVarying = new int[Math.min(count, stride)];
+    for (int i = 0; i < mostVarying.length; i++) {
+      mostVarying[i] = coordinates[i];
+    }
+    return mostVarying;
+  }
+
+  /** Returns the given coordinates of every sample, packed one sample after another. */
+  float[] gather(int[] coordinates) {
+    float[] gathered = new float[numSamples * coordinates.length];
+    for (int i = 0; i < numSamples; i++) {
+      for (int k = 0; k < coordinates.length; k++) {
+        gathered[i * coordinates.length + k] = embeddings[i * stride + coordinates[k]];
+      }
+    }
+    return gathered;
+  }
+
+  /**
+   * Returns the max over all embedding entries of the weighted absolute per-axis difference between
+   * the given sample and {@code query}, i.e. the weighted L-infinity distance.
+   */
+  public float maxDistance(int sample, float[] query, float wx, float wy, float wz) {
+    int offset = sample * stride;
+    float max = 0;
+    for (int i = 0; i < stride; i += NUM_DIMS) {
+      float dx = Math.abs((embeddings[offset + i] - query[i]) * wx);
+      float dy = Math.abs((embeddings[offset + i + 1] - query[i + 1]) * wy);
+      float dz = Math.abs((embeddings[offset + i + 2] - query[i + 2]) * wz);
+      max = Math.max(max, Math.max(dx, Math.max(dy, dz)));
+    }
+    return max;
+  }
+
+  /** Returns the weighted L-infinity distance between two samples. */
+  public float maxDistance(int sample, int otherSample, float wx, float wy, float wz) {
+    int offset = sample * stride;
+    int otherOffset = otherSample * stride;
+    float max = 0;
+    for (int i = 0; i < stride; i += NUM_DIMS) {
+      float dx = Math.abs((embeddings[offset + i] - embeddings[otherOffset + i]) * wx);
+      float dy = Math.abs((embeddings[offset + i + 1] - embeddings[otherOffset + i + 1]) * wy);
+      float dz = Math.abs((embeddings[offset + i + 2] - embeddings[otherOffset + i + 2]) * wz);
+      max = Math.max(max, Math.max(dx, Math.max(dy, dz)));
+    }
+    return max;
+  }
+
+  /**
+   * Returns the smaller of the weighted L-infinity distances from the given sample to {@code query}
+   * and to {@code flippedQuery}.
+   *
+   * <p>Evaluation is abandoned as soon as both partial maxima exceed {@code bound}, since the
+   * result can then only be greater than it. {@link Float#POSITIVE_INFINITY} is returned in that
+   * case.
+   */
+  public float minMaxDistance(
+      int sample, float[] query, float[] flippedQuery, float wx, float wy, float wz, float bound) {
+    return minMaxDistance(sample, query, flippedQuery, 0, wx, wy, wz, bound);
+  }
+
+  /**
+   * Same as {@link #minMaxDistance(int, float[], float[], float, float, float, float)}, for
+   * queries that start at {@code queryOffset} in arrays holding several queries.
+   */
+  public float minMaxDistance(int sample, float[] query, float[] flippedQuery, int queryOffset,
+      float wx, float wy, float wz, float bound) {
+    int offset = sample * stride;
+    float originalMax = 0;
+    float flippedMax = 0;
+    for (int i = 0; i < stride; i += NUM_DIMS) {
+      float x = embeddings[offset + i];
+      float y = embeddings[offset + i + 1];
+      float z = embeddings[offset + i + 2];
+      int q = queryOffset + i;
+      originalMax = Math.max(originalMax, Math.max(Math.abs((x - query[q]) * wx),
+          Math.max(Math.abs((y - query[q + 1]) * wy), Math.abs((z - query[q + 2]) * wz))));
+      flippedMax = Math.max(flippedMax, Math.max(Math.abs((x - flippedQuery[q]) * wx),
+          Math.max(Math.abs((y - flippedQuery[q + 1]) * wy),
+              Math.abs((z - flippedQuery[q + 2]) * wz))));
+      if (originalMax > bound && flippedMax > bound) {
+        return Float.POSITIVE_INFINITY;
+      }
+    }
+    return Math.min(originalMax, flippedMax);
+  }
+
+  /**
+   * Returns the smaller of the weighted L1 distances from the given sample to {@code query} and to
+   * {@code flippedQuery}, divided by twice the embedding size.
+   *
+   * <p>Evaluation is abandoned as soon as both partial means exceed {@code bound}, in which case
+   * {@link Float#POSITIVE_INFINITY} is returned.
+   */
+  public float minMeanDistance(
+      int sample, float[] query, float[] flippedQuery, float wx, float wy, float wz, float bound) {
+    return minMeanDistance(sample, query, flippedQuery, 0, wx, wy, wz, bound);
+  }
+
+  /**
+   * Same as {@link #minMeanDistance(int, float[], float[], float, float, float, float)}, for
+   * queries that start at {@code queryOffset} in arrays holding several queries.
+   */
+  public float minMeanDistance(int sample, float[] query, float[] flippedQuery, int queryOffset,
+      float wx, float wy, float wz, float bound) {
+    int offset = sample * stride;
+    int divisor = embeddingSize * 2;
+    float originalSum = 0;
+    float flippedSum = 0;
+    for (int i = 0; i < stride; i += NUM_DIMS) {
+      float x = embeddings[offset + i];
+      float y = embeddings[offset + i + 1];
+      float z = embeddings[offset + i + 2];
+      int q = queryOffset + i;
+      originalSum += Math.abs((x - query[q]) * wx)
+          + Math.abs((y - query[q + 1]) * wy)
+          + Math.abs((z - query[q + 2]) * wz);
+      flippedSum += Math.abs((x - flippedQuery[q]) * wx)
+          + Math.abs((y - flippedQuery[q + 1]) * wy)
+          + Math.abs((z - flippedQuery[q + 2]) * wz);
+      if (Math.min(originalSum, flippedSum) / divisor > bound) {
+        return Float.POSITIVE_INFINITY;
+      }
+    }
+    return Math.min(originalSum, flippedSum) / divisor;
+  }
+}
@@ -0,0 +1,131 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics;
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics.Stage;
+
+/**
+ * Runs the landmarks of each frame through classification, smoothing and rep counting. This is
+ * the part of {@code PoseClassifierProcessor} that doesn't depend on Android, so that recorded
+ * sessions can be replayed through the same steps. {@link ReplayEngine} classifies the frames of
+ * a session in a batch, gated by a {@link MotionGate} like the stream mode, and then feeds the
+ * results to {@link #process(ClassificationResult, boolean)}.
+ *
+ * <p>Reps can be counted for several classes at once with a {@link RepetitionCounterBank}, from
+ * the same classification of each frame.
+ *
+ * <p>Not thread safe: frames must be processed one at a time, in order.
+ */
+public class RepCountingPipeline {
+  private final PoseClassifier poseClassifier;
+  private final MotionGate motionGate;
+  private final EMASmoothing emaSmoothing;
+  private final RepetitionCounterBank repCounters;
+  // Reused for every frame.
+  private final ClassificationResult classification;
+  private final ClassificationResult smoothedClassification;
+
+  /**
+   * @param emaSmoothing smoothing of the classification results, or null to count reps from the
+   *     raw results, e.g. for single images.
+   */
+  public RepCountingPipeline(
+      PoseClassifier poseClassifier, EMASmoothing emaSmoothing, RepetitionCounter repCounter) {
+    this(poseClassifier, emaSmoothing, new RepetitionCounterBank(repCounter));
+  }
+
+  /**
+   * @param emaSmoothing smoothing of the classification results, or null to count reps from the
+   *     raw results, e.g. for single images.
+   * @param repCounters counters of every class to count reps for. The first one is the one whose
+   *     reps are returned by {@link #process}.
+   */
+  public RepCountingPipeline(PoseClassifier poseClassifier, EMASmoothing emaSmoothing,
+      RepetitionCounterBank repCounters) {
+    this(poseClassifier, null, emaSmoothing, repCounters);
+  }
+
+  /**
+   * @param motionGate gate that lets frames reuse the classification of the previous one while
+   *     the pose stays still, or null to classify every frame.
+   * @param emaSmoothing smoothing of the classification results, or null to count reps from the
+   *     raw results, e.g. for single images.
+   * @param repCounters counters of every class to count reps for. The first one is the one whose
+   *     reps are returned by {@link #process}.
+   */
+  public RepCountingPipeline(PoseClassifier poseClassifier, MotionGate motionGate,
+      EMASmoothing emaSmoothing, RepetitionCounterBank repCounters) {
+    this.poseClassifier = poseClassifier;
+    this.motionGate = motionGate;
+    this.emaSmoothing = emaSmoothing;
+    this.repCounters = repCounters;
+    classification = new ClassificationResult(poseClassifier.getClassRegistry());
+    smoothedClassification = new ClassificationResult(poseClassifier.getClassRegistry());
+  }
+
+  /**
+   * Processes the next frame.
+   *
+   * @param landmarks interleaved x, y, z values in the order of {@link LandmarkType}, or null if
+   *     no pose was detected in the frame.
+   * @return number of reps so far of the first counter. See {@link #getRepCounters()} for which
+   *     counters changed with this frame.
+   */
+  public int process(float[] landmarks) {
+    if (landmarks == null) {
+      classification.clear();
+      if (motionGate != null) {
+        motionGate.reset();
+      }
+    } else if (motionGate == null || motionGate.shouldClassify(landmarks)) {
+      poseClassifier.classify(landmarks, classification);
+    }
+    // Otherwise the pose hasn't moved and keeps the classification of the previous frame.
+    return process(classification, landmarks != null);
+  }
+
+  /**
+   * Processes the next frame, already classified, e.g. with {@link PoseClassifier#classifyBatch}.
+   *
+   * @param hasPose whether a pose was detected in the frame; if not, {@code classification} is
+   *     expected to be empty.
+   * @return number of reps so far of the first counter.
+   */
+  public int process(ClassificationResult classification, boolean hasPose) {
+    // Feed pose to smoothing even if no pose found.
+    if (emaSmoothing != null) {
+      long smoothingStartNanos = System.nanoTime();
+      emaSmoothing.getSmoothedResult(classification, smoothedClassification);
+      classification = smoothedClassification;
+      FrameMetrics.record(Stage.SMOOTHING, System.nanoTime() - smoothingStartNanos);
+    }
+
+    // Return early without updating the counters if no pose found.
+    if (!hasPose) {
+      repCounters.clearChanged();
+    } else {
+      long countingStartNanos = System.nanoTime();
+      repCounters.addClassificationResult(classification);
+      FrameMetrics.record(Stage.REP_COUNTING, System.nanoTime() - countingStartNanos);
+    }
+    return getNumRepeats();
+  }
+
+  /** Returns the motion gate, or null if every frame is classified. */
+  public MotionGate getMotionGate() {
+    return motionGate;
+  }
+
+  public RepetitionCounterBank getRepCounters() {
+    return repCounters;
+  }
+
+  /** Returns the number of reps so far of the first counter. */
+  public int getNumRepeats() {
+    return repCounters.getCounter(0).getNumRepeats();
+  }
+
+  /** Returns the class of the first counter. */
+  public String getRepClassName() {
+    return repCounters.getCounter(0).getClassName();
+  }
+}
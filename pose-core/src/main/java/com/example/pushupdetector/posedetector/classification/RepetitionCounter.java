@@ -18,6 +18,10 @@ public class RepetitionCounter {
   private int numRepeats;
   private boolean poseEntered;
 
+  // The id of the class in the registry of the last result, so that it is looked up once.
+  private ClassRegistry classRegistry;
+  private int classId = -1;
+
   public RepetitionCounter(String className) {
     this(className, DEFAULT_ENTER_THRESHOLD, DEFAULT_EXIT_THRESHOLD);
   }
@@ -37,7 +41,7 @@ public class RepetitionCounter {
    * @return number of reps.
    */
   public int addClassificationResult(ClassificationResult classificationResult) {
-    float poseConfidence = classificationResult.getClassConfidence(className);
+    float poseConfidence = getConfidence(classificationResult);
 
     if (!poseEntered) {
       poseEntered = poseConfidence > enterThreshold;
@@ -52,6 +56,16 @@ public class RepetitionCounter {
     return numRepeats;
   }
 
+  private float getConfidence(ClassificationResult classificationResult) {
+    ClassRegistry registry = classificationResult.getClassRegistry();
+    // The class may only get registered later when results are built by name.
+    if (registry != classRegistry || classId < 0) {
+      classRegistry = registry;
+      classId = registry.getId(className);
+    }
+    return classId >= 0 ? classificationResult.getConfidence(classId) : 0;
+  }
+
   public String getClassName() {
     return className;
   }
@@ -0,0 +1,75 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import com.google.common.base.Preconditions;
+
+import java.util.List;
+
+/**
+ * Counts reps for several classes, e.g. one per exercise, from the same classification results.
+ * Each class has its own {@link RepetitionCounter} and thresholds, and each result is classified
+ * once and then fed to every counter in a single pass, so counting another exercise only costs a
+ * threshold check per frame.
+ *
+ * <p>Not thread safe.
+ */
+public class RepetitionCounterBank {
+  private final RepetitionCounter[] counters;
+  // Indexes of the counters whose reps changed with the last result, in counter order.
+  private final int[] changedCounters;
+  private int changedCount;
+
+  public RepetitionCounterBank(RepetitionCounter... counters) {
+    Preconditions.checkArgument(counters.length > 0, "Expected at least one counter");
+    this.counters = counters.clone();
+    this.changedCounters = new int[counters.length];
+  }
+
+  public RepetitionCounterBank(List<RepetitionCounter> counters) {
+    this(counters.toArray(new RepetitionCounter[0]));
+  }
+
+  /**
+   * Adds a new Pose classification result to every counter.
+   *
+   * @return number of counters whose reps changed, see {@link #getChangedCounter(int)}.
+   */
+  public int addClassificationResult(ClassificationResult classificationResult) {
+    changedCount = 0;
+    for (int i = 0; i < counters.length; i++) {
+      RepetitionCounter counter = counters[i];
+      int numRepeats = counter.getNumRepeats();
+      if (counter.addClassificationResult(classificationResult) != numRepeats) {
+        changedCounters[changedCount++] = i;
+      }
+    }
+    return changedCount;
+  }
+
+  /** Marks no counter as changed, e.g. for a frame without a pose. */
+  void clearChanged() {
+    changedCount = 0;
+  }
+
+  /** Returns the number of counters whose reps changed with the last result. */
+  public int getChangedCount() {
+    return changedCount;
+  }
+
+  /**
+   * Returns the index of the {@code i}-th counter whose reps changed with the last result, for
+   * {@code i} up to {@link #getChangedCount()}.
+   */
+  public int getChangedCounter(int i) {
+    Preconditions.checkElementIndex(i, changedCount);
+    return changedCounters[i];
+  }
+
+  /** Returns the number of counters. */
+  public int size() {
+    return counters.length;
+  }
+
+  public RepetitionCounter getCounter(int counter) {
+    return counters[counter];
+  }
+}
@@ -0,0 +1,254 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import com.example.pushupdetector.posedetector.trace.ChromeTraceWriter;
+import com.example.pushupdetector.posedetector.trace.Tracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays sessions recorded with {@link LandmarkStreamWriter} through a {@link
+ * RepCountingPipeline} as fast as possible, e.g. to re-score recorded sessions after changing the
+ * pose samples or the classifier.
+ *
+ * <p>Frames go through a {@link MotionGate} as in the app's stream mode, and the frames it lets
+ * through are classified with {@link PoseClassifier#classifyBatch} first. All frames are then
+ * smoothed and counted in order, the skipped ones with the classification of the last classified
+ * frame. Smoothing sees the recorded timestamps rather than the wall clock, so a session gives the
+ * same rep count however fast it is replayed. The classifier is shared by all sessions, each
+ * session gets its own gate, smoothing and rep counter.
+ *
+ * <p>With the {@code trace} system property set to a file, e.g. with {@code -Ptrace=replay.json},
+ * the batch classification and the counting of every frame are traced to it with a {@link
+ * ChromeTraceWriter}, to be opened with Perfetto.
+ */
+public class ReplayEngine {
+  // About ten seconds at 30 fps, grown as needed.
+  private static final int INITIAL_CAPACITY = 300;
+
+  private final PoseClassifier poseClassifier;
+  private final String repClassName;
+
+  /** The outcome of replaying a session. */
+  public static final class Result {
+    private final int frameCount;
+    private final int poseFrameCount;
+    private final int classifiedFrameCount;
+    private final int numRepeats;
+    private final long elapsedNanos;
+
+    Result(int frameCount, int poseFrameCount, int classifiedFrameCount, int numRepeats,
+        long elapsedNanos) {
+      this.frameCount = frameCount;
+      this.poseFrameCount = poseFrameCount;
+      this.classifiedFrameCount = classifiedFrameCount;
+      this.numRepeats = numRepeats;
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getFrameCount() {
+      return frameCount;
+    }
+
+    /** Returns the number of frames in which a pose was detected. */
+    public int getPoseFrameCount() {
+      return poseFrameCount;
+    }
+
+    /** Returns the number of frames that the motion gate let through to the classifier. */
+    public int getClassifiedFrameCount() {
+      return classifiedFrameCount;
+    }
+
+    public int getNumRepeats() {
+      return numRepeats;
+    }
+
+    public long getElapsedNanos() {
+      return elapsedNanos;
+    }
+
+    public double getFramesPerSecond() {
+      return elapsedNanos == 0 ? 0 : frameCount * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.US,
+          "%d reps, %d frames (%d with a pose, %d classified), %.0f frames/s",
+          numRepeats, frameCount, poseFrameCount, classifiedFrameCount, getFramesPerSecond());
+    }
+  }
+
+  /** A clock that reads the timestamp of the frame being replayed. */
+  private static class ReplayClock implements Clock {
+    private long nowMs;
+
+    @Override
+    public long elapsedRealtimeMs() {
+      return nowMs;
+    }
+  }
+
+  public ReplayEngine(PoseClassifier poseClassifier, String repClassName) {
+    this.poseClassifier = poseClassifier;
+    this.repClassName = repClassName;
+  }
+
+  /** Replays the session in {@code stream}, typically a memory-mapped recording. */
+  public Result replay(ByteBuffer stream) throws IOException {
+    long startNanos = System.nanoTime();
+    LandmarkStreamReader reader = new LandmarkStreamReader(stream);
+    int numValues = reader.getLandmarks().length;
+    long[] timestamps = new long[INITIAL_CAPACITY];
+    // The classified frame whose classification each frame uses, or -1 if it has no pose.
+    int[] classifiedFrames = new int[INITIAL_CAPACITY];
+    float[] frames = new float[INITIAL_CAPACITY * numValues];
+    MotionGate motionGate = new MotionGate();
+    int frameCount = 0;
+    int poseFrameCount = 0;
+    int classifiedFrameCount = 0;
+    while (reader.next()) {
+      if (frameCount == timestamps.length) {
+        timestamps = Arrays.copyOf(timestamps, frameCount * 2);
+        classifiedFrames = Arrays.copyOf(classifiedFrames, frameCount * 2);
+      }
+      timestamps[frameCount] = reader.getTimestampMs();
+      if (!reader.hasLandmarks()) {
+        classifiedFrames[frameCount] = -1;
+        motionGate.reset();
+      } else {
+        poseFrameCount++;
+        if (motionGate.shouldClassify(reader.getLandmarks())) {
+          if ((classifiedFrameCount + 1) * numValues > frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+          }
+          System.arraycopy(
+              reader.getLandmarks(), 0, frames, classifiedFrameCount * numValues, numValues);
+          classifiedFrameCount++;
+        }
+        // Otherwise the pose hasn't moved and keeps the classification of the previous frame.
+        classifiedFrames[frameCount] = classifiedFrameCount - 1;
+      }
+      frameCount++;
+    }
+
+    // Frames let through by the gate are classified in one go, then all are smoothed and counted
+    // in order.
+    String[] classNames = poseClassifier.getClassNames();
+    float[] confidences = new float[classifiedFrameCount * classNames.length];
+    // Tagged with the first frame, as all are classified at once.
+    Tracer.beginSection(Tracer.CLASSIFICATION, 0);
+    poseClassifier.classifyBatch(frames, classifiedFrameCount, confidences);
+    Tracer.endSection();
+
+    ReplayClock clock = new ReplayClock();
+    ClassRegistry classRegistry = poseClassifier.getClassRegistry();
+    RepCountingPipeline pipeline = new RepCountingPipeline(poseClassifier,
+        new EMASmoothing(classRegistry, clock), new RepetitionCounter(repClassName));
+    ClassificationResult classification = new ClassificationResult(classRegistry);
+    for (int i = 0; i < frameCount; i++) {
+      Tracer.beginFrame(i);
+      Tracer.beginSection(Tracer.REP_COUNTING, i);
+      clock.nowMs = timestamps[i];
+      int classifiedFrame = classifiedFrames[i];
+      classification.clear();
+      if (classifiedFrame >= 0) {
+        for (int c = 0; c < classNames.length; c++) {
+          float confidence = confidences[classifiedFrame * classNames.length + c];
+          // Like PoseClassifier#classify, which only reports classes of the nearest samples.
+          if (confidence > 0) {
+            classification.setConfidence(c, confidence);
+          }
+        }
+      }
+      pipeline.process(classification, classifiedFrame >= 0);
+      Tracer.endSection();
+    }
+    long elapsedNanos = System.nanoTime() - startNanos;
+    return new Result(frameCount, poseFrameCount, classifiedFrameCount, pipeline.getNumRepeats(),
+        elapsedNanos);
+  }
+
+  /** Replays the session recorded in {@code file}. */
+  public Result replay(File file) throws IOException {
+    return replay(map(file));
+  }
+
+  /**
+   * Replays recorded sessions and prints the rep count and speed of each.
+   *
+   * <p>Usage: {@code ReplayEngine <pose samples .csv or .bin> <class> <recording or directory>...}
+   * where directories are searched for {@link LandmarkStreamWriter#FILE_EXTENSION} files.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println(
+          "Usage: ReplayEngine <pose samples .csv or .bin> <class> <recording or directory>...");
+      System.exit(2);
+    }
+    PoseClassifier poseClassifier =
+        new PoseClassifier(readPoseSamples(new File(args[0])), BruteForceSampleIndex.FACTORY);
+    ReplayEngine engine = new ReplayEngine(poseClassifier, args[1]);
+    String tracePath = System.getProperty("trace");
+    ChromeTraceWriter traceWriter = null;
+    if (tracePath != null) {
+      traceWriter = new ChromeTraceWriter(
+          Files.newBufferedWriter(Paths.get(tracePath), StandardCharsets.UTF_8));
+      Tracer.setBackend(traceWriter);
+    }
+
+    List<File> recordings = new ArrayList<>();
+    for (int i = 2; i < args.length; i++) {
+      File file = new File(args[i]);
+      File[] children = file.listFiles(
+          (dir, name) -> name.endsWith(LandmarkStreamWriter.FILE_EXTENSION));
+      if (children == null) {
+        recordings.add(file);
+      } else {
+        Arrays.sort(children);
+        recordings.addAll(Arrays.asList(children));
+      }
+    }
+
+    int totalFrames = 0;
+    long totalNanos = 0;
+    for (File recording : recordings) {
+      Result result = engine.replay(recording);
+      System.out.println(recording.getName() + ": " + result);
+      totalFrames += result.getFrameCount();
+      totalNanos += result.getElapsedNanos();
+    }
+    System.out.println(String.format(Locale.US, "%d sessions, %d frames, %.0f frames/s",
+        recordings.size(), totalFrames, totalNanos == 0 ? 0 : totalFrames * 1e9 / totalNanos));
+    if (traceWriter != null) {
+      Tracer.setBackend(null);
+      traceWriter.close();
+      System.out.println("Trace written to " + tracePath);
+    }
+  }
+
+  private static PoseSampleMatrix readPoseSamples(File file) throws IOException {
+    if (file.getName().endsWith(".bin")) {
+      return PoseSampleFile.read(map(file));
+    }
+    return PoseSampleMatrix.fromSamples(PoseSample.readPoseSamples(file));
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        FileChannel channel = randomAccessFile.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.example.pushupdetector.posedetector.classification;
+
+/**
+ * A bounded max-heap of primitive (id, key) entries that retains the {@code capacity} entries with
+ * the smallest keys, without boxing.
+ *
+ * <p>Entries are ordered by key and then by id, so the retained set does not depend on the order
+ * in which entries are offered.
+ */
+public class TopKHeap {
+  private final int capacity;
+  private final int[] ids;
+  private final float[] keys;
+  private int size;
+
+  public TopKHeap(int capacity) {
+    this.capacity = capacity;
+    this.ids = new int[capacity];
+    this.keys = new float[capacity];
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Returns the key of the worst retained entry once the heap is full, or positive infinity while
+   * it still has room. Any entry with a strictly greater key can no longer be retained.
+   */
+  public float threshold() {
+    if (capacity == 0) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    return isFull() ? keys[0] : Float.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Offers a new entry, evicting the worst retained entry if the heap is full.
+   *
+   * @return whether the entry was retained.
+   */
+  public boolean offer(int id, float key) {
+    if (size < capacity) {
+      ids[size] = id;
+      keys[size] = key;
+      siftUp(size++);
+      return true;
+    }
+    if (capacity == 0 || !isBefore(key, id, keys[0], ids[0])) {
+      return false;
+    }
+    ids[0] = id;
+    keys[0] = key;
+    siftDown(0);
+    return true;
+  }
+
+  /** Returns the id of the entry at position {@code i}, in heap (not sorted) order. */
+  public int getId(int i) {
+    return ids[i];
+  }
+
+  /** Returns the key of the entry at position {@code i}, in heap (not sorted) order. */
+  public float getKey(int i) {
+    return keys[i];
+  }
+
+  private static boolean isBefore(float key, int id, float otherKey, int otherId) {
+    return key < otherKey || (key == otherKey && id < otherId);
+  }
+
+  private void siftUp(int i) {
+    int id = ids[i];
+    float key = keys[i];
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!isBefore(keys[parent], ids[parent], key, id)) {
+        break;
+      }
+      ids[i] = ids[parent];
+      keys[i] = keys[parent];
+      i = parent;
+    }
+    ids[i] = id;
+    keys[i] = key;
+  }
+
+  private void siftDown(int i) {
+    int id = ids[i];
+    float key = keys[i];
+    int half = size >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      int right = child + 1;
+      if (right < size && isBefore(keys[child], ids[child], keys[right], ids[right])) {
+        child = right;
+      }
+      if (!isBefore(key, id, keys[child], ids[child])) {
+        break;
+      }
+      ids[i] = ids[child];
+      keys[i] = keys[child];
+      i = child;
+    }
+    ids[i] = id;
+    keys[i] = key;
+  }
+}
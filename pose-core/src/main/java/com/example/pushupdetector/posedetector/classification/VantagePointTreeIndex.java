@@ -0,0 +1,180 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A {@link PoseSampleIndex} backed by a vantage-point tree under the weighted L-infinity distance.
+ *
+ * <p>Every inner node picks a vantage point and splits the remaining samples of its range into an
+ * inside half (closer to the vantage point) and an outside half, remembering the distance range of
+ * each half. By the triangle inequality, a query at distance d from the vantage point is at least
+ * {@code max(d - maxDist, minDist - d)} away from every sample of a half, so whole halves can be
+ * skipped once that bound exceeds the current K-th best distance. Because the query distance is
+ * the min over the original and flipped query, the bound used is the min of both bounds.
+ *
+ * <p>The index keeps its own copy of the sample embeddings in tree order.
+ *
+ * <p>The tree pays off for libraries of thousands of samples and more. For a few hundred samples
+ * {@link BruteForceSampleIndex} is faster.
+ */
+public class VantagePointTreeIndex implements PoseSampleIndex {
+  public static final Factory FACTORY = VantagePointTreeIndex::new;
+
+  private static final int LEAF_SIZE = 32;
+  // Relative slack applied before pruning, so that float rounding in the distances can never prune
+  // a half that holds a sample the linear scan would return.
+  private static final float PRUNE_TOLERANCE = 1e-4f;
+  // Fixed seed so that the tree layout is reproducible.
+  private static final long SEED = 0x5EED;
+
+  private final PoseSampleMatrix sampleMatrix;
+  private final float wx;
+  private final float wy;
+  private final float wz;
+
+  // Sample ids, reordered so that every node covers a contiguous range. The vantage point of an
+  // inner node is the first sample of its range.
+  private final int[] order;
+  private final int[] rangeStart;
+  private final int[] rangeEnd;
+  // Child node indices, -1 for leaves.
+  private final int[] insideChild;
+  private final int[] outsideChild;
+  private final float[] insideMin;
+  private final float[] insideMax;
+  private final float[] outsideMin;
+  private final float[] outsideMax;
+  // Copy of the sample matrix whose rows follow {@link #order}, so that leaves are scanned from
+  // contiguous memory.
+  private final PoseSampleMatrix treeMatrix;
+  private int numNodes;
+
+  public VantagePointTreeIndex(PoseSampleMatrix sampleMatrix, float wx, float wy, float wz) {
+    this.sampleMatrix = sampleMatrix;
+    this.wx = wx;
+    this.wy = wy;
+    this.wz = wz;
+
+    int size = sampleMatrix.size();
+    order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    // Every node holds at least one sample, so there are at most as many nodes as samples.
+    rangeStart = new int[size];
+    rangeEnd = new int[size];
+    insideChild = new int[size];
+    outsideChild = new int[size];
+    insideMin = new float[size];
+    insideMax = new float[size];
+    outsideMin = new float[size];
+    outsideMax = new float[size];
+    if (size > 0) {
+      build(0, size, new long[size], new Random(SEED));
+    }
+    treeMatrix = sampleMatrix.reorder(order);
+  }
+
+  private int build(int start, int end, long[] sortKeys, Random random) {
+    int node = numNodes++;
+    rangeStart[node] = start;
+    rangeEnd[node] = end;
+    if (end - start <= LEAF_SIZE) {
+      insideChild[node] = -1;
+      outsideChild[node] = -1;
+      return node;
+    }
+
+    int vantagePoint = start + random.nextInt(end - start);
+    int swap = order[start];
+    order[start] = order[vantagePoint];
+    order[vantagePoint] = swap;
+
+    // Sort the rest of the range by distance to the vantage point. Distances are non-negative, so
+    // their raw bits sort in the same order as their values, with the sample id as a tie-breaker.
+    for (int i = start + 1; i < end; i++) {
+      float distance = sampleMatrix.maxDistance(order[start], order[i], wx, wy, wz);
+      sortKeys[i] = ((long) Float.floatToIntBits(distance) << 32) | order[i];
+    }
+    Arrays.sort(sortKeys, start + 1, end);
+    for (int i = start + 1; i < end; i++) {
+      order[i] = (int) sortKeys[i];
+    }
+
+    int mid = start + 1 + (end - start - 1) / 2;
+    insideMin[node] = distanceOf(sortKeys[start + 1]);
+    insideMax[node] = distanceOf(sortKeys[mid - 1]);
+    outsideMin[node] = distanceOf(sortKeys[mid]);
+    outsideMax[node] = distanceOf(sortKeys[end - 1]);
+
+    insideChild[node] = build(start + 1, mid, sortKeys, random);
+    outsideChild[node] = build(mid, end, sortKeys, random);
+    return node;
+  }
+
+  private static float distanceOf(long sortKey) {
+    return Float.intBitsToFloat((int) (sortKey >>> 32));
+  }
+
+  @Override
+  public int search(float[] query, float[] flippedQuery, TopKHeap out) {
+    if (numNodes == 0) {
+      return 0;
+    }
+    return search(0, query, flippedQuery, out);
+  }
+
+  private int search(int node, float[] query, float[] flippedQuery, TopKHeap out) {
+    int start = rangeStart[node];
+    if (insideChild[node] < 0) {
+      int abandoned = 0;
+      for (int i = start; i < rangeEnd[node]; i++) {
+        float maxDistance = treeMatrix.minMaxDistance(
+            i, query, flippedQuery, wx, wy, wz, out.threshold());
+        if (maxDistance == Float.POSITIVE_INFINITY) {
+          abandoned++;
+          continue;
+        }
+        out.offer(order[i], maxDistance);
+      }
+      return abandoned;
+    }
+
+    float distance = treeMatrix.maxDistance(start, query, wx, wy, wz);
+    float flippedDistance = treeMatrix.maxDistance(start, flippedQuery, wx, wy, wz);
+    out.offer(order[start], Math.min(distance, flippedDistance));
+
+    float insideBound = Math.min(
+        lowerBound(distance, insideMin[node], insideMax[node]),
+        lowerBound(flippedDistance, insideMin[node], insideMax[node]));
+    float outsideBound = Math.min(
+        lowerBound(distance, outsideMin[node], outsideMax[node]),
+        lowerBound(flippedDistance, outsideMin[node], outsideMax[node]));
+
+    // Visit the more promising half first, so the threshold tightens sooner.
+    if (insideBound <= outsideBound) {
+      return visit(insideChild[node], insideBound, query, flippedQuery, out)
+          + visit(outsideChild[node], outsideBound, query, flippedQuery, out);
+    }
+    return visit(outsideChild[node], outsideBound, query, flippedQuery, out)
+        + visit(insideChild[node], insideBound, query, flippedQuery, out);
+  }
+
+  private int visit(int node, float bound, float[] query, float[] flippedQuery, TopKHeap out) {
+    float threshold = out.threshold();
+    if (bound - threshold > PRUNE_TOLERANCE * (bound + threshold)) {
+      return rangeEnd[node] - rangeStart[node];
+    }
+    return search(node, query, flippedQuery, out);
+  }
+
+  /**
+   * Returns a lower bound of the distance between a query and any sample whose distance to the
+   * vantage point is in [{@code min}, {@code max}], given the query's distance to the vantage
+   * point.
+   */
+  private static float lowerBound(float distance, float min, float max) {
+    return Math.max(0, Math.max(distance - max, min - distance));
+  }
+}
@@ -0,0 +1,100 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Latency histograms of every stage a camera frame goes through, from the conversion of the
+ * camera image to the drawing of the results, to tell which stages miss the frame budget on a
+ * device.
+ *
+ * <p>Stages record their latencies here, from whichever thread they run on, e.g.
+ *
+ * <pre>{@code
+ * long startNanos = System.nanoTime();
+ * ...
+ * FrameMetrics.record(FrameMetrics.Stage.KNN, System.nanoTime() - startNanos);
+ * }</pre>
+ *
+ * <p>Recording doesn't allocate, so it is always on. Histograms are kept for the whole process,
+ * like the {@link com.example.pushupdetector.posedetector.classification.Logger} backend, until
+ * {@link #reset()}, e.g. when a session starts.
+ */
+public final class FrameMetrics {
+  /** The stages of a frame, in order. */
+  public enum Stage {
+    YUV_CONVERSION("YUV conversion"),
+    DETECTION("Detection"),
+    EMBEDDING("Embedding"),
+    KNN("KNN"),
+    SMOOTHING("Smoothing"),
+    REP_COUNTING("Rep counting"),
+    OVERLAY_DRAW("Overlay draw");
+
+    private final String displayName;
+
+    Stage(String displayName) {
+      this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+      return displayName;
+    }
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+  private static final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+
+  static {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+  private FrameMetrics() {}
+
+  /** Records that {@code stage} took {@code nanos} for a frame. */
+  public static void record(Stage stage, long nanos) {
+    histograms[stage.ordinal()].record(nanos);
+  }
+
+  public static LatencyHistogram getHistogram(Stage stage) {
+    return histograms[stage.ordinal()];
+  }
+
+  /** Forgets the latencies recorded so far, of every stage. */
+  public static void reset() {
+    for (LatencyHistogram histogram : histograms) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * Writes the latency percentiles of every stage that recorded some, in milliseconds, as CSV
+   * with a header row.
+   */
+  public static void writeReport(Appendable out) throws IOException {
+    out.append("stage,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+    for (Stage stage : STAGES) {
+      LatencyHistogram histogram = getHistogram(stage);
+      // Read under the histogram's lock, so that the row is consistent.
+      synchronized (histogram) {
+        if (histogram.getCount() == 0) {
+          continue;
+        }
+        out.append(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f\n",
+            stage.getDisplayName(),
+            histogram.getCount(),
+            toMs(histogram.getMeanNanos()),
+            toMs(histogram.getPercentileNanos(50)),
+            toMs(histogram.getPercentileNanos(90)),
+            toMs(histogram.getPercentileNanos(99)),
+            toMs(histogram.getMaxNanos())));
+      }
+    }
+  }
+
+  public static double toMs(long nanos) {
+    return nanos / 1e6;
+  }
+}
@@ -0,0 +1,99 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the rate of a stream of frames from the timestamps at which they were done, kept in a
+ * ring, rather than with a timer thread that rolls a counter over every second.
+ *
+ * <p>The instantaneous rate comes from the time between the last two frames, the windowed rate
+ * from the number of frames in the window before a given time, so it drops to 0 once frames stop
+ * coming.
+ *
+ * <p>Frames must be marked by one thread at a time, e.g. the thread of the stage they went
+ * through. Rates can be read from any thread, without locks: the ring is only overwritten once
+ * it wrapped around, and readers skip any timestamp that was overwritten while they read.
+ */
+public class FrameRateMeter {
+  // At 30 fps, about 4s of frames.
+  private static final int DEFAULT_CAPACITY = 128;
+
+  private final AtomicLongArray timestamps;
+  private final int mask;
+  // Number of frames marked so far. Written by the marking thread only, after the timestamp.
+  private volatile long frameCount;
+
+  public FrameRateMeter() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity the number of timestamps kept, a power of two. */
+  public FrameRateMeter(int capacity) {
+    Preconditions.checkArgument(capacity >= 2 && Integer.bitCount(capacity) == 1,
+        "Expected a power of two >= 2, got %s", capacity);
+    timestamps = new AtomicLongArray(capacity);
+    mask = capacity - 1;
+  }
+
+  /** Marks a frame done at {@code timestampNanos}, which must not go backwards. */
+  public void mark(long timestampNanos) {
+    long count = frameCount;
+    timestamps.lazySet(slot(count), timestampNanos);
+    frameCount = count + 1;
+  }
+
+  /** Returns the number of frames marked so far. */
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  /** Returns the frames per second from the time between the last two frames, or 0. */
+  public double getInstantaneousFps() {
+    while (true) {
+      long count = frameCount;
+      if (count < 2) {
+        return 0;
+      }
+      long last = timestamps.get(slot(count - 1));
+      long previous = timestamps.get(slot(count - 2));
+      if (count - 2 >= firstValidIndex()) {
+        long intervalNanos = last - previous;
+        return intervalNanos <= 0 ? 0 : 1e9 / intervalNanos;
+      }
+      // The ring wrapped around while reading, try again with the newer frames.
+    }
+  }
+
+  /**
+   * Returns the frames per second over the {@code windowNanos} before {@code nowNanos}, i.e. the
+   * number of frames in that window over its length. Windows longer than the ring holds at the
+   * frame rate are cut short.
+   */
+  public double getWindowedFps(long nowNanos, long windowNanos) {
+    Preconditions.checkArgument(windowNanos > 0, "Expected a window > 0, got %s", windowNanos);
+    long count = frameCount;
+    long windowStartNanos = nowNanos - windowNanos;
+    long index = count;
+    long oldest = Math.max(0, firstValidIndex());
+    while (index > oldest && timestamps.get(slot(index - 1)) > windowStartNanos) {
+      index--;
+    }
+    // Frames overwritten while reading aren't counted.
+    long framesInWindow = count - Math.max(index, firstValidIndex());
+    return Math.max(0, framesInWindow) * 1e9 / windowNanos;
+  }
+
+  private int slot(long index) {
+    return (int) (index & mask);
+  }
+
+  /**
+   * Returns the index of the oldest frame whose timestamp is still in the ring. The one before may
+   * be getting overwritten by the frame being marked.
+   */
+  private long firstValidIndex() {
+    return frameCount - timestamps.length() + 1;
+  }
+}
@@ -0,0 +1,101 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of latencies, in nanoseconds, with fixed buckets, so that recording never
+ * allocates and percentiles can be read at any time.
+ *
+ * <p>Buckets are log-linear: values under 16ns have a bucket each, and every power of two above
+ * is split into 16 buckets of equal width. Percentiles are off by at most 1/16, i.e. 6.25%, from
+ * nanoseconds up to about 18 minutes, past which values share the last bucket. The maximum is
+ * exact. Thread safe.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  // 2^40ns is about 18 minutes.
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+  private final long[] counts = new long[BUCKET_COUNT];
+  private long count;
+  private long totalNanos;
+  private long maxNanos;
+
+  /** Records a latency. Negative ones, e.g. from a clock that went backwards, count as 0. */
+  public synchronized void record(long nanos) {
+    nanos = Math.max(nanos, 0);
+    counts[bucket(nanos)]++;
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+  }
+
+  /** Returns the number of latencies recorded since the last reset. */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized long getMeanNanos() {
+    return count == 0 ? 0 : totalNanos / count;
+  }
+
+  public synchronized long getMaxNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * Returns the latency that {@code percentile} percent of the recorded ones are under or equal
+   * to, rounded up to the end of its bucket, or 0 if none were recorded.
+   */
+  public synchronized long getPercentileNanos(double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100,
+        "Expected a percentile from 0 to 100, got %s", percentile);
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(bucket), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    totalNanos = 0;
+    maxNanos = 0;
+  }
+
+  static int bucket(long nanos) {
+    if (nanos < SUB_BUCKET_COUNT) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKET_COUNT - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    // The leading bit is implied, the next SUB_BUCKET_BITS pick the bucket within the octave.
+    int subBucket = (int) (nanos >>> shift) - SUB_BUCKET_COUNT;
+    return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /** Returns the largest value of {@code bucket}. */
+  static long bucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKET_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKET_COUNT - 1;
+    long lowerBound = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
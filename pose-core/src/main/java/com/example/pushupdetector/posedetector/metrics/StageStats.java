@@ -0,0 +1,82 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import java.util.Locale;
+
+/**
+ * Latency and throughput of one stage of the frame pipeline, e.g. detection or classification,
+ * from the start and end time of every frame that went through it.
+ *
+ * <p>The busy ratio is the share of the time the stage spent working on frames. Stages that run
+ * one after the other have busy ratios adding up to at most 1, while stages that overlap can add
+ * up to more. Thread safe, so that a stage can be read from another thread than the one it runs
+ * on.
+ */
+public class StageStats {
+  private final String name;
+
+  private long count;
+  private long totalNanos;
+  private long maxNanos;
+  private long firstStartNanos;
+  private long lastEndNanos;
+
+  public StageStats(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Records a frame that went through the stage from {@code startNanos} to {@code endNanos}. */
+  public synchronized void record(long startNanos, long endNanos) {
+    if (count == 0) {
+      firstStartNanos = startNanos;
+    }
+    long latencyNanos = endNanos - startNanos;
+    count++;
+    totalNanos += latencyNanos;
+    maxNanos = Math.max(maxNanos, latencyNanos);
+    lastEndNanos = Math.max(lastEndNanos, endNanos);
+  }
+
+  /** Returns the number of frames recorded since the last reset. */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  public synchronized double getAverageMs() {
+    return count == 0 ? 0 : totalNanos / 1e6 / count;
+  }
+
+  public synchronized double getMaxMs() {
+    return maxNanos / 1e6;
+  }
+
+  /** Returns the frames per second from the start of the first frame to the end of the last. */
+  public synchronized double getThroughput() {
+    long spanNanos = lastEndNanos - firstStartNanos;
+    return spanNanos <= 0 ? 0 : count * 1e9 / spanNanos;
+  }
+
+  /** Returns the share of the time, from 0 to 1, that the stage was working on a frame. */
+  public synchronized double getBusyRatio() {
+    long spanNanos = lastEndNanos - firstStartNanos;
+    return spanNanos <= 0 ? 0 : Math.min(1, (double) totalNanos / spanNanos);
+  }
+
+  public synchronized void reset() {
+    count = 0;
+    totalNanos = 0;
+    maxNanos = 0;
+    firstStartNanos = 0;
+    lastEndNanos = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(Locale.US,
+        "%s: %d frames, avg=%.1fms, max=%.1fms, %.1f fps, busy %.0f%%",
+        name, count, getAverageMs(), getMaxMs(), getThroughput(), getBusyRatio() * 100);
+  }
+}
@@ -0,0 +1,182 @@
+package com.example.pushupdetector.posedetector.trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A {@link Tracer.Backend} that writes spans in the Chrome trace event format, which {@code
+ * chrome://tracing} and Perfetto open.
+ *
+ * <p>Events are kept in arrays allocated up front, names by reference, and only formatted once
+ * the arrays are full or the writer is closed, so recording a span doesn't allocate. The first
+ * write error stops recording and is thrown by {@link #close()}. Thread safe.
+ */
+public class ChromeTraceWriter implements Tracer.Backend, Closeable {
+  private static final int DEFAULT_CAPACITY = 4096;
+  private static final char BEGIN = 'B';
+  private static final char END = 'E';
+  private static final char ASYNC_BEGIN = 'b';
+  private static final char ASYNC_END = 'e';
+  private static final char COUNTER = 'C';
+
+  private final Writer out;
+  private final long originNanos;
+
+  private final char[] phases;
+  private final String[] names;
+  private final long[] frameIds;
+  private final long[] timestampNanos;
+  private final long[] threadIds;
+  private int size;
+
+  private final StringBuilder line = new StringBuilder();
+  private boolean hasWrittenEvent;
+  private IOException writeError;
+  private boolean closed;
+
+  public ChromeTraceWriter(Writer out) throws IOException {
+    this(out, DEFAULT_CAPACITY);
+  }
+
+  /** @param capacity the number of events kept before they are written out. */
+  public ChromeTraceWriter(Writer out, int capacity) throws IOException {
+    this.out = out;
+    phases = new char[capacity];
+    names = new String[capacity];
+    frameIds = new long[capacity];
+    timestampNanos = new long[capacity];
+    threadIds = new long[capacity];
+    originNanos = System.nanoTime();
+    out.write("{\"traceEvents\":[");
+  }
+
+  @Override
+  public void beginSection(String name, long frameId) {
+    record(BEGIN, name, frameId);
+  }
+
+  @Override
+  public void endSection() {
+    record(END, null, 0);
+  }
+
+  @Override
+  public void beginAsyncSection(String name, long frameId) {
+    record(ASYNC_BEGIN, name, frameId);
+  }
+
+  @Override
+  public void endAsyncSection(String name, long frameId) {
+    record(ASYNC_END, name, frameId);
+  }
+
+  @Override
+  public void setCounter(String name, long value) {
+    // The value is kept with the frame ids.
+    record(COUNTER, name, value);
+  }
+
+  private synchronized void record(char phase, String name, long frameId) {
+    if (closed || writeError != null) {
+      return;
+    }
+    if (size == phases.length) {
+      flush();
+    }
+    phases[size] = phase;
+    names[size] = name;
+    frameIds[size] = frameId;
+    timestampNanos[size] = System.nanoTime() - originNanos;
+    threadIds[size] = Thread.currentThread().getId();
+    size++;
+  }
+
+  /** Writes the events kept so far. */
+  public synchronized void flush() {
+    if (writeError != null) {
+      return;
+    }
+    try {
+      for (int i = 0; i < size; i++) {
+        writeEvent(i);
+      }
+      out.flush();
+    } catch (IOException e) {
+      writeError = e;
+    }
+    size = 0;
+    // Drop the references to the names.
+    Arrays.fill(names, null);
+  }
+
+  /** Writes the events kept so far and ends the trace. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    try {
+      if (writeError == null) {
+        out.write("\n]}\n");
+      }
+    } finally {
+      out.close();
+    }
+    if (writeError != null) {
+      throw writeError;
+    }
+  }
+
+  private void writeEvent(int i) throws IOException {
+    line.setLength(0);
+    line.append(hasWrittenEvent ? ",\n" : "\n");
+    hasWrittenEvent = true;
+    char phase = phases[i];
+    line.append("{\"ph\":\"").append(phase).append('"');
+    if (phase != END) {
+      line.append(",\"name\":\"");
+      appendEscaped(names[i]);
+      line.append("\",\"cat\":\"frame\"");
+    }
+    if (phase == ASYNC_BEGIN || phase == ASYNC_END) {
+      line.append(",\"id\":").append(frameIds[i]);
+    }
+    // Microseconds, to the nanosecond.
+    long nanos = timestampNanos[i];
+    line.append(",\"ts\":").append(nanos / 1000).append('.');
+    long fraction = nanos % 1000;
+    if (fraction < 100) {
+      line.append('0');
+    }
+    if (fraction < 10) {
+      line.append('0');
+    }
+    line.append(fraction);
+    line.append(",\"pid\":1,\"tid\":").append(threadIds[i]);
+    if (phase == BEGIN || phase == ASYNC_BEGIN) {
+      line.append(",\"args\":{\"frame\":").append(frameIds[i]).append('}');
+    } else if (phase == COUNTER) {
+      line.append(",\"args\":{\"value\":").append(frameIds[i]).append('}');
+    }
+    line.append('}');
+    out.append(line);
+  }
+
+  private void appendEscaped(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format(Locale.US, "\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+  }
+}
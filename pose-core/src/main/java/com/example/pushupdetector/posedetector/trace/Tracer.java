@@ -0,0 +1,84 @@
+package com.example.pushupdetector.posedetector.trace;
+
+/**
+ * Tracing facade of the frame pipeline: spans of the stages a frame goes through, tagged with the
+ * id of the frame, so that a stutter can be pinned on a stage.
+ *
+ * <p>Spans go to a pluggable {@link Backend}. The default one drops them; the app installs one
+ * backed by {@code android.os.Trace}, and JVM replays can write a Chrome trace with {@link
+ * ChromeTraceWriter}. Names are meant to be the constants below, or other constants, so that
+ * tracing a span never builds a string.
+ */
+public final class Tracer {
+  public static final String CONVERSION = "Convert frame";
+  public static final String DETECTION = "Detect pose";
+  public static final String CLASSIFICATION = "Classify pose";
+  public static final String REP_COUNTING = "Count reps";
+  public static final String OVERLAY_DRAW = "Draw overlay";
+  // The counter set to the id of every frame as it starts, which slices can be matched to.
+  public static final String FRAME_ID = "frameId";
+
+  /** Receives the spans of {@link Tracer}. */
+  public interface Backend {
+    /** Starts a span on the current thread, nested in the spans started on it and not ended. */
+    void beginSection(String name, long frameId);
+
+    /** Ends the last span started on the current thread. */
+    void endSection();
+
+    /** Starts a span that may end on another thread, identified by its name and frame. */
+    void beginAsyncSection(String name, long frameId);
+
+    void endAsyncSection(String name, long frameId);
+
+    /** Sets the counter {@code name} to {@code value}, until it is set again. */
+    void setCounter(String name, long value);
+  }
+
+  private static final Backend NO_OP_BACKEND = new Backend() {
+    @Override
+    public void beginSection(String name, long frameId) {}
+
+    @Override
+    public void endSection() {}
+
+    @Override
+    public void beginAsyncSection(String name, long frameId) {}
+
+    @Override
+    public void endAsyncSection(String name, long frameId) {}
+
+    @Override
+    public void setCounter(String name, long value) {}
+  };
+
+  private static volatile Backend backend = NO_OP_BACKEND;
+
+  private Tracer() {}
+
+  /** Sends the spans to {@code newBackend}, or drops them if null. */
+  public static void setBackend(Backend newBackend) {
+    backend = newBackend != null ? newBackend : NO_OP_BACKEND;
+  }
+
+  /** Marks the start of frame {@code frameId}. Called once per frame, before its first span. */
+  public static void beginFrame(long frameId) {
+    backend.setCounter(FRAME_ID, frameId);
+  }
+
+  public static void beginSection(String name, long frameId) {
+    backend.beginSection(name, frameId);
+  }
+
+  public static void endSection() {
+    backend.endSection();
+  }
+
+  public static void beginAsyncSection(String name, long frameId) {
+    backend.beginAsyncSection(name, frameId);
+  }
+
+  public static void endAsyncSection(String name, long frameId) {
+    backend.endAsyncSection(name, frameId);
+  }
+}
@@ -0,0 +1,203 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.EMBEDDING_SIZE;
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays a recorded push-up session through the per-frame classification chain and checks that
+ * no stage allocates more bytes per frame than its budget, as counted by {@code
+ * ThreadMXBean.getThreadAllocatedBytes}. Fails with the allocations of every stage, so that a
+ * regression shows where it is. Skipped on JVMs that don't count allocations per thread.
+ *
+ * <p>The stages are measured on their own, to tell which one allocates, and then together in a
+ * {@link RepCountingPipeline} set up as in the app's stream mode, with its motion gate and
+ * FrameMetrics recording.
+ */
+public class AllocationBudgetTest {
+  private static final String PUSHUPS_CLASS = TestPoseSamples.PUSHUPS_DOWN_CLASS;
+  private static final int NUM_REPS = 10;
+  private static final int FRAMES_PER_HALF_REP = 15;
+  // Replays before measuring, for classes to load and the JIT to compile the stages.
+  private static final int WARM_UP_REPLAYS = 5;
+
+  /** The per-frame stages, with the bytes they may allocate per frame on average. */
+  private enum Stage {
+    MOTION_GATE("MotionGate", 0),
+    EMBEDDING("PoseEmbedding", 0),
+    CLASSIFICATION("PoseClassifier", 0),
+    SMOOTHING("EMASmoothing", 0),
+    REP_COUNTING("RepetitionCounterBank", 0),
+    PIPELINE("RepCountingPipeline", 0),
+    RESULT_LOOKUP("Result lookup", 0);
+
+    private final String displayName;
+    private final long budgetBytesPerFrame;
+
+    Stage(String displayName, long budgetBytesPerFrame) {
+      this.displayName = displayName;
+      this.budgetBytesPerFrame = budgetBytesPerFrame;
+    }
+  }
+
+  private final com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private final long threadId = Thread.currentThread().getId();
+  // Bytes allocated by reading the allocated bytes, taken off every measurement.
+  private long measurementBytes;
+
+  private final long[] allocatedBytes = new long[Stage.values().length];
+  private byte[] session;
+  private PoseClassifier poseClassifier;
+  private MotionGate motionGate;
+  private EMASmoothing emaSmoothing;
+  private RepetitionCounterBank repCounters;
+  private ClassificationResult classification;
+  private ClassificationResult smoothedClassification;
+  private RepCountingPipeline pipeline;
+  private final float[] normalizedLandmarks = new float[NUM_LANDMARKS * 3];
+  private final float[] embedding = new float[EMBEDDING_SIZE * 3];
+  // The time of the frame being replayed, for the smoothing.
+  private long timestampMs;
+
+  @Before
+  public void setUp() throws IOException {
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    TestPoseSamples testPoseSamples = new TestPoseSamples(/* seed= */ 5);
+    session = TestPoseSamples.recordPushUps(
+        testPoseSamples.packedLandmarks(TestPoseSamples.PUSHUPS_DOWN_CLASS),
+        testPoseSamples.packedLandmarks(TestPoseSamples.PUSHUPS_UP_CLASS),
+        NUM_REPS, FRAMES_PER_HALF_REP);
+    poseClassifier = new PoseClassifier(
+        PoseSampleMatrix.fromSamples(testPoseSamples.samples()), BruteForceSampleIndex.FACTORY);
+    ClassRegistry classRegistry = poseClassifier.getClassRegistry();
+
+    // The stages on their own.
+    motionGate = new MotionGate();
+    emaSmoothing = new EMASmoothing(classRegistry, () -> timestampMs);
+    repCounters = new RepetitionCounterBank(new RepetitionCounter(PUSHUPS_CLASS));
+    classification = new ClassificationResult(classRegistry);
+    smoothedClassification = new ClassificationResult(classRegistry);
+    // The stages together, as in the app's stream mode.
+    pipeline = new RepCountingPipeline(poseClassifier, new MotionGate(),
+        new EMASmoothing(classRegistry, () -> timestampMs),
+        new RepetitionCounterBank(new RepetitionCounter(PUSHUPS_CLASS)));
+  }
+
+  @Test
+  public void stagesStayWithinBudget() throws IOException {
+    for (int i = 0; i < WARM_UP_REPLAYS; i++) {
+      replay();
+    }
+    measurementBytes = calibrate();
+    Arrays.fill(allocatedBytes, 0);
+    int frameCount = replay();
+
+    boolean withinBudget = true;
+    StringBuilder report = new StringBuilder(String.format(Locale.US,
+        "Bytes allocated per frame over %d frames:%n", frameCount));
+    for (Stage stage : Stage.values()) {
+      double bytesPerFrame = (double) allocatedBytes[stage.ordinal()] / frameCount;
+      boolean overBudget = bytesPerFrame > stage.budgetBytesPerFrame;
+      withinBudget &= !overBudget;
+      report.append(String.format(Locale.US, "  %-22s %10.1f  (budget %d)%s%n",
+          stage.displayName, bytesPerFrame, stage.budgetBytesPerFrame,
+          overBudget ? "  OVER BUDGET" : ""));
+    }
+    assertTrue(report.toString(), withinBudget);
+  }
+
+  /** Replays the recorded session once, adding the allocations of each stage up. */
+  private int replay() throws IOException {
+    LandmarkStreamReader reader = new LandmarkStreamReader(ByteBuffer.wrap(session));
+    int frameCount = 0;
+    int repSum = 0;
+    while (reader.next()) {
+      frameCount++;
+      timestampMs = reader.getTimestampMs();
+      float[] landmarks = reader.hasLandmarks() ? reader.getLandmarks() : null;
+
+      long bytes = allocatedBytes();
+      if (landmarks != null) {
+        motionGate.shouldClassify(landmarks);
+      } else {
+        motionGate.reset();
+      }
+      bytes = record(Stage.MOTION_GATE, bytes);
+
+      if (landmarks != null) {
+        PoseEmbedding.getPoseEmbedding(landmarks, normalizedLandmarks, embedding, 0);
+      }
+      bytes = record(Stage.EMBEDDING, bytes);
+
+      if (landmarks != null) {
+        poseClassifier.classify(landmarks, classification);
+      } else {
+        classification.clear();
+      }
+      bytes = record(Stage.CLASSIFICATION, bytes);
+
+      emaSmoothing.getSmoothedResult(classification, smoothedClassification);
+      bytes = record(Stage.SMOOTHING, bytes);
+
+      if (landmarks != null) {
+        repCounters.addClassificationResult(smoothedClassification);
+      } else {
+        repCounters.clearChanged();
+      }
+      bytes = record(Stage.REP_COUNTING, bytes);
+
+      pipeline.process(landmarks);
+      bytes = record(Stage.PIPELINE, bytes);
+
+      // As the app reads the results to show them.
+      RepetitionCounterBank pipelineCounters = pipeline.getRepCounters();
+      for (int i = 0; i < pipelineCounters.getChangedCount(); i++) {
+        RepetitionCounter repCounter =
+            pipelineCounters.getCounter(pipelineCounters.getChangedCounter(i));
+        repSum += repCounter.getNumRepeats() + repCounter.getClassName().length();
+      }
+      record(Stage.RESULT_LOOKUP, bytes);
+    }
+    // Checks that the stages did their work, and keeps the lookups from being optimized away.
+    assertEquals(repCounters.getCounter(0).getNumRepeats(), pipeline.getNumRepeats());
+    assertTrue(pipeline.getNumRepeats() > 0);
+    assertTrue(repSum > 0);
+    return frameCount;
+  }
+
+  /** Adds the bytes allocated since {@code startBytes} to {@code stage}, returns the new count. */
+  private long record(Stage stage, long startBytes) {
+    long bytes = allocatedBytes();
+    allocatedBytes[stage.ordinal()] += Math.max(0, bytes - startBytes - measurementBytes);
+    // Starts the next stage after this measurement, not before.
+    return allocatedBytes();
+  }
+
+  private long allocatedBytes() {
+    return threadMXBean.getThreadAllocatedBytes(threadId);
+  }
+
+  /** Returns the fewest bytes seen allocated between two back-to-back measurements. */
+  private long calibrate() {
+    long fewestBytes = Long.MAX_VALUE;
+    for (int i = 0; i < 100; i++) {
+      long startBytes = allocatedBytes();
+      fewestBytes = Math.min(fewestBytes, allocatedBytes() - startBytes);
+    }
+    return fewestBytes;
+  }
+}
@@ -0,0 +1,68 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class ClassificationResultTest {
+  private static final String[] CLASSES = {"pushups_down", "pushups_up"};
+
+  @Test
+  public void classesByName_areRegistered() {
+    ClassificationResult result = new ClassificationResult();
+    result.incrementClassConfidence("pushups_up");
+    result.incrementClassConfidence("pushups_up");
+    result.putClassConfidence("pushups_down", 3.5f);
+
+    assertEquals(2, result.getClassConfidence("pushups_up"), 0f);
+    assertEquals(3.5f, result.getClassConfidence("pushups_down"), 0f);
+    assertEquals(0, result.getClassConfidence("squats_down"), 0f);
+    assertEquals(new HashSet<>(Arrays.asList(CLASSES)), result.getAllClasses());
+    assertEquals(2, result.getClassRegistry().size());
+  }
+
+  @Test
+  public void classIds_matchClassNames() {
+    ClassRegistry classRegistry = new ClassRegistry(CLASSES);
+    ClassificationResult result = new ClassificationResult(classRegistry);
+    result.setConfidence(classRegistry.getId("pushups_up"), 7);
+    result.incrementConfidence(0);
+
+    assertEquals(7, result.getClassConfidence("pushups_up"), 0f);
+    assertEquals(1, result.getClassConfidence("pushups_down"), 0f);
+    assertTrue(result.hasConfidence(1));
+    assertEquals(-1, classRegistry.getId("squats_down"));
+  }
+
+  @Test
+  public void clear_removesAllClasses() {
+    ClassRegistry classRegistry = new ClassRegistry(CLASSES);
+    ClassificationResult result = new ClassificationResult(classRegistry);
+    result.setConfidence(0, 10);
+    result.clear();
+    result.incrementConfidence(1);
+
+    assertFalse(result.hasConfidence(0));
+    assertEquals(0, result.getConfidence(0), 0f);
+    assertEquals(1, result.getConfidence(1), 0f);
+    assertEquals(Collections.singleton("pushups_up"), result.getAllClasses());
+  }
+
+  @Test
+  public void classesRegisteredLater_fitInExistingResults() {
+    ClassRegistry classRegistry = new ClassRegistry(CLASSES);
+    ClassificationResult result = new ClassificationResult(classRegistry);
+    ClassificationResult other = new ClassificationResult(classRegistry);
+    other.putClassConfidence("squats_down", 4);
+
+    assertFalse(result.hasConfidence(2));
+    result.setConfidence(2, 5);
+    assertEquals(5, result.getClassConfidence("squats_down"), 0f);
+  }
+}
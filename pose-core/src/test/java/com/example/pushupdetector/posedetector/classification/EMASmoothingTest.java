@@ -0,0 +1,127 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Checks the ring-buffer {@link EMASmoothing} against the deque-based {@link LegacyEMASmoothing}. */
+public class EMASmoothingTest {
+  private static final int NUM_RESULTS = 5000;
+  private static final String[] CLASSES = {"pushups_down", "pushups_up", "squats_down"};
+  // The running sums are kept in double, the legacy sums were recomputed in float every frame.
+  private static final float TOLERANCE = 1e-5f;
+
+  private long nowMs;
+
+  @Test
+  public void matchesLegacySmoothing() {
+    assertMatchesLegacy(10, 0.2f, /* seed= */ 1);
+  }
+
+  @Test
+  public void matchesLegacySmoothing_otherWindowsAndAlphas() {
+    assertMatchesLegacy(1, 0.2f, /* seed= */ 2);
+    assertMatchesLegacy(3, 0.5f, /* seed= */ 3);
+    assertMatchesLegacy(30, 0.05f, /* seed= */ 4);
+  }
+
+  @Test
+  public void classIds_matchClassNames() {
+    nowMs = 1000;
+    ClassRegistry classRegistry = new ClassRegistry(CLASSES);
+    EMASmoothing smoothing = new EMASmoothing(classRegistry, 10, 0.2f, () -> nowMs);
+    EMASmoothing smoothingByName = new EMASmoothing(10, 0.2f, () -> nowMs);
+    ClassificationResult input = new ClassificationResult(classRegistry);
+    ClassificationResult smoothed = new ClassificationResult(classRegistry);
+    Random random = new Random(/* seed= */ 5);
+
+    for (int i = 0; i < NUM_RESULTS; i++) {
+      nowMs += random.nextInt(50) == 0 ? 150 : 33;
+      ClassificationResult inputByName = randomResult(random);
+      input.clear();
+      for (String className : inputByName.getAllClasses()) {
+        input.setConfidence(
+            classRegistry.getId(className), inputByName.getClassConfidence(className));
+      }
+
+      ClassificationResult expected = smoothingByName.getSmoothedResult(inputByName);
+      smoothing.getSmoothedResult(input, smoothed);
+
+      assertEquals("result " + i, expected.getAllClasses(), smoothed.getAllClasses());
+      for (String className : expected.getAllClasses()) {
+        assertEquals("result " + i + ", " + className,
+            expected.getClassConfidence(className),
+            smoothed.getConfidence(classRegistry.getId(className)), 0f);
+      }
+    }
+  }
+
+  @Test
+  public void resetsAfterGap() {
+    EMASmoothing smoothing = new EMASmoothing(() -> nowMs);
+    nowMs = 1000;
+    for (int i = 0; i < 10; i++) {
+      nowMs += 33;
+      smoothing.getSmoothedResult(result("pushups_down", 10));
+    }
+
+    nowMs += 101;
+    ClassificationResult smoothed = smoothing.getSmoothedResult(result("pushups_up", 10));
+
+    assertEquals(0, smoothed.getClassConfidence("pushups_down"), 0f);
+    assertEquals(10, smoothed.getClassConfidence("pushups_up"), 0f);
+    assertEquals(1, smoothed.getAllClasses().size());
+  }
+
+  private void assertMatchesLegacy(int windowSize, float alpha, long seed) {
+    nowMs = 1000;
+    Clock clock = () -> nowMs;
+    EMASmoothing smoothing = new EMASmoothing(windowSize, alpha, clock);
+    LegacyEMASmoothing legacySmoothing = new LegacyEMASmoothing(windowSize, alpha, clock);
+    Random random = new Random(seed);
+
+    for (int i = 0; i < NUM_RESULTS; i++) {
+      // Mostly 30 fps, with gaps that reset the window now and then.
+      nowMs += random.nextInt(50) == 0 ? 150 : 33;
+      ClassificationResult input = randomResult(random);
+
+      ClassificationResult expected = legacySmoothing.getSmoothedResult(input);
+      ClassificationResult actual = smoothing.getSmoothedResult(input);
+
+      assertEquals("result " + i, expected.getAllClasses(), actual.getAllClasses());
+      for (String className : expected.getAllClasses()) {
+        assertEquals("result " + i + ", " + className,
+            expected.getClassConfidence(className), actual.getClassConfidence(className),
+            TOLERANCE);
+      }
+    }
+  }
+
+  /** Returns a result with confidences summing to 10, like the classifier's, or none at all. */
+  private static ClassificationResult randomResult(Random random) {
+    ClassificationResult result = new ClassificationResult();
+    if (random.nextInt(20) == 0) {
+      // No pose detected.
+      return result;
+    }
+    // Classes show up and disappear from the window, the last one only rarely.
+    int numClasses = random.nextInt(10) == 0 ? CLASSES.length : CLASSES.length - 1;
+    int remaining = 10;
+    for (int c = 0; c < numClasses && remaining > 0; c++) {
+      int confidence = c == numClasses - 1 ? remaining : random.nextInt(remaining + 1);
+      if (confidence > 0) {
+        result.putClassConfidence(CLASSES[c], confidence);
+      }
+      remaining -= confidence;
+    }
+    return result;
+  }
+
+  private static ClassificationResult result(String className, float confidence) {
+    ClassificationResult result = new ClassificationResult();
+    result.putClassConfidence(className, confidence);
+    return result;
+  }
+}
@@ -0,0 +1,73 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class LandmarkFrameQueueTest {
+  private final LandmarkFrameQueue queue = new LandmarkFrameQueue(/* capacity= */ 2);
+  private final LandmarkFrameQueue.Frame frame = new LandmarkFrameQueue.Frame();
+
+  @Test
+  public void copiesFramesInOrder() {
+    float[] landmarks = landmarks(1);
+    queue.offer(landmarks, /* frameId= */ 1, /* timestampNanos= */ 10);
+    // Changing the detector's array doesn't change the queued frame.
+    Arrays.fill(landmarks, 5);
+    queue.offer(null, /* frameId= */ 2, /* timestampNanos= */ 20);
+
+    assertTrue(queue.poll(frame));
+    assertArrayEquals(landmarks(1), frame.getLandmarks(), 0);
+    assertEquals(1, frame.getFrameId());
+    assertEquals(10, frame.getTimestampNanos());
+    assertTrue(queue.poll(frame));
+    assertNull(frame.getLandmarks());
+    assertEquals(2, frame.getFrameId());
+    assertEquals(20, frame.getTimestampNanos());
+    assertFalse(queue.poll(frame));
+  }
+
+  @Test
+  public void dropsOldestFramesWhenFull() {
+    for (int i = 1; i <= 5; i++) {
+      queue.offer(landmarks(i), i, i);
+    }
+
+    assertEquals(2, queue.size());
+    assertEquals(5, queue.getOfferedCount());
+    assertEquals(3, queue.getDroppedCount());
+    assertTrue(queue.poll(frame));
+    assertArrayEquals(landmarks(4), frame.getLandmarks(), 0);
+    assertEquals(4, frame.getFrameId());
+    assertTrue(queue.poll(frame));
+    assertArrayEquals(landmarks(5), frame.getLandmarks(), 0);
+  }
+
+  @Test
+  public void schedulesConsumerOnlyWhenNotDraining() {
+    assertTrue(queue.offer(landmarks(1), 1, 1));
+    // The consumer is scheduled, or already draining.
+    assertFalse(queue.offer(landmarks(2), 2, 2));
+    assertTrue(queue.poll(frame));
+    assertFalse(queue.offer(landmarks(3), 3, 3));
+    assertTrue(queue.poll(frame));
+    assertTrue(queue.poll(frame));
+
+    // Done draining, the next frame has to schedule it again.
+    assertFalse(queue.poll(frame));
+    assertTrue(queue.offer(landmarks(4), 4, 4));
+  }
+
+  private static float[] landmarks(float value) {
+    float[] landmarks = new float[NUM_LANDMARKS * 3];
+    Arrays.fill(landmarks, value);
+    return landmarks;
+  }
+}
@@ -2,17 +2,16 @@
 
 package com.example.pushupdetector.posedetector.classification;
 
-import android.os.SystemClock;
-
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingDeque;
 
 /**
- * Runs EMA smoothing over a window with given stream of pose classification results.
+ * The deque-based {@link EMASmoothing} implementation that the ring buffer replaced, kept as the
+ * reference it is checked against.
  */
-public class EMASmoothing {
+class LegacyEMASmoothing {
   private static final int DEFAULT_WINDOW_SIZE = 10;
   private static final float DEFAULT_ALPHA = 0.2f;
 
@@ -20,25 +19,27 @@ public class EMASmoothing {
 
   private final int windowSize;
   private final float alpha;
+  private final Clock clock;
   // This is a window of {@link ClassificationResult}s as outputted by the {@link PoseClassifier}.
   // We run smoothing over this window of size {@link windowSize}.
   private final Deque<ClassificationResult> window;
 
   private long lastInputMs;
 
-  public EMASmoothing() {
-    this(DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA);
+  LegacyEMASmoothing(Clock clock) {
+    this(DEFAULT_WINDOW_SIZE, DEFAULT_ALPHA, clock);
   }
 
-  public EMASmoothing(int windowSize, float alpha) {
+  LegacyEMASmoothing(int windowSize, float alpha, Clock clock) {
     this.windowSize = windowSize;
     this.alpha = alpha;
+    this.clock = clock;
     this.window = new LinkedBlockingDeque<>(windowSize);
   }
 
-  public ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
+  ClassificationResult getSmoothedResult(ClassificationResult classificationResult) {
     // Resets memory if the input is too far away from the previous one in time.
-    long nowMs = SystemClock.elapsedRealtime();
+    long nowMs = clock.elapsedRealtimeMs();
     if (nowMs - lastInputMs > RESET_THRESHOLD_MS) {
       window.clear();
     }
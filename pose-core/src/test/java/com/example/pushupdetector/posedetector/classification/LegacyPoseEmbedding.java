@@ -1,5 +1,3 @@
-
-
 package com.example.pushupdetector.posedetector.classification;
 
 import static com.example.pushupdetector.posedetector.classification.Utils.average;
@@ -9,29 +7,24 @@ import static com.example.pushupdetector.posedetector.classification.Utils.multi
 import static com.example.pushupdetector.posedetector.classification.Utils.subtract;
 import static com.example.pushupdetector.posedetector.classification.Utils.subtractAll;
 
-import android.util.Log;
-
-import com.google.mlkit.vision.common.PointF3D;
-import com.google.mlkit.vision.pose.PoseLandmark;
-
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
- * Generates embedding for given list of Pose landmarks.
+ * The list-based {@link PoseEmbedding} implementation that the packed one replaced, kept as the
+ * reference it is checked against. The vertical orientation threshold is a parameter, so that the
+ * rotation steps can be exercised.
  */
-public class PoseEmbedding {
+class LegacyPoseEmbedding {
     // Multiplier to apply to the torso to get minimal body size. Picked this by experimentation.
     private static final float TORSO_MULTIPLIER = 2.5f;
-    private static final float Y_THRESHOLD = 2.5f;
-
-    public static List<PointF3D> getPoseEmbedding(List<PointF3D> landmarks) {
-        List<PointF3D> normalizedLandmarks = normalize(landmarks);
+    static List<Point3D> getPoseEmbedding(List<Point3D> landmarks, float yThreshold) {
+        List<Point3D> normalizedLandmarks = normalize(landmarks, yThreshold);
         return getEmbedding(normalizedLandmarks);
     }
 
-    private static double getMagnitude(PointF3D point) {
+    private static double getMagnitude(Point3D point) {
         return Math.sqrt(Math.pow(point.getX(), 2) + Math.pow(point.getY(), 2) + Math.pow(point.getZ(), 2));
     }
 
@@ -48,7 +41,7 @@ public class PoseEmbedding {
                 {2 * (bd + ac), 2 * (cd - ab), aa + dd - bb - cc}};
     }
 
-    private static PointF3D cross(PointF3D A, PointF3D B) {
+    private static Point3D cross(Point3D A, Point3D B) {
         float x = A.getY() * B.getZ()
                 - A.getZ() * B.getY();
         float y = A.getZ() * B.getX()
@@ -56,27 +49,27 @@ public class PoseEmbedding {
         float z = A.getX() * B.getY()
                 - A.getY() * B.getX();
 
-        return PointF3D.from(x, y, z);
+        return Point3D.from(x, y, z);
     }
 
-    private static float dot(PointF3D A, PointF3D B) {
+    private static float dot(Point3D A, Point3D B) {
         return A.getX() * B.getX() + A.getY() * B.getY() + A.getZ() * B.getZ();
     }
 
-    private static float dot(PointF3D A, double x, double y, double z) {
+    private static float dot(Point3D A, double x, double y, double z) {
       return (float) (A.getX() * x + A.getY() * y + A.getZ() * z);
     }
 
-    private static List<PointF3D> rotateAtoBwithLandmark(PointF3D B, PointF3D A, List<PointF3D> landmarks) {
-        PointF3D A_unit = multiply(A, (float) (1 / getMagnitude(A)));
-        PointF3D B_unit = multiply(B, (float) (1 / getMagnitude(B)));
+    private static List<Point3D> rotateAtoBwithLandmark(Point3D B, Point3D A, List<Point3D> landmarks) {
+        Point3D A_unit = multiply(A, (float) (1 / getMagnitude(A)));
+        Point3D B_unit = multiply(B, (float) (1 / getMagnitude(B)));
 
-        PointF3D axis = cross(B_unit, A_unit);
+        Point3D axis = cross(B_unit, A_unit);
         float angle = (float) Math.acos(dot(B_unit, A_unit));
 
-        List<PointF3D> landmarkResult = new ArrayList<>();
+        List<Point3D> landmarkResult = new ArrayList<>();
 
-        for (PointF3D lm : landmarks) {
+        for (Point3D lm : landmarks) {
           double[] axisR = {axis.getX(), axis.getY(), axis.getZ()};
           double[][] R = rotationMatrix(axisR, angle);
 
@@ -86,32 +79,32 @@ public class PoseEmbedding {
             coords[i] = dot(lm, R[i][0], R[i][1], R[i][2]);
           }
 
-          landmarkResult.add(PointF3D.from(coords[0], coords[1], coords[2]));
+          landmarkResult.add(Point3D.from(coords[0], coords[1], coords[2]));
         }
 
         return landmarkResult;
     }
 
-    private static List<PointF3D> normalize(List<PointF3D> landmarks) {
-        List<PointF3D> normalizedLandmarks = new ArrayList<>(landmarks);
+    private static List<Point3D> normalize(List<Point3D> landmarks, float yThreshold) {
+        List<Point3D> normalizedLandmarks = new ArrayList<>(landmarks);
 
         // Normalize scale.
         multiplyAll(normalizedLandmarks, 1 / getPoseSize(normalizedLandmarks));
 
         // [STEP 0]: Check whether the body is oriented Vertically or Horizontally
-        PointF3D LH_CHECK = normalizedLandmarks.get(PoseLandmark.LEFT_HIP);
-        PointF3D LS_CHECK = normalizedLandmarks.get(PoseLandmark.LEFT_SHOULDER);
+        Point3D LH_CHECK = normalizedLandmarks.get(LandmarkType.LEFT_HIP);
+        Point3D LS_CHECK = normalizedLandmarks.get(LandmarkType.LEFT_SHOULDER);
 
         // Assume it's oriented Vertically
-        if (Math.abs(LS_CHECK.getY() - LH_CHECK.getY()) < Y_THRESHOLD ) return normalizedLandmarks;
+        if (Math.abs(LS_CHECK.getY() - LH_CHECK.getY()) < yThreshold ) return normalizedLandmarks;
 
         // [STEP 1]: RH to (0, 0, 0)
-        PointF3D RH = normalizedLandmarks.get(PoseLandmark.RIGHT_HIP);
+        Point3D RH = normalizedLandmarks.get(LandmarkType.RIGHT_HIP);
         subtractAll(RH, normalizedLandmarks);
 
         // [STEP 2]: LH to (|LH|, 0, 0)
-        PointF3D LH_NEW = normalizedLandmarks.get(PoseLandmark.LEFT_HIP);
-        PointF3D LH_DESIRED = PointF3D.from((float) getMagnitude(LH_NEW), 0, 0);
+        Point3D LH_NEW = normalizedLandmarks.get(LandmarkType.LEFT_HIP);
+        Point3D LH_DESIRED = Point3D.from((float) getMagnitude(LH_NEW), 0, 0);
 
         if (LH_NEW.getX() != LH_DESIRED.getX() ||
                 LH_NEW.getY() != LH_DESIRED.getY() ||
@@ -121,39 +114,35 @@ public class PoseEmbedding {
         }
 
         // [STEP 3] LS to (+, 0, ?)
-        PointF3D LS = normalizedLandmarks.get(PoseLandmark.LEFT_SHOULDER);
+        Point3D LS = normalizedLandmarks.get(LandmarkType.LEFT_SHOULDER);
 
         if (LS.getY() != 0) {
           float LS_DESIRED_Z = (float) Math.sqrt(Math.pow(LS.getY(), 2) + Math.pow(LS.getZ(), 2));
-          PointF3D LS_DESIRED = PointF3D.from(LS.getX(), 0, LS_DESIRED_Z);
+          Point3D LS_DESIRED = Point3D.from(LS.getX(), 0, LS_DESIRED_Z);
 
           normalizedLandmarks = rotateAtoBwithLandmark(LS, LS_DESIRED, normalizedLandmarks);
         }
 
-        Log.d("LMARK Left Shoulder: ", normalizedLandmarks.get(PoseLandmark.LEFT_SHOULDER).toString());
-        Log.d("LMARK Left Hip: ", normalizedLandmarks.get(PoseLandmark.LEFT_HIP).toString());
-        Log.d("LMARK Right Hip: ", normalizedLandmarks.get(PoseLandmark.RIGHT_HIP).toString());
-
         return normalizedLandmarks;
     }
 
     // Translation normalization should've been done prior to calling this method.
-    private static float getPoseSize(List<PointF3D> landmarks) {
+    private static float getPoseSize(List<Point3D> landmarks) {
         // Note: This approach uses only 2D landmarks to compute pose size as using Z wasn't helpful
         // in our experimentation but you're welcome to tweak.
-        PointF3D hipsCenter = average(
-                landmarks.get(PoseLandmark.LEFT_HIP), landmarks.get(PoseLandmark.RIGHT_HIP));
+        Point3D hipsCenter = average(
+                landmarks.get(LandmarkType.LEFT_HIP), landmarks.get(LandmarkType.RIGHT_HIP));
 
-        PointF3D shouldersCenter = average(
-                landmarks.get(PoseLandmark.LEFT_SHOULDER),
-                landmarks.get(PoseLandmark.RIGHT_SHOULDER));
+        Point3D shouldersCenter = average(
+                landmarks.get(LandmarkType.LEFT_SHOULDER),
+                landmarks.get(LandmarkType.RIGHT_SHOULDER));
 
         float torsoSize = l2Norm2D(subtract(hipsCenter, shouldersCenter));
 
         float maxDistance = torsoSize * TORSO_MULTIPLIER;
         // torsoSize * TORSO_MULTIPLIER is the floor we want based on experimentation but actual size
         // can be bigger for a given pose depending on extension of limbs etc so we calculate that.
-        for (PointF3D landmark : landmarks) {
+        for (Point3D landmark : landmarks) {
             float distance = l2Norm2D(subtract(hipsCenter, landmark));
             if (distance > maxDistance) {
                 maxDistance = distance;
@@ -162,8 +151,8 @@ public class PoseEmbedding {
         return maxDistance;
     }
 
-    private static List<PointF3D> getEmbedding(List<PointF3D> lm) {
-        List<PointF3D> embedding = new ArrayList<>();
+    private static List<Point3D> getEmbedding(List<Point3D> lm) {
+        List<Point3D> embedding = new ArrayList<>();
 
         // We use several pairwise 3D distances to form pose embedding. These were selected
         // based on experimentation for best results with our default pose classes as captued in the
@@ -172,56 +161,56 @@ public class PoseEmbedding {
         // We group our distances by number of joints between the pairs.
         // One joint.
         embedding.add(subtract(
-                average(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.RIGHT_HIP)),
-                average(lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.RIGHT_SHOULDER))
+                average(lm.get(LandmarkType.LEFT_HIP), lm.get(LandmarkType.RIGHT_HIP)),
+                average(lm.get(LandmarkType.LEFT_SHOULDER), lm.get(LandmarkType.RIGHT_SHOULDER))
         ));
 
         embedding.add(subtract(
-                lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_ELBOW)));
+                lm.get(LandmarkType.LEFT_SHOULDER), lm.get(LandmarkType.LEFT_ELBOW)));
         embedding.add(subtract(
-                lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_ELBOW)));
+                lm.get(LandmarkType.RIGHT_SHOULDER), lm.get(LandmarkType.RIGHT_ELBOW)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_ELBOW), lm.get(PoseLandmark.LEFT_WRIST)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_ELBOW), lm.get(PoseLandmark.RIGHT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_ELBOW), lm.get(LandmarkType.LEFT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_ELBOW), lm.get(LandmarkType.RIGHT_WRIST)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_KNEE)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_KNEE)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_HIP), lm.get(LandmarkType.LEFT_KNEE)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_HIP), lm.get(LandmarkType.RIGHT_KNEE)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_KNEE), lm.get(PoseLandmark.LEFT_ANKLE)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_KNEE), lm.get(PoseLandmark.RIGHT_ANKLE)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_KNEE), lm.get(LandmarkType.LEFT_ANKLE)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_KNEE), lm.get(LandmarkType.RIGHT_ANKLE)));
 
         // Two joints.
         embedding.add(subtract(
-                lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_WRIST)));
+                lm.get(LandmarkType.LEFT_SHOULDER), lm.get(LandmarkType.LEFT_WRIST)));
         embedding.add(subtract(
-                lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_WRIST)));
+                lm.get(LandmarkType.RIGHT_SHOULDER), lm.get(LandmarkType.RIGHT_WRIST)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_ANKLE)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_ANKLE)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_HIP), lm.get(LandmarkType.LEFT_ANKLE)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_HIP), lm.get(LandmarkType.RIGHT_ANKLE)));
 
         // Four joints.
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_WRIST)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_HIP), lm.get(LandmarkType.LEFT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_HIP), lm.get(LandmarkType.RIGHT_WRIST)));
 
         // Five joints.
         embedding.add(subtract(
-                lm.get(PoseLandmark.LEFT_SHOULDER), lm.get(PoseLandmark.LEFT_ANKLE)));
+                lm.get(LandmarkType.LEFT_SHOULDER), lm.get(LandmarkType.LEFT_ANKLE)));
         embedding.add(subtract(
-                lm.get(PoseLandmark.RIGHT_SHOULDER), lm.get(PoseLandmark.RIGHT_ANKLE)));
+                lm.get(LandmarkType.RIGHT_SHOULDER), lm.get(LandmarkType.RIGHT_ANKLE)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_HIP), lm.get(PoseLandmark.LEFT_WRIST)));
-        embedding.add(subtract(lm.get(PoseLandmark.RIGHT_HIP), lm.get(PoseLandmark.RIGHT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_HIP), lm.get(LandmarkType.LEFT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.RIGHT_HIP), lm.get(LandmarkType.RIGHT_WRIST)));
 
         // Cross body.
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_ELBOW), lm.get(PoseLandmark.RIGHT_ELBOW)));
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_KNEE), lm.get(PoseLandmark.RIGHT_KNEE)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_ELBOW), lm.get(LandmarkType.RIGHT_ELBOW)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_KNEE), lm.get(LandmarkType.RIGHT_KNEE)));
 
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_WRIST), lm.get(PoseLandmark.RIGHT_WRIST)));
-        embedding.add(subtract(lm.get(PoseLandmark.LEFT_ANKLE), lm.get(PoseLandmark.RIGHT_ANKLE)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_WRIST), lm.get(LandmarkType.RIGHT_WRIST)));
+        embedding.add(subtract(lm.get(LandmarkType.LEFT_ANKLE), lm.get(LandmarkType.RIGHT_ANKLE)));
 
         return embedding;
     }
 
-    private PoseEmbedding() {
+    private LegacyPoseEmbedding() {
     }
 }
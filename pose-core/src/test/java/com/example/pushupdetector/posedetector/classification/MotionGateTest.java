@@ -0,0 +1,146 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MotionGateTest {
+  private static final String PUSHUPS_CLASS = "pushups_down";
+  private static final int NUM_REPS = 5;
+  private static final int FRAMES_PER_HOLD = 20;
+  private static final long FRAME_INTERVAL_MS = 33;
+
+  private final Random random = new Random(/* seed= */ 15);
+  private long nowMs;
+
+  @Test
+  public void skipsStillPoses_upToMaxSkippedFrames() {
+    MotionGate motionGate = new MotionGate(/* threshold= */ 0.02f, /* maxSkippedFrames= */ 2);
+    float[] pose = pose(/* size= */ 100);
+
+    assertTrue(motionGate.shouldClassify(pose));
+    assertFalse(motionGate.shouldClassify(jitter(pose, 1.5f)));
+    assertFalse(motionGate.shouldClassify(jitter(pose, 1.5f)));
+    assertTrue(motionGate.shouldClassify(jitter(pose, 1.5f)));
+
+    assertEquals(4, motionGate.getFrameCount());
+    assertEquals(2, motionGate.getSkippedFrameCount());
+    assertEquals(0.5f, motionGate.getSkipRatio(), 0f);
+  }
+
+  @Test
+  public void classifiesMovedPoses_relativeToPoseSize() {
+    MotionGate motionGate = new MotionGate(/* threshold= */ 0.02f, /* maxSkippedFrames= */ 10);
+    float[] smallPose = pose(/* size= */ 100);
+    float[] largePose = pose(/* size= */ 1000);
+
+    motionGate.shouldClassify(smallPose);
+    assertTrue(motionGate.shouldClassify(move(smallPose, 3)));
+    motionGate.shouldClassify(largePose);
+    assertFalse(motionGate.shouldClassify(move(largePose, 3)));
+  }
+
+  @Test
+  public void classifiesFirstPoseAfterReset() {
+    MotionGate motionGate = new MotionGate();
+    float[] pose = pose(/* size= */ 100);
+
+    motionGate.shouldClassify(pose);
+    motionGate.reset();
+    assertTrue(motionGate.shouldClassify(pose));
+  }
+
+  @Test
+  public void pipelineCountsSameReps() throws Exception {
+    TestPoseSamples testPoseSamples = new TestPoseSamples(/* seed= */ 16);
+    List<PoseSample> samples = testPoseSamples.samples();
+    PoseClassifier poseClassifier = new PoseClassifier(
+        PoseSampleMatrix.fromSamples(samples), BruteForceSampleIndex.FACTORY);
+    // Poses that are clearly down or up, so that holding them counts reps.
+    float[] downPose = null;
+    float[] upPose = null;
+    for (int i = 0; i < samples.size(); i++) {
+      List<Point3D> landmarks = testPoseSamples.sampleLandmarks().get(i);
+      if (landmarks.size() != NUM_LANDMARKS) {
+        continue;
+      }
+      float[] pose = TestPoseSamples.packLandmarks(landmarks);
+      float confidence = poseClassifier.classify(pose).getClassConfidence(PUSHUPS_CLASS);
+      if (downPose == null && confidence == poseClassifier.confidenceRange()) {
+        downPose = pose;
+      } else if (upPose == null && confidence == 0) {
+        upPose = pose;
+      }
+    }
+    // Holds each pose for a while, jittering like the detector does.
+    List<float[]> frames = new ArrayList<>();
+    for (int rep = 0; rep < NUM_REPS; rep++) {
+      for (int i = 0; i < FRAMES_PER_HOLD; i++) {
+        frames.add(jitter(downPose, 0.5f));
+      }
+      frames.add(null);
+      for (int i = 0; i < FRAMES_PER_HOLD; i++) {
+        frames.add(jitter(upPose, 0.5f));
+      }
+    }
+
+    MotionGate motionGate = new MotionGate();
+    int reps = countReps(new RepCountingPipeline(poseClassifier, motionGate,
+        new EMASmoothing(poseClassifier.getClassRegistry(), () -> nowMs),
+        new RepetitionCounterBank(new RepetitionCounter(PUSHUPS_CLASS))), frames);
+    int repsWithoutGate = countReps(new RepCountingPipeline(poseClassifier,
+        new EMASmoothing(poseClassifier.getClassRegistry(), () -> nowMs),
+        new RepetitionCounter(PUSHUPS_CLASS)), frames);
+
+    assertEquals(NUM_REPS, repsWithoutGate);
+    assertEquals(repsWithoutGate, reps);
+    assertTrue(motionGate.getSkipRatio() > 0.5f);
+  }
+
+  private int countReps(RepCountingPipeline pipeline, List<float[]> frames) {
+    nowMs = 1000;
+    for (float[] frame : frames) {
+      nowMs += FRAME_INTERVAL_MS;
+      pipeline.process(frame);
+    }
+    return pipeline.getNumRepeats();
+  }
+
+  /** Returns landmarks spread over a square of side {@code size}. */
+  private float[] pose(float size) {
+    float[] pose = new float[NUM_LANDMARKS * 3];
+    for (int i = 0; i < pose.length; i += 3) {
+      pose[i] = random.nextFloat() * size;
+      pose[i + 1] = random.nextFloat() * size;
+      pose[i + 2] = random.nextFloat() * size;
+    }
+    pose[0] = 0;
+    pose[1] = 0;
+    pose[3] = size;
+    pose[4] = size;
+    return pose;
+  }
+
+  /** Moves every landmark by up to {@code amount} in each direction. */
+  private float[] jitter(float[] pose, float amount) {
+    float[] jittered = pose.clone();
+    for (int i = 0; i < jittered.length; i++) {
+      jittered[i] += (random.nextFloat() * 2 - 1) * amount;
+    }
+    return jittered;
+  }
+
+  /** Moves one landmark by {@code offset} along x. */
+  private static float[] move(float[] pose, float offset) {
+    float[] moved = pose.clone();
+    moved[(NUM_LANDMARKS / 2) * 3] += offset;
+    return moved;
+  }
+}
@@ -0,0 +1,80 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class PoseClassifierTest {
+  private static final int NUM_FRAMES = 203;
+  // Consecutive frames of a session are alike, so each query is held for a few frames.
+  private static final int FRAMES_PER_QUERY = 5;
+
+  @Test
+  public void classifyBatch_matchesClassify() throws Exception {
+    TestPoseSamples testSamples = new TestPoseSamples(/* seed= */ 21);
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(testSamples.syntheticSamples(3000));
+    float[] frames = frames(testSamples);
+
+    assertBatchMatchesClassify(
+        new PoseClassifier(sampleMatrix, BruteForceSampleIndex.FACTORY), frames);
+    assertBatchMatchesClassify(
+        new PoseClassifier(sampleMatrix, VantagePointTreeIndex.FACTORY), frames);
+  }
+
+  @Test
+  public void classifyBatch_matchesClassifyAcrossCalls() throws Exception {
+    TestPoseSamples testSamples = new TestPoseSamples(/* seed= */ 22);
+    PoseClassifier classifier = new PoseClassifier(
+        PoseSampleMatrix.fromSamples(testSamples.samples()), BruteForceSampleIndex.FACTORY);
+
+    // Each call starts without seeds, whatever the previous call left behind.
+    assertBatchMatchesClassify(classifier, frames(testSamples));
+    assertBatchMatchesClassify(classifier, frames(testSamples));
+  }
+
+  @Test
+  public void classifyBatch_withoutSamples_hasNoConfidence() {
+    PoseClassifier classifier = new PoseClassifier(Collections.<PoseSample>emptyList());
+    float[] confidences = {1, 2};
+
+    classifier.classifyBatch(new float[NUM_LANDMARKS * 3], 1, confidences);
+
+    assertArrayEquals(new float[] {1, 2}, confidences, 0f);
+    assertEquals(0, classifier.getClassNames().length);
+  }
+
+  private static float[] frames(TestPoseSamples testSamples) {
+    float[] frames = new float[NUM_FRAMES * NUM_LANDMARKS * 3];
+    List<Point3D> query = null;
+    for (int f = 0; f < NUM_FRAMES; f++) {
+      if (f % FRAMES_PER_QUERY == 0) {
+        query = testSamples.query();
+      }
+      PoseSampleMatrix.pack(query, frames, f * NUM_LANDMARKS * 3);
+    }
+    return frames;
+  }
+
+  private static void assertBatchMatchesClassify(PoseClassifier classifier, float[] frames) {
+    String[] classNames = classifier.getClassNames();
+    float[] confidences = new float[NUM_FRAMES * classNames.length];
+    classifier.classifyBatch(frames, NUM_FRAMES, confidences);
+
+    float[] landmarks = new float[NUM_LANDMARKS * 3];
+    for (int f = 0; f < NUM_FRAMES; f++) {
+      System.arraycopy(frames, f * landmarks.length, landmarks, 0, landmarks.length);
+      ClassificationResult expected = classifier.classify(landmarks);
+      for (int c = 0; c < classNames.length; c++) {
+        assertEquals("frame " + f + ", class " + classNames[c],
+            expected.getClassConfidence(classNames[c]),
+            confidences[f * classNames.length + c], 0f);
+      }
+    }
+  }
+}
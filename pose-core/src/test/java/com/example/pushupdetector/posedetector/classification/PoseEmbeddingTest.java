@@ -0,0 +1,94 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.EMBEDDING_SIZE;
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Checks the packed {@link PoseEmbedding} against the list-based {@link LegacyPoseEmbedding}. */
+public class PoseEmbeddingTest {
+  private static final int NUM_QUERIES = 200;
+  // The default threshold, which keeps every sample in its original orientation.
+  private static final float Y_THRESHOLD = 2.5f;
+  // Normalized landmarks are within a few units of the origin. The legacy rotation rounds to
+  // float after every step, while the packed one composes both rotations in double first.
+  private static final float ROTATION_TOLERANCE = 1e-4f;
+
+  private final float[] landmarks = new float[NUM_LANDMARKS * 3];
+  private final float[] normalizedLandmarks = new float[NUM_LANDMARKS * 3];
+  private final float[] embedding = new float[EMBEDDING_SIZE * 3];
+  private final float[] expected = new float[EMBEDDING_SIZE * 3];
+
+  private List<List<Point3D>> poses;
+
+  @Before
+  public void setUp() throws IOException {
+    TestPoseSamples testPoseSamples = new TestPoseSamples(/* seed= */ 7);
+    poses = new ArrayList<>(testPoseSamples.sampleLandmarks());
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      poses.add(testPoseSamples.query());
+    }
+  }
+
+  @Test
+  public void getPoseEmbedding_matchesLegacyEmbedding() {
+    for (List<Point3D> pose : poses) {
+      PoseSampleMatrix.pack(pose, landmarks, 0);
+      PoseEmbedding.getPoseEmbedding(landmarks, normalizedLandmarks, embedding, 0);
+      PoseSampleMatrix.pack(LegacyPoseEmbedding.getPoseEmbedding(pose, Y_THRESHOLD), expected, 0);
+
+      // Without rotation both implementations do the same float operations.
+      assertArrayEquals(expected, embedding, 0f);
+    }
+  }
+
+  @Test
+  public void getPoseEmbedding_withRotation_matchesLegacyEmbedding() {
+    for (List<Point3D> pose : poses) {
+      PoseSampleMatrix.pack(pose, landmarks, 0);
+      PoseEmbedding.getPoseEmbedding(
+          landmarks, /* yThreshold= */ 0, normalizedLandmarks, embedding, 0);
+      PoseSampleMatrix.pack(
+          LegacyPoseEmbedding.getPoseEmbedding(pose, /* yThreshold= */ 0), expected, 0);
+
+      assertArrayEquals(expected, embedding, ROTATION_TOLERANCE);
+    }
+  }
+
+  @Test
+  public void getPoseEmbedding_withRotation_movesLeftShoulderOntoXzPlane() {
+    for (List<Point3D> pose : poses) {
+      PoseSampleMatrix.pack(pose, landmarks, 0);
+      PoseEmbedding.getPoseEmbedding(
+          landmarks, /* yThreshold= */ 0, normalizedLandmarks, embedding, 0);
+
+      int rightHip = LandmarkType.RIGHT_HIP * 3;
+      int leftShoulder = LandmarkType.LEFT_SHOULDER * 3;
+      assertEquals(0, normalizedLandmarks[rightHip], 0f);
+      assertEquals(0, normalizedLandmarks[rightHip + 1], 0f);
+      assertEquals(0, normalizedLandmarks[rightHip + 2], 0f);
+      // The last rotation takes the left shoulder onto the XZ plane, at positive Z.
+      assertEquals(0, normalizedLandmarks[leftShoulder + 1], ROTATION_TOLERANCE);
+      assertTrue(normalizedLandmarks[leftShoulder + 2] >= 0);
+    }
+  }
+
+  @Test
+  public void getPoseEmbedding_list_matchesPackedEmbedding() {
+    for (List<Point3D> pose : poses) {
+      PoseSampleMatrix.pack(pose, landmarks, 0);
+      PoseEmbedding.getPoseEmbedding(landmarks, normalizedLandmarks, embedding, 0);
+      PoseSampleMatrix.pack(PoseEmbedding.getPoseEmbedding(pose), expected, 0);
+
+      assertArrayEquals(embedding, expected, 0f);
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class PoseSampleFileTest {
+
+  @Test
+  public void readsWhatIsWritten() throws IOException {
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(new TestPoseSamples(/* seed= */ 5).samples());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    PoseSampleFile.write(sampleMatrix, outputStream);
+    PoseSampleMatrix read = PoseSampleFile.read(ByteBuffer.wrap(outputStream.toByteArray()));
+
+    assertEquals(sampleMatrix.size(), read.size());
+    assertArrayEquals(sampleMatrix.getClassNames(), read.getClassNames());
+    for (int i = 0; i < sampleMatrix.size(); i++) {
+      assertEquals(sampleMatrix.getClassId(i), read.getClassId(i));
+    }
+    assertArrayEquals(sampleMatrix.getEmbeddings(), read.getEmbeddings(), 0f);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherVersions() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(PoseSampleFile.MAGIC).putInt(PoseSampleFile.VERSION - 1);
+    buffer.rewind();
+
+    PoseSampleFile.read(buffer);
+  }
+}
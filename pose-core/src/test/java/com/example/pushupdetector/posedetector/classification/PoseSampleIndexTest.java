@@ -0,0 +1,105 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class PoseSampleIndexTest {
+  private static final int TOP_K = 30;
+
+  @Test
+  public void vantagePointTree_returnsSameSamplesAsBruteForce() throws Exception {
+    TestPoseSamples testSamples = new TestPoseSamples(/* seed= */ 1);
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(testSamples.syntheticSamples(5000));
+    PoseSampleIndex bruteForce = BruteForceSampleIndex.FACTORY.create(sampleMatrix, 1, 1, 0.2f);
+    PoseSampleIndex tree = VantagePointTreeIndex.FACTORY.create(sampleMatrix, 1, 1, 0.2f);
+
+    float[] query = new float[sampleMatrix.getStride()];
+    float[] flippedQuery = new float[sampleMatrix.getStride()];
+    TopKHeap expected = new TopKHeap(TOP_K);
+    TopKHeap actual = new TopKHeap(TOP_K);
+    for (int i = 0; i < 200; i++) {
+      TestPoseSamples.packQuery(testSamples.query(), query, flippedQuery);
+      expected.clear();
+      actual.clear();
+      bruteForce.search(query, flippedQuery, expected);
+      tree.search(query, flippedQuery, actual);
+
+      assertArrayEquals(sortedIds(expected), sortedIds(actual));
+    }
+  }
+
+  @Test
+  public void forkJoin_returnsSameSamplesAsBruteForce() throws Exception {
+    TestPoseSamples testSamples = new TestPoseSamples(/* seed= */ 4);
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(testSamples.syntheticSamples(20_000));
+    PoseSampleIndex bruteForce = BruteForceSampleIndex.FACTORY.create(sampleMatrix, 1, 1, 0.2f);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    ForkJoinSampleIndex forkJoin = (ForkJoinSampleIndex) ForkJoinSampleIndex
+        .factory(pool, /* minParallelSize= */ 1000)
+        .create(sampleMatrix, 1, 1, 0.2f);
+    assertTrue(forkJoin.isParallel());
+
+    float[] query = new float[sampleMatrix.getStride()];
+    float[] flippedQuery = new float[sampleMatrix.getStride()];
+    TopKHeap expected = new TopKHeap(TOP_K);
+    TopKHeap actual = new TopKHeap(TOP_K);
+    for (int i = 0; i < 100; i++) {
+      TestPoseSamples.packQuery(testSamples.query(), query, flippedQuery);
+      expected.clear();
+      actual.clear();
+      bruteForce.search(query, flippedQuery, expected);
+      forkJoin.search(query, flippedQuery, actual);
+
+      assertArrayEquals(sortedIds(expected), sortedIds(actual));
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void forkJoin_isSequentialBelowMinParallelSize() throws Exception {
+    PoseSampleMatrix sampleMatrix =
+        PoseSampleMatrix.fromSamples(new TestPoseSamples(/* seed= */ 5).samples());
+
+    ForkJoinSampleIndex forkJoin =
+        (ForkJoinSampleIndex) ForkJoinSampleIndex.FACTORY.create(sampleMatrix, 1, 1, 0.2f);
+
+    assertFalse(forkJoin.isParallel());
+  }
+
+  @Test
+  public void vantagePointTree_classifiesSameAsBruteForce() throws Exception {
+    TestPoseSamples testSamples = new TestPoseSamples(/* seed= */ 2);
+    PoseSampleMatrix sampleMatrix = PoseSampleMatrix.fromSamples(testSamples.samples());
+    PoseClassifier bruteForce = new PoseClassifier(sampleMatrix, BruteForceSampleIndex.FACTORY);
+    PoseClassifier tree = new PoseClassifier(sampleMatrix, VantagePointTreeIndex.FACTORY);
+
+    for (int i = 0; i < 200; i++) {
+      List<Point3D> landmarks = testSamples.query();
+      ClassificationResult expected = bruteForce.classify(landmarks);
+      ClassificationResult actual = tree.classify(landmarks);
+      for (String className : sampleMatrix.getClassNames()) {
+        assertEquals(
+            expected.getClassConfidence(className), actual.getClassConfidence(className), 0);
+      }
+    }
+  }
+
+  private static int[] sortedIds(TopKHeap heap) {
+    int[] ids = new int[heap.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = heap.getId(i);
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+}
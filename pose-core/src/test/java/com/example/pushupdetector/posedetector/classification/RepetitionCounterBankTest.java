@@ -0,0 +1,58 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RepetitionCounterBankTest {
+  private static final String[] CLASSES = {"pushups_down", "squats_down"};
+
+  private final ClassRegistry classRegistry = new ClassRegistry(CLASSES);
+
+  @Test
+  public void countsEachClassWithItsOwnThresholds() {
+    RepetitionCounterBank repCounters = new RepetitionCounterBank(
+        new RepetitionCounter("pushups_down"),
+        new RepetitionCounter("squats_down", /* enterThreshold= */ 5, /* exitThreshold= */ 2));
+
+    // Squats enter at 6 but push-ups don't.
+    assertEquals(0, repCounters.addClassificationResult(result(6, 6)));
+    // Squats exit below 2, push-ups below 4.
+    assertEquals(1, repCounters.addClassificationResult(result(3, 1)));
+    assertEquals(1, repCounters.getChangedCounter(0));
+
+    assertEquals(0, repCounters.addClassificationResult(result(8, 8)));
+    assertEquals(2, repCounters.addClassificationResult(result(0, 0)));
+    assertEquals(0, repCounters.getChangedCounter(0));
+    assertEquals(1, repCounters.getChangedCounter(1));
+
+    assertEquals(1, repCounters.getCounter(0).getNumRepeats());
+    assertEquals(2, repCounters.getCounter(1).getNumRepeats());
+  }
+
+  @Test
+  public void countsClassesMissingFromTheLibrary() {
+    RepetitionCounterBank repCounters = new RepetitionCounterBank(
+        new RepetitionCounter("pushups_down"), new RepetitionCounter("lunges_down"));
+
+    repCounters.addClassificationResult(result(8, 0));
+    assertEquals(1, repCounters.addClassificationResult(result(0, 0)));
+    assertEquals(0, repCounters.getChangedCounter(0));
+    assertEquals(0, repCounters.getCounter(1).getNumRepeats());
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getChangedCounter_failsPastChangedCount() {
+    RepetitionCounterBank repCounters =
+        new RepetitionCounterBank(new RepetitionCounter("pushups_down"));
+    repCounters.addClassificationResult(result(0, 0));
+    repCounters.getChangedCounter(0);
+  }
+
+  private ClassificationResult result(float pushUpsDown, float squatsDown) {
+    ClassificationResult result = new ClassificationResult(classRegistry);
+    result.setConfidence(0, pushUpsDown);
+    result.setConfidence(1, squatsDown);
+    return result;
+  }
+}
@@ -0,0 +1,153 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.TestPoseSamples.pick;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/** Records synthetic push-up sessions and checks that replaying them counts the same reps. */
+public class ReplayEngineTest {
+  private static final String PUSHUPS_CLASS = TestPoseSamples.PUSHUPS_DOWN_CLASS;
+  private static final int NUM_REPS = 5;
+  private static final int FRAMES_PER_HALF_REP = 12;
+  private static final long FRAME_INTERVAL_MS = TestPoseSamples.FRAME_INTERVAL_MS;
+
+  private List<float[]> downPoses;
+  private List<float[]> upPoses;
+  private PoseClassifier poseClassifier;
+
+  @Before
+  public void setUp() throws IOException {
+    TestPoseSamples testPoseSamples = new TestPoseSamples(/* seed= */ 11);
+    downPoses = testPoseSamples.packedLandmarks(TestPoseSamples.PUSHUPS_DOWN_CLASS);
+    upPoses = testPoseSamples.packedLandmarks(TestPoseSamples.PUSHUPS_UP_CLASS);
+    poseClassifier = new PoseClassifier(
+        PoseSampleMatrix.fromSamples(testPoseSamples.samples()), BruteForceSampleIndex.FACTORY);
+  }
+
+  @Test
+  public void streamRoundTrips() throws IOException {
+    float[] pose = downPoses.get(0);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (LandmarkStreamWriter writer = new LandmarkStreamWriter(outputStream)) {
+      writer.writeFrame(1000, pose);
+      writer.writeFrame(1033, null);
+      assertEquals(2, writer.getFrameCount());
+    }
+
+    LandmarkStreamReader reader =
+        new LandmarkStreamReader(ByteBuffer.wrap(outputStream.toByteArray()));
+    assertTrue(reader.next());
+    assertEquals(1000, reader.getTimestampMs());
+    assertTrue(reader.hasLandmarks());
+    assertArrayEquals(pose, reader.getLandmarks(), 0f);
+    assertTrue(reader.next());
+    assertEquals(1033, reader.getTimestampMs());
+    assertFalse(reader.hasLandmarks());
+    assertFalse(reader.next());
+  }
+
+  @Test
+  public void truncatedFrameEndsStream() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (LandmarkStreamWriter writer = new LandmarkStreamWriter(outputStream)) {
+      writer.writeFrame(1000, downPoses.get(0));
+      writer.writeFrame(1033, downPoses.get(1));
+    }
+    byte[] bytes = outputStream.toByteArray();
+
+    LandmarkStreamReader reader =
+        new LandmarkStreamReader(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)));
+    assertTrue(reader.next());
+    assertFalse(reader.next());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    new LandmarkStreamReader(ByteBuffer.wrap(new byte[64]));
+  }
+
+  @Test
+  public void replayCountsRecordedReps() throws IOException {
+    byte[] session =
+        TestPoseSamples.recordPushUps(downPoses, upPoses, NUM_REPS, FRAMES_PER_HALF_REP);
+
+    ReplayEngine engine = new ReplayEngine(poseClassifier, PUSHUPS_CLASS);
+    ReplayEngine.Result result = engine.replay(ByteBuffer.wrap(session));
+
+    assertEquals(NUM_REPS * (2 * FRAMES_PER_HALF_REP + 1), result.getFrameCount());
+    assertEquals(NUM_REPS * 2 * FRAMES_PER_HALF_REP, result.getPoseFrameCount());
+    assertEquals(NUM_REPS, result.getNumRepeats());
+    assertTrue(result.getFramesPerSecond() > 0);
+  }
+
+  @Test
+  public void replayResetsSmoothingOnRecordedGaps() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    long timestampMs = 5000;
+    try (LandmarkStreamWriter writer = new LandmarkStreamWriter(outputStream)) {
+      for (int i = 0; i < FRAMES_PER_HALF_REP; i++) {
+        writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, pick(downPoses, i));
+      }
+      // A single up pose after a long pause can't pull the smoothed result under the exit
+      // threshold on its own, unless the pause resets the smoothing window.
+      writer.writeFrame(timestampMs += 1000, pick(upPoses, 0));
+    }
+
+    ReplayEngine engine = new ReplayEngine(poseClassifier, PUSHUPS_CLASS);
+    ReplayEngine.Result result = engine.replay(ByteBuffer.wrap(outputStream.toByteArray()));
+
+    assertEquals(1, result.getNumRepeats());
+  }
+
+  @Test
+  public void replayGatesStillFramesLikeStreamMode() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    long timestampMs = 5000;
+    try (LandmarkStreamWriter writer = new LandmarkStreamWriter(outputStream)) {
+      for (int rep = 0; rep < NUM_REPS; rep++) {
+        // Each pose is held for a few frames, which the gate doesn't classify again.
+        for (int i = 0; i < FRAMES_PER_HALF_REP; i++) {
+          writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, pick(downPoses, rep + i / 4));
+        }
+        writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, null);
+        for (int i = 0; i < FRAMES_PER_HALF_REP; i++) {
+          writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, pick(upPoses, rep + i / 4));
+        }
+      }
+    }
+    byte[] session = outputStream.toByteArray();
+
+    ReplayEngine engine = new ReplayEngine(poseClassifier, PUSHUPS_CLASS);
+    ReplayEngine.Result result = engine.replay(ByteBuffer.wrap(session));
+
+    // The same frames through the pipeline as the app runs it in stream mode.
+    long[] nowMs = new long[1];
+    MotionGate motionGate = new MotionGate();
+    RepCountingPipeline pipeline = new RepCountingPipeline(poseClassifier, motionGate,
+        new EMASmoothing(poseClassifier.getClassRegistry(), () -> nowMs[0]),
+        new RepetitionCounterBank(new RepetitionCounter(PUSHUPS_CLASS)));
+    LandmarkStreamReader reader = new LandmarkStreamReader(ByteBuffer.wrap(session));
+    while (reader.next()) {
+      nowMs[0] = reader.getTimestampMs();
+      pipeline.process(reader.hasLandmarks() ? reader.getLandmarks() : null);
+    }
+    int classifiedFrameCount =
+        (int) (motionGate.getFrameCount() - motionGate.getSkippedFrameCount());
+
+    assertTrue(result.getClassifiedFrameCount() < result.getPoseFrameCount());
+    assertEquals(classifiedFrameCount, result.getClassifiedFrameCount());
+    assertTrue(result.getNumRepeats() > 0);
+    assertEquals(pipeline.getNumRepeats(), result.getNumRepeats());
+  }
+}
@@ -0,0 +1,35 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.pushupdetector.posedetector.metrics.FrameMetrics.Stage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class FrameMetricsTest {
+  @After
+  public void tearDown() {
+    FrameMetrics.reset();
+  }
+
+  @Test
+  public void writeReport_listsStagesWithLatencies() throws IOException {
+    FrameMetrics.reset();
+    for (int i = 1; i <= 10; i++) {
+      FrameMetrics.record(Stage.DETECTION, i * 1_000_000L);
+    }
+    FrameMetrics.record(Stage.KNN, 250_000);
+
+    StringBuilder report = new StringBuilder();
+    FrameMetrics.writeReport(report);
+
+    assertEquals(
+        "stage,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n"
+            + "Detection,10,5.500,5.243,9.437,10.000,10.000\n"
+            + "KNN,1,0.250,0.250,0.250,0.250,0.250\n",
+        report.toString());
+  }
+}
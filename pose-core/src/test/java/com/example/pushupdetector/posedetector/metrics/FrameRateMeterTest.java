@@ -0,0 +1,51 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FrameRateMeterTest {
+  private static final long MS = 1_000_000;
+  private static final long SECOND = 1000 * MS;
+
+  @Test
+  public void instantaneousFps_fromLastTwoFrames() {
+    FrameRateMeter meter = new FrameRateMeter();
+    assertEquals(0, meter.getInstantaneousFps(), 0);
+    meter.mark(0);
+    assertEquals(0, meter.getInstantaneousFps(), 0);
+    meter.mark(40 * MS);
+    meter.mark(80 * MS);
+    meter.mark(100 * MS);
+
+    assertEquals(50, meter.getInstantaneousFps(), 1e-9);
+  }
+
+  @Test
+  public void windowedFps_countsFramesInWindow() {
+    FrameRateMeter meter = new FrameRateMeter();
+    // 30 fps for 2 seconds.
+    for (int i = 0; i < 60; i++) {
+      meter.mark(i * SECOND / 30);
+    }
+    long lastFrameNanos = 59 * SECOND / 30;
+
+    assertEquals(30, meter.getWindowedFps(lastFrameNanos, SECOND), 1e-9);
+    assertEquals(30, meter.getWindowedFps(lastFrameNanos, SECOND / 2), 1e-9);
+    // Half of the last second without frames.
+    assertEquals(15, meter.getWindowedFps(lastFrameNanos + SECOND / 2, SECOND), 1e-9);
+    assertEquals(0, meter.getWindowedFps(lastFrameNanos + 2 * SECOND, SECOND), 0);
+  }
+
+  @Test
+  public void windowedFps_cutShortByCapacity() {
+    FrameRateMeter meter = new FrameRateMeter(/* capacity= */ 8);
+    for (int i = 0; i < 100; i++) {
+      meter.mark(i * 10 * MS);
+    }
+
+    assertEquals(100, meter.getFrameCount());
+    // Only the 7 newest frames are certain to be in the ring.
+    assertEquals(7, meter.getWindowedFps(990 * MS, SECOND), 1e-9);
+  }
+}
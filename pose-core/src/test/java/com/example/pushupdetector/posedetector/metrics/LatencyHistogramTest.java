@@ -0,0 +1,77 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LatencyHistogramTest {
+  @Test
+  public void bucketsCoverEveryValueOnce() {
+    long previousUpperBound = -1;
+    for (int bucket = 0; bucket < LatencyHistogram.bucket(1L << 40); bucket++) {
+      long upperBound = LatencyHistogram.bucketUpperBound(bucket);
+      assertEquals(bucket, LatencyHistogram.bucket(previousUpperBound + 1));
+      assertEquals(bucket, LatencyHistogram.bucket(upperBound));
+      previousUpperBound = upperBound;
+    }
+  }
+
+  @Test
+  public void percentiles_withinBucketError() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    // 1 to 1000 microseconds, shuffled.
+    long[] values = new long[1000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (i + 1) * 1000L;
+    }
+    Random random = new Random(/* seed= */ 3);
+    for (int i = values.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      long value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+    for (long value : values) {
+      histogram.record(value);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500_500, histogram.getMeanNanos());
+    assertEquals(1_000_000, histogram.getMaxNanos());
+    assertWithinBucketError(500_000, histogram.getPercentileNanos(50));
+    assertWithinBucketError(900_000, histogram.getPercentileNanos(90));
+    assertWithinBucketError(990_000, histogram.getPercentileNanos(99));
+    assertEquals(1_000_000, histogram.getPercentileNanos(100));
+  }
+
+  @Test
+  public void percentiles_exactForSmallValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(3);
+    histogram.record(7);
+    histogram.record(-5);
+
+    assertEquals(0, histogram.getPercentileNanos(0));
+    assertEquals(3, histogram.getPercentileNanos(50));
+    assertEquals(7, histogram.getPercentileNanos(90));
+  }
+
+  @Test
+  public void reset_forgetsLatencies() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(5_000_000);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentileNanos(50));
+    assertEquals(0, histogram.getMaxNanos());
+  }
+
+  private static void assertWithinBucketError(long expected, long actual) {
+    assertTrue("Expected about " + expected + ", got " + actual,
+        actual >= expected && actual <= expected + expected / 16);
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.pushupdetector.posedetector.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StageStatsTest {
+  private static final long MS = 1_000_000;
+
+  @Test
+  public void measuresLatencyAndThroughput() {
+    StageStats stats = new StageStats("classification");
+    // 10 frames 100ms apart, each taking 20ms, except one taking 50ms.
+    for (int i = 0; i < 10; i++) {
+      long start = i * 100 * MS;
+      stats.record(start, start + (i == 3 ? 50 : 20) * MS);
+    }
+
+    assertEquals(10, stats.getCount());
+    assertEquals(23, stats.getAverageMs(), 1e-9);
+    assertEquals(50, stats.getMaxMs(), 1e-9);
+    // From 0 to 920ms.
+    assertEquals(10 / 0.92, stats.getThroughput(), 1e-9);
+    assertEquals(230 / 920.0, stats.getBusyRatio(), 1e-9);
+  }
+
+  @Test
+  public void reset_forgetsFrames() {
+    StageStats stats = new StageStats("detection");
+    stats.record(0, 30 * MS);
+    stats.reset();
+    stats.record(100 * MS, 110 * MS);
+
+    assertEquals(1, stats.getCount());
+    assertEquals(10, stats.getMaxMs(), 1e-9);
+    assertEquals(1, stats.getBusyRatio(), 1e-9);
+  }
+}
@@ -0,0 +1,89 @@
+package com.example.pushupdetector.posedetector.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+public class ChromeTraceWriterTest {
+  @Test
+  public void writesTraceEvents() throws IOException {
+    StringWriter out = new StringWriter();
+    // Smaller than the number of events, so that they are written out in between.
+    ChromeTraceWriter writer = new ChromeTraceWriter(out, /* capacity= */ 2);
+    writer.setCounter(Tracer.FRAME_ID, 7);
+    writer.beginAsyncSection(Tracer.DETECTION, 7);
+    writer.beginSection(Tracer.CLASSIFICATION, 7);
+    writer.endSection();
+    writer.endAsyncSection(Tracer.DETECTION, 7);
+    writer.close();
+
+    long tid = Thread.currentThread().getId();
+    assertEquals(
+        "{\"traceEvents\":[\n"
+            + "{\"ph\":\"C\",\"name\":\"frameId\",\"cat\":\"frame\",\"ts\":0,"
+            + "\"pid\":1,\"tid\":" + tid + ",\"args\":{\"value\":7}},\n"
+            + "{\"ph\":\"b\",\"name\":\"Detect pose\",\"cat\":\"frame\",\"id\":7,\"ts\":0,"
+            + "\"pid\":1,\"tid\":" + tid + ",\"args\":{\"frame\":7}},\n"
+            + "{\"ph\":\"B\",\"name\":\"Classify pose\",\"cat\":\"frame\",\"ts\":0,"
+            + "\"pid\":1,\"tid\":" + tid + ",\"args\":{\"frame\":7}},\n"
+            + "{\"ph\":\"E\",\"ts\":0,\"pid\":1,\"tid\":" + tid + "},\n"
+            + "{\"ph\":\"e\",\"name\":\"Detect pose\",\"cat\":\"frame\",\"id\":7,\"ts\":0,"
+            + "\"pid\":1,\"tid\":" + tid + "}\n"
+            + "]}\n",
+        out.toString().replaceAll("\"ts\":[0-9]+\\.[0-9]{3}", "\"ts\":0"));
+  }
+
+  @Test
+  public void timestampsDontGoBackwards() throws IOException {
+    StringWriter out = new StringWriter();
+    ChromeTraceWriter writer = new ChromeTraceWriter(out);
+    for (int i = 0; i < 100; i++) {
+      writer.beginSection(Tracer.REP_COUNTING, i);
+      writer.endSection();
+    }
+    writer.close();
+
+    double lastTimestamp = -1;
+    for (String part : out.toString().split("\"ts\":")) {
+      if (Character.isDigit(part.charAt(0))) {
+        double timestamp = Double.parseDouble(part.substring(0, part.indexOf(',')));
+        assertTrue(timestamp >= lastTimestamp);
+        lastTimestamp = timestamp;
+      }
+    }
+  }
+
+  @Test
+  public void close_throwsFirstWriteError() throws IOException {
+    IOException error = new IOException("Disk full");
+    Writer failingWriter = new Writer() {
+      @Override
+      public void write(char[] chars, int offset, int length) {}
+
+      @Override
+      public void flush() throws IOException {
+        throw error;
+      }
+
+      @Override
+      public void close() {}
+    };
+    ChromeTraceWriter writer = new ChromeTraceWriter(failingWriter);
+    writer.beginSection(Tracer.OVERLAY_DRAW, 1);
+    writer.endSection();
+
+    try {
+      writer.close();
+      fail("Expected the write error");
+    } catch (IOException e) {
+      assertSame(error, e);
+    }
+  }
+}
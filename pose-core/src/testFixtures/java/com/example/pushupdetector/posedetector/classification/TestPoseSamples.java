@@ -0,0 +1,194 @@
+package com.example.pushupdetector.posedetector.classification;
+
+import static com.example.pushupdetector.posedetector.classification.PoseEmbedding.NUM_LANDMARKS;
+import static com.example.pushupdetector.posedetector.classification.Utils.multiplyAll;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Loads the bundled pose samples and derives synthetic libraries, queries and recorded sessions
+ * from them. Shared by the pose-core tests and the benchmarks.
+ */
+public class TestPoseSamples {
+  public static final String PUSHUPS_DOWN_CLASS = "pushups_down";
+  public static final String PUSHUPS_UP_CLASS = "pushups_up";
+  // The frame interval of recorded sessions, about 30 fps.
+  public static final long FRAME_INTERVAL_MS = 33;
+
+  // The samples bundled with the app. Set by the build, tests and benchmarks otherwise run with
+  // the module directory as working directory.
+  private static final String POSE_SAMPLES_FILE = System.getProperty(
+      "poseSamplesCsv", "../app/src/main/poses/fitness_pose_samples.csv");
+  // Landmarks are in image pixels, this is roughly the frame-to-frame noise of the detector.
+  private static final float JITTER = 3f;
+
+  private final List<String> csvLines = new ArrayList<>();
+  private final List<String> classNames = new ArrayList<>();
+  private final List<List<Point3D>> landmarks = new ArrayList<>();
+  private final Random random;
+
+  public TestPoseSamples(long seed) throws IOException {
+    random = new Random(seed);
+    try (BufferedReader reader = new BufferedReader(new FileReader(POSE_SAMPLES_FILE))) {
+      for (String csvLine = reader.readLine(); csvLine != null; csvLine = reader.readLine()) {
+        String[] tokens = csvLine.split(",");
+        List<Point3D> sampleLandmarks = new ArrayList<>();
+        try {
+          for (int i = 2; i + 2 < tokens.length; i += 3) {
+            sampleLandmarks.add(Point3D.from(Float.parseFloat(tokens[i]),
+                Float.parseFloat(tokens[i + 1]), Float.parseFloat(tokens[i + 2])));
+          }
+        } catch (NumberFormatException e) {
+          // Header line.
+          continue;
+        }
+        csvLines.add(csvLine);
+        classNames.add(tokens[1]);
+        landmarks.add(sampleLandmarks);
+      }
+    }
+  }
+
+  /** Returns the csv lines of the bundled samples, without the header. */
+  public List<String> csvLines() {
+    return csvLines;
+  }
+
+  /** Returns the landmarks of the bundled samples. */
+  public List<List<Point3D>> sampleLandmarks() {
+    return landmarks;
+  }
+
+  /**
+   * Returns the landmarks of the bundled samples of {@code className}, packed as the pipeline
+   * takes them. Samples without all landmarks are left out.
+   */
+  public List<float[]> packedLandmarks(String className) {
+    List<float[]> packed = new ArrayList<>();
+    for (int i = 0; i < landmarks.size(); i++) {
+      if (classNames.get(i).equals(className) && landmarks.get(i).size() == NUM_LANDMARKS) {
+        packed.add(packLandmarks(landmarks.get(i)));
+      }
+    }
+    return packed;
+  }
+
+  /** Returns the bundled samples. */
+  public List<PoseSample> samples() {
+    List<PoseSample> samples = new ArrayList<>();
+    for (int i = 0; i < landmarks.size(); i++) {
+      samples.add(new PoseSample(String.valueOf(i), classNames.get(i), landmarks.get(i)));
+    }
+    return samples;
+  }
+
+  /** Returns {@code size} samples made by jittering randomly picked bundled samples. */
+  public List<PoseSample> syntheticSamples(int size) {
+    List<PoseSample> samples = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      int base = random.nextInt(landmarks.size());
+      samples.add(
+          new PoseSample(String.valueOf(i), classNames.get(base), jitter(landmarks.get(base))));
+    }
+    return samples;
+  }
+
+  /** Returns the landmarks of a randomly picked bundled sample with some jitter. */
+  public List<Point3D> query() {
+    return jitter(landmarks.get(random.nextInt(landmarks.size())));
+  }
+
+  /** Returns {@code count} packed landmarks of randomly picked bundled samples with jitter. */
+  public float[][] queries(int count) {
+    float[][] queries = new float[count][];
+    for (int i = 0; i < count; i++) {
+      queries[i] = packLandmarks(query());
+    }
+    return queries;
+  }
+
+  /**
+   * Returns {@code frameCount} packed landmarks, one after another, moving smoothly between
+   * randomly picked bundled samples over {@code framesPerMove} frames, with jitter, like a
+   * recorded session.
+   */
+  public float[] session(int frameCount, int framesPerMove) {
+    int numValues = NUM_LANDMARKS * 3;
+    float[] frames = new float[frameCount * numValues];
+    float[] from = packLandmarks(landmarks.get(random.nextInt(landmarks.size())));
+    float[] to = packLandmarks(landmarks.get(random.nextInt(landmarks.size())));
+    for (int f = 0; f < frameCount; f++) {
+      if (f % framesPerMove == 0) {
+        from = to;
+        to = packLandmarks(landmarks.get(random.nextInt(landmarks.size())));
+      }
+      float t = (float) (f % framesPerMove) / framesPerMove;
+      for (int i = 0; i < numValues; i++) {
+        frames[f * numValues + i] =
+            from[i] + (to[i] - from[i]) * t + (float) random.nextGaussian() * JITTER;
+      }
+    }
+    return frames;
+  }
+
+  /** Packs the embeddings of {@code landmarks} and of their mirror image for index lookups. */
+  public static void packQuery(List<Point3D> landmarks, float[] query, float[] flippedQuery) {
+    List<Point3D> flippedLandmarks = new ArrayList<>(landmarks);
+    multiplyAll(flippedLandmarks, Point3D.from(-1, 1, 1));
+    PoseSampleMatrix.pack(PoseEmbedding.getPoseEmbedding(landmarks), query, 0);
+    PoseSampleMatrix.pack(PoseEmbedding.getPoseEmbedding(flippedLandmarks), flippedQuery, 0);
+  }
+
+  /** Returns {@code landmarks} packed as interleaved x, y, z, as the pipeline takes them. */
+  public static float[] packLandmarks(List<Point3D> landmarks) {
+    float[] packed = new float[landmarks.size() * 3];
+    PoseSampleMatrix.pack(landmarks, packed, 0);
+    return packed;
+  }
+
+  /**
+   * Records a session of {@code numReps} push-ups, with frames {@code FRAME_INTERVAL_MS} apart.
+   * Each rep goes through {@code framesPerHalfRep} of {@code downPoses} and then of {@code
+   * upPoses}, picked in turn, with a frame without a pose in between, as the detector loses the
+   * pose now and then.
+   */
+  public static byte[] recordPushUps(List<float[]> downPoses, List<float[]> upPoses, int numReps,
+      int framesPerHalfRep) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    long timestampMs = 5000;
+    try (LandmarkStreamWriter writer = new LandmarkStreamWriter(outputStream)) {
+      for (int rep = 0; rep < numReps; rep++) {
+        for (int i = 0; i < framesPerHalfRep; i++) {
+          writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, pick(downPoses, rep + i));
+        }
+        writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, null);
+        for (int i = 0; i < framesPerHalfRep; i++) {
+          writer.writeFrame(timestampMs += FRAME_INTERVAL_MS, pick(upPoses, rep + i));
+        }
+      }
+    }
+    return outputStream.toByteArray();
+  }
+
+  /** Returns the pose at {@code index}, wrapping around. */
+  public static float[] pick(List<float[]> poses, int index) {
+    return poses.get(index % poses.size());
+  }
+
+  private List<Point3D> jitter(List<Point3D> points) {
+    List<Point3D> jittered = new ArrayList<>();
+    for (Point3D point : points) {
+      jittered.add(Point3D.from(
+          point.getX() + (float) random.nextGaussian() * JITTER,
+          point.getY() + (float) random.nextGaussian() * JITTER,
+          point.getZ() + (float) random.nextGaussian() * JITTER));
+    }
+    return jittered;
+  }
+}